@@ -0,0 +1,17 @@
+package jp.co.fsz.clounect.core.dto;
+
+/**
+ * <p>[概要] send_payload に記録した Google イベントの ID と ETag のプロジェクション。</p>
+ * <p>[詳細] Google からの変更通知で取得したイベントが、このアプリケーション自身の書き込みかどうかを判定するために使用します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public interface AppDataEventEtag {
+
+  String getEventId();
+
+  String getEtag();
+}
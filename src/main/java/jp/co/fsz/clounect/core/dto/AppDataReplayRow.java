@@ -0,0 +1,21 @@
+package jp.co.fsz.clounect.core.dto;
+
+/**
+ * <p>[概要] 再送対象の app_data 行のプロジェクション。</p>
+ * <p>[詳細] 再送に必要な列のみを保持し、send_payload やサイト情報のエンティティを読み込まずに再送処理を行うために使用します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public interface AppDataReplayRow {
+
+  Long getId();
+
+  Long getAppSiteId();
+
+  String getWebhookUrl();
+
+  String getReceivedPayload();
+}
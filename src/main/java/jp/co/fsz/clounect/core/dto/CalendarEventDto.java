@@ -8,4 +8,5 @@ import java.util.List;
 public class CalendarEventDto {
   private String calendarId;
   private List<String> eventIds;
+  private String etag;
 }
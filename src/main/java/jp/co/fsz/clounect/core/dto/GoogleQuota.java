@@ -0,0 +1,22 @@
+package jp.co.fsz.clounect.core.dto;
+
+/**
+ * <p>[概要] サイトごとの Google Calendar API の呼び出し上限。</p>
+ * <p>[詳細] AppSiteInfo の config の "googleQuota" から読み込んだ、Google プロジェクト（クライアントID）単位と
+ * 対象カレンダー単位の1秒あたりの呼び出し数およびバースト数を保持します。</p>
+ * <p>[備考] 指定がない項目は null となり、application.properties の既定値が使用されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param projectPerSecond  クライアントID単位の1秒あたりの呼び出し数
+ * @param projectBurst      クライアントID単位のバースト数
+ * @param calendarPerSecond カレンダー単位の1秒あたりの呼び出し数
+ * @param calendarBurst     カレンダー単位のバースト数
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record GoogleQuota(Double projectPerSecond, Double projectBurst,
+                          Double calendarPerSecond, Double calendarBurst) {
+
+  public static final GoogleQuota UNSPECIFIED = new GoogleQuota(null, null, null, null);
+}
@@ -0,0 +1,57 @@
+package jp.co.fsz.clounect.core.dto;
+
+import jp.co.fsz.clounect.core.model.AppMaster;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+
+/**
+ * <p>[概要] Webhookのルーティングに使用するサイト情報。</p>
+ * <p>[詳細] WebhookのUUIDから解決したサイトID、アプリID、有効フラグ、およびGoogleの認証情報を保持する不変のクラスです。</p>
+ * <p>[備考] 認証情報が未設定のサイトでは clientId、clientSecret、refreshToken は null になります。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param siteId       AppSiteInfoのID
+ * @param appId        AppMasterのID
+ * @param active       サイトが有効かどうか
+ * @param webhookUrl   WebhookのUUID
+ * @param clientId     GoogleのクライアントID
+ * @param clientSecret Googleのクライアントシークレット
+ * @param refreshToken Googleのリフレッシュトークン
+ * @param syncMode     Google Calendar へのイベントの反映方法
+ * @param sendUpdates  イベントの作成、更新、削除時の参加者への通知方法
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record SiteRoute(Long siteId, Long appId, boolean active, String webhookUrl,
+                        String clientId, String clientSecret, String refreshToken,
+                        EventSyncMode syncMode, SendUpdatesPolicy sendUpdates) {
+
+  /**
+   * <p>[概要] 認証情報が設定されているかを返すメソッド。</p>
+   *
+   * @return クライアントID、クライアントシークレット、リフレッシュトークンがすべて設定されている場合は true
+   * @since 1.0
+   */
+  public boolean hasCredentials() {
+    return clientId != null && clientSecret != null && refreshToken != null;
+  }
+
+  /**
+   * <p>[概要] 関連付けに使用するAppSiteInfoを生成するメソッド。</p>
+   * <p>[詳細] ID、WebhookのUUID、アプリ、有効フラグのみを設定したAppSiteInfoを返します。
+   * AppDataの外部キーなど、IDのみを参照する用途に使用します。</p>
+   *
+   * @return IDのみを設定したAppSiteInfo
+   * @since 1.0
+   */
+  public AppSiteInfo toReference() {
+    return AppSiteInfo.builder()
+        .id(siteId)
+        .webhookUrl(webhookUrl)
+        .appId(AppMaster.builder().id(appId).build())
+        .isActive(active)
+        .build();
+  }
+}
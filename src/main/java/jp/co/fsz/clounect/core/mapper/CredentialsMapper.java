@@ -5,9 +5,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jp.co.fsz.clounect.core.dto.CalendarEventDto;
 import jp.co.fsz.clounect.core.dto.GoogleCredentialsDto;
+import jp.co.fsz.clounect.core.dto.GoogleQuota;
 import jp.co.fsz.clounect.core.dto.JustSfaDto;
 import jp.co.fsz.clounect.core.model.AppData;
 import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.CredentialsDto;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.UserDetails;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
@@ -238,10 +241,15 @@ public class CredentialsMapper {
 
         for (JsonNode eventData : receivedDataArray.path("response")) {
           String eventId = eventData.path("id").asText();
-          String calendarId = eventData.path("data").path("creator").path("email").asText();
+          JsonNode event = eventData.has("data") ? eventData.path("data")
+              : eventData.path("load");
+          String calendarId = event.path("creator").path("email").asText();
 
           CalendarEventDto calendarEventDto = new CalendarEventDto();
           calendarEventDto.setCalendarId(calendarId);
+          if (event.hasNonNull("etag")) {
+            calendarEventDto.setEtag(event.path("etag").asText());
+          }
 
           List<String> eventIds = new ArrayList<>();
           eventIds.add(eventId);
@@ -256,6 +264,87 @@ public class CredentialsMapper {
     return calendarEvents;
   }
 
+  /**
+   * <p>[概要] AppSiteInfoからイベントの反映方法を取得するメソッド。</p>
+   * <p>[詳細] config の "calendarSyncMode" を {@link EventSyncMode} に変換します。</p>
+   * <p>[備考] 指定がない場合、値が正しくない場合、または config を解析できない場合は PER_ATTENDEE を返します。</p>
+   *
+   * @param appSiteInfoOptional アプリケーションサイト情報のOptional
+   * @return イベントの反映方法
+   * @since 1.0
+   */
+  public EventSyncMode mapToEventSyncMode(Optional<AppSiteInfo> appSiteInfoOptional) {
+    try {
+      Object mode = appSiteInfoOptional.map(AppSiteInfo::getConfig)
+          .map(this::parseConfigJson)
+          .map(configMap -> configMap.get("calendarSyncMode"))
+          .orElse(null);
+      return mode == null ? EventSyncMode.PER_ATTENDEE
+          : EventSyncMode.valueOf(String.valueOf(mode));
+    } catch (CouldNotPerformActionException | IllegalArgumentException e) {
+      log.warn("Invalid calendarSyncMode in config: {}", e.getMessage());
+      return EventSyncMode.PER_ATTENDEE;
+    }
+  }
+
+  /**
+   * <p>[概要] AppSiteInfoから参加者への通知方法を取得するメソッド。</p>
+   * <p>[詳細] config の "calendarSendUpdates" を {@link SendUpdatesPolicy} に変換します。</p>
+   * <p>[備考] 指定がない場合、値が正しくない場合、または config を解析できない場合は反映方法に応じた既定値を返します。</p>
+   *
+   * @param appSiteInfoOptional アプリケーションサイト情報のOptional
+   * @param syncMode            サイトのイベントの反映方法
+   * @return 参加者への通知方法
+   * @since 1.0
+   */
+  public SendUpdatesPolicy mapToSendUpdates(Optional<AppSiteInfo> appSiteInfoOptional,
+      EventSyncMode syncMode) {
+    try {
+      Object policy = appSiteInfoOptional.map(AppSiteInfo::getConfig)
+          .map(this::parseConfigJson)
+          .map(configMap -> configMap.get("calendarSendUpdates"))
+          .orElse(null);
+      return policy == null ? SendUpdatesPolicy.defaultFor(syncMode)
+          : SendUpdatesPolicy.valueOf(String.valueOf(policy));
+    } catch (CouldNotPerformActionException | IllegalArgumentException e) {
+      log.warn("Invalid calendarSendUpdates in config: {}", e.getMessage());
+      return SendUpdatesPolicy.defaultFor(syncMode);
+    }
+  }
+
+  /**
+   * <p>[概要] AppSiteInfoから Google API の呼び出し上限を取得するメソッド。</p>
+   * <p>[詳細] config の "googleQuota" の projectPerSecond、projectBurst、calendarPerSecond、calendarBurst を
+   * {@link GoogleQuota} に変換します。</p>
+   * <p>[備考] 指定がない場合、値が正しくない場合、または config を解析できない場合は未指定の上限を返します。</p>
+   *
+   * @param appSiteInfoOptional アプリケーションサイト情報のOptional
+   * @return Google API の呼び出し上限
+   * @since 1.0
+   */
+  public GoogleQuota mapToGoogleQuota(Optional<AppSiteInfo> appSiteInfoOptional) {
+    try {
+      Object quota = appSiteInfoOptional.map(AppSiteInfo::getConfig)
+          .map(this::parseConfigJson)
+          .map(configMap -> configMap.get("googleQuota"))
+          .orElse(null);
+      if (quota == null) {
+        return GoogleQuota.UNSPECIFIED;
+      }
+      Map<String, Object> quotaMap = castMap(quota);
+      return new GoogleQuota(toDouble(quotaMap.get("projectPerSecond")),
+          toDouble(quotaMap.get("projectBurst")), toDouble(quotaMap.get("calendarPerSecond")),
+          toDouble(quotaMap.get("calendarBurst")));
+    } catch (CouldNotPerformActionException | ClassCastException | NumberFormatException e) {
+      log.warn("Invalid googleQuota in config: {}", e.getMessage());
+      return GoogleQuota.UNSPECIFIED;
+    }
+  }
+
+  private Double toDouble(Object value) {
+    return value == null ? null : Double.valueOf(String.valueOf(value));
+  }
+
   /**
    * <p>[概要] ジェネリックな型のリストに変換を行うメソッド。</p>
    * <p>[詳細] 指定されたオブジェクトをジェネリックな型のリストに安全に変換して返すメソッド。</p>
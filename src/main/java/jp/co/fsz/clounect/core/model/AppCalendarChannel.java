@@ -0,0 +1,65 @@
+package jp.co.fsz.clounect.core.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * <p>[概要] Google Calendar の変更通知チャネルを表すエンティティクラス。</p>
+ * <p>[詳細] このクラスはデータベースの "app_calendar_channel" テーブルにマッピングされ、
+ * events.watch で登録したチャネルのID、Google が発行したリソースID、通知の検証に使用するトークン、および有効期限を保持します。</p>
+ * <p>[備考] channel_token は通知の X-Goog-Channel-Token ヘッダーと照合するための値で、API のレスポンスには含めません。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Table(name = "app_calendar_channel")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class AppCalendarChannel {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "app_site_id")
+  private Long appSiteId;
+
+  @Column(name = "calendar_id")
+  private String calendarId;
+
+  @Column(name = "channel_id")
+  private String channelId;
+
+  @Column(name = "resource_id")
+  private String resourceId;
+
+  @JsonIgnore
+  @Column(name = "channel_token")
+  private String channelToken;
+
+  @Column(name = "expires_at")
+  private LocalDateTime expiresAt;
+
+  @Column(name = "last_message_number")
+  private Long lastMessageNumber;
+
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+}
@@ -0,0 +1,57 @@
+package jp.co.fsz.clounect.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * <p>[概要] Google Calendar の差分同期の状態を表すエンティティクラス。</p>
+ * <p>[詳細] このクラスはデータベースの "app_calendar_sync_state" テーブルにマッピングされ、
+ * サイトとカレンダーIDの組み合わせごとに、次回の差分取得に使用する同期トークンを保持します。</p>
+ * <p>[備考] 同期トークンが無効になった場合は全件を再取得し、新しい同期トークンで置き換えます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Table(name = "app_calendar_sync_state")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class AppCalendarSyncState {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "app_site_id")
+  private Long appSiteId;
+
+  @Column(name = "calendar_id")
+  private String calendarId;
+
+  @Column(name = "sync_token")
+  private String syncToken;
+
+  @Column(name = "last_full_sync_at")
+  private LocalDateTime lastFullSyncAt;
+
+  @Column(name = "last_sync_at")
+  private LocalDateTime lastSyncAt;
+
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+}
@@ -0,0 +1,90 @@
+package jp.co.fsz.clounect.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * <p>[概要] app_data 再送ジョブを表すエンティティクラス。</p>
+ * <p>[詳細] このクラスはデータベースの "app_replay_job" テーブルにマッピングされ、
+ * 再送ジョブの絞り込み条件、進捗、およびチェックポイントを保持します。</p>
+ * <p>[備考] last_app_data_id は処理を完了した最後の app_data の ID で、再開時はこの ID より後の行から処理します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Table(name = "app_replay_job")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class AppReplayJob {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "app_site_id")
+  private Long appSiteId;
+
+  @Column(name = "from_time")
+  private LocalDateTime fromTime;
+
+  @Column(name = "to_time")
+  private LocalDateTime toTime;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "filter")
+  private ReplayFilter filter;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "state")
+  private ReplayJobState state;
+
+  @Column(name = "last_app_data_id")
+  private Long lastAppDataId;
+
+  @Column(name = "total")
+  private Long total;
+
+  @Column(name = "processed")
+  private Long processed;
+
+  @Column(name = "succeeded")
+  private Long succeeded;
+
+  @Column(name = "failed")
+  private Long failed;
+
+  @Column(name = "error_log")
+  private String errorLog;
+
+  @Column(name = "claimed_by")
+  private String claimedBy;
+
+  @Column(name = "heartbeat_at")
+  private LocalDateTime heartbeatAt;
+
+  private LocalDateTime createdAt;
+
+  private LocalDateTime updatedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    this.updatedAt = LocalDateTime.now();
+  }
+}
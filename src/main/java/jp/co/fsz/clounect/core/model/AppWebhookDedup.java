@@ -0,0 +1,65 @@
+package jp.co.fsz.clounect.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * <p>[概要] Webhookの重複排除キーを表すエンティティクラス。</p>
+ * <p>[詳細] このクラスはデータベースの "app_webhook_dedup" テーブルにマッピングされ、
+ * 受け付け済みのWebhookのキーと発行したトランザクションIDを保持します。</p>
+ * <p>[備考] dedup_key の一意制約により、複数インスタンスで同じWebhookを同時に受け付けた場合でも
+ * 1件のみが登録されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Table(name = "app_webhook_dedup")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class AppWebhookDedup {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "dedup_key")
+  private String dedupKey;
+
+  @Column(name = "webhook_url")
+  private String webhookUrl;
+
+  @Column(name = "record_id")
+  private String recordId;
+
+  @Column(name = "type")
+  private String type;
+
+  @Column(name = "payload_hash")
+  private String payloadHash;
+
+  @Column(name = "transaction_id")
+  private UUID transactionId;
+
+  @Column(name = "expires_at")
+  private LocalDateTime expiresAt;
+
+  private LocalDateTime createdAt;
+
+  @PrePersist
+  protected void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+}
@@ -0,0 +1,81 @@
+package jp.co.fsz.clounect.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * <p>[概要] Webhook受付キューを表すエンティティクラス。</p>
+ * <p>[詳細] このクラスはデータベースの "app_webhook_queue" テーブルにマッピングされ、
+ * JustSFAから受信したWebhookを処理前に永続化するための行を表します。</p>
+ * <p>[備考] Webhookは受信時にこのテーブルへ保存され、ワーカーが非同期に取り出して処理します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Table(name = "app_webhook_queue")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class AppWebhookQueue {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "transaction_id")
+  private UUID transactionId;
+
+  @Column(name = "webhook_url")
+  private String webhookUrl;
+
+  @Column(name = "record_id")
+  private String recordId;
+
+  @Column(name = "payload")
+  private String payload;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "status")
+  private WebhookQueueStatus status;
+
+  @Column(name = "attempts")
+  private Integer attempts;
+
+  @Column(name = "error_log")
+  private String errorLog;
+
+  @Column(name = "next_attempt_at")
+  private LocalDateTime nextAttemptAt;
+
+  @Column(name = "locked_at")
+  private LocalDateTime lockedAt;
+
+  @Column(name = "processed_at")
+  private LocalDateTime processedAt;
+
+  private LocalDateTime createdAt;
+
+  private LocalDateTime updatedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    this.createdAt = LocalDateTime.now();
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    this.updatedAt = LocalDateTime.now();
+  }
+}
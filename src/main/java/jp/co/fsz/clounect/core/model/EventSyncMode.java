@@ -0,0 +1,17 @@
+package jp.co.fsz.clounect.core.model;
+
+/**
+ * <p>[概要] Google Calendar へのイベントの反映方法を表す列挙型。</p>
+ * <p>[詳細] PER_ATTENDEE は参加者ごとに参加者1人のみを含むイベントを作成し、
+ * SHARED_EVENT は主催者のカレンダーにすべての参加者を含むイベントを1件だけ作成します。</p>
+ * <p>[備考] サイトの config の "calendarSyncMode" で指定し、指定がない場合は PER_ATTENDEE となります。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public enum EventSyncMode {
+  PER_ATTENDEE,
+  SHARED_EVENT
+}
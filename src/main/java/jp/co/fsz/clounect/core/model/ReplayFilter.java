@@ -0,0 +1,19 @@
+package jp.co.fsz.clounect.core.model;
+
+/**
+ * <p>[概要] 再送ジョブの対象を表す列挙型。</p>
+ * <p>[詳細] UNSYNCED は Google Calendar への反映結果（send_payload）がない行、SYNCED は反映済みの行、
+ * ALL はすべての行を対象とします。</p>
+ * <p>[備考] received_payload には最初の ADD_RECORD のペイロードのみが保存されるため、再送できるのは UNSYNCED のみです。
+ * SYNCED と ALL は再送ジョブの開始時に拒否されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public enum ReplayFilter {
+  ALL,
+  SYNCED,
+  UNSYNCED
+}
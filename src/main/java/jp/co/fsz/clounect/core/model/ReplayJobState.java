@@ -0,0 +1,17 @@
+package jp.co.fsz.clounect.core.model;
+
+/**
+ * <p>[概要] 再送ジョブの状態を表す列挙型。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public enum ReplayJobState {
+  RUNNING,
+  PAUSED,
+  COMPLETED,
+  FAILED,
+  CANCELLED
+}
@@ -0,0 +1,46 @@
+package jp.co.fsz.clounect.core.model;
+
+/**
+ * <p>[概要] Google Calendar のイベントを変更したときに参加者へ通知するかを表す列挙型。</p>
+ * <p>[詳細] Google Calendar API の sendUpdates パラメータに対応し、ALL はすべての参加者に、
+ * EXTERNAL_ONLY は Google Calendar 以外の参加者のみに通知し、NONE は通知しません。</p>
+ * <p>[備考] サイトの config の "calendarSendUpdates" で指定し、イベントの作成、更新、削除のすべてに適用します。
+ * 指定がない場合は、反映方法が SHARED_EVENT のサイトでは ALL、PER_ATTENDEE のサイトでは NONE となります。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public enum SendUpdatesPolicy {
+  ALL("all"),
+  EXTERNAL_ONLY("externalOnly"),
+  NONE("none");
+
+  private final String apiValue;
+
+  SendUpdatesPolicy(String apiValue) {
+    this.apiValue = apiValue;
+  }
+
+  /**
+   * <p>[概要] Google Calendar API の sendUpdates パラメータの値を返すメソッド。</p>
+   *
+   * @return sendUpdates パラメータの値
+   * @since 1.0
+   */
+  public String apiValue() {
+    return apiValue;
+  }
+
+  /**
+   * <p>[概要] 反映方法に応じた既定の通知方法を返すメソッド。</p>
+   *
+   * @param syncMode サイトのイベントの反映方法
+   * @return SHARED_EVENT の場合は ALL、それ以外は NONE
+   * @since 1.0
+   */
+  public static SendUpdatesPolicy defaultFor(EventSyncMode syncMode) {
+    return syncMode == EventSyncMode.SHARED_EVENT ? ALL : NONE;
+  }
+}
@@ -0,0 +1,18 @@
+package jp.co.fsz.clounect.core.model;
+
+/**
+ * <p>[概要] Webhook受付キューの処理状態を表す列挙型。</p>
+ * <p>[詳細] PENDING は未処理、PROCESSING はワーカーが処理中、DONE は処理完了、
+ * FAILED はリトライ上限に達したか再試行不可能なエラーで終了したことを示します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public enum WebhookQueueStatus {
+  PENDING,
+  PROCESSING,
+  DONE,
+  FAILED
+}
@@ -0,0 +1,56 @@
+package jp.co.fsz.clounect.core.repository;
+
+import jp.co.fsz.clounect.core.model.AppCalendarChannel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>[概要] AppCalendarChannelRepository Google Calendar の変更通知チャネルのリポジトリ。</p>
+ * <p>[詳細] JPAを利用するためのインターフェースです。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Repository
+public interface AppCalendarChannelRepository extends JpaRepository<AppCalendarChannel, Long> {
+
+  Optional<AppCalendarChannel> findByChannelId(String channelId);
+
+  List<AppCalendarChannel> findByAppSiteId(Long appSiteId);
+
+  List<AppCalendarChannel> findByAppSiteIdAndCalendarId(Long appSiteId, String calendarId);
+
+  /**
+   * <p>[概要] 指定した時刻より前に期限切れとなるチャネルを取得します。</p>
+   *
+   * @param before この時刻より前に期限切れとなるチャネルを対象とする
+   * @return 該当するチャネル
+   * @since 1.0
+   */
+  List<AppCalendarChannel> findByExpiresAtBefore(LocalDateTime before);
+
+  /**
+   * <p>[概要] 処理済みの通知番号を更新します。</p>
+   * <p>[詳細] 保存済みの番号より大きい場合のみ更新するため、再送や順序の入れ替わった通知では更新されません。</p>
+   *
+   * @param id            チャネルのID
+   * @param messageNumber 通知の X-Goog-Message-Number
+   * @return 更新件数
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppCalendarChannel c SET c.lastMessageNumber = :messageNumber "
+      + "WHERE c.id = :id AND (c.lastMessageNumber IS NULL OR c.lastMessageNumber < :messageNumber)")
+  int advanceMessageNumber(@Param("id") Long id, @Param("messageNumber") long messageNumber);
+}
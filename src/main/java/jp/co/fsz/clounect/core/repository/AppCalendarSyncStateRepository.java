@@ -0,0 +1,31 @@
+package jp.co.fsz.clounect.core.repository;
+
+import jp.co.fsz.clounect.core.model.AppCalendarSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * <p>[概要] AppCalendarSyncStateRepository Google Calendar の差分同期状態のリポジトリ。</p>
+ * <p>[詳細] JPAを利用するためのインターフェースです。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Repository
+public interface AppCalendarSyncStateRepository extends JpaRepository<AppCalendarSyncState, Long> {
+
+  /**
+   * <p>[概要] サイトとカレンダーIDに対応する同期状態を取得します。</p>
+   *
+   * @param appSiteId  AppSiteInfoのID
+   * @param calendarId カレンダーID
+   * @return 該当する同期状態
+   * @since 1.0
+   */
+  Optional<AppCalendarSyncState> findByAppSiteIdAndCalendarId(Long appSiteId, String calendarId);
+
+}
@@ -1,5 +1,7 @@
 package jp.co.fsz.clounect.core.repository;
 
+import jp.co.fsz.clounect.core.dto.AppDataEventEtag;
+import jp.co.fsz.clounect.core.dto.AppDataReplayRow;
 import jp.co.fsz.clounect.core.model.AppData;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,6 +10,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,9 +27,63 @@ public interface AppDataRepository extends JpaRepository<AppData, Long> {
 
   Page<AppData> findByIsActiveTrue(Pageable pageable);
 
-  @Query(value = "SELECT ad.* from app_data ad where CAST(ad.received_payload as JSON)->'request'->0->>'id' = :recId AND ad.app_site_id = :appSiteId", nativeQuery = true)
+  @Query(value = "SELECT ad.* from app_data ad where CAST(ad.received_payload as JSON)->'request'->0->>'id' = :recId AND ad.app_site_id = :appSiteId AND (ad.cycle IS NULL OR ad.cycle <> 'GOOGLE_PUSH')", nativeQuery = true)
   Optional<AppData> getAppData(@Param("recId") String recId, @Param("appSiteId") Long appSiteId);
 
+  /**
+   * <p>[概要] send_payload に記録したイベントの ETag を取得します。</p>
+   * <p>[詳細] サイトの app_data の send_payload の response から、指定したイベントIDのイベントIDと ETag を取得します。</p>
+   * <p>[備考] Google からの変更通知で記録した行（cycle が GOOGLE_PUSH）は対象外です。</p>
+   *
+   * @param appSiteId AppSiteInfoのID
+   * @param eventIds  イベントID
+   * @return イベントIDと ETag
+   * @since 1.0
+   */
+  @Query(value = "SELECT e->>'id' AS eventId, e->'load'->>'etag' AS etag FROM app_data ad "
+      + "CROSS JOIN json_array_elements(CAST(ad.send_payload AS JSON)->'response') e "
+      + "WHERE ad.app_site_id = :appSiteId AND ad.send_payload IS NOT NULL "
+      + "AND (ad.cycle IS NULL OR ad.cycle <> 'GOOGLE_PUSH') "
+      + "AND e->>'id' IN (:eventIds)", nativeQuery = true)
+  List<AppDataEventEtag> findSentEventEtags(@Param("appSiteId") Long appSiteId,
+      @Param("eventIds") Collection<String> eventIds);
+
   @Query("SELECT u FROM AppData u WHERE u.detail = :query")
   Page<AppData> getAppDataByDetail(String query, Pageable pageable);
+
+  /**
+   * <p>[概要] 再送対象の行を ID 順に取得します。</p>
+   * <p>[詳細] 指定した ID より後の行から、サイトと作成日時の範囲で絞り込んだ未反映の行（send_payload がない行）を取得します。</p>
+   * <p>[備考] siteId が null の場合はすべてのサイトを対象とします。
+   * received_payload には最初の ADD_RECORD のペイロードのみが保存されるため、反映済みの行や削除済みの行を再送すると
+   * 後続の更新や削除を取り消してしまいます。そのため send_payload がある行は対象外です。
+   * Google からの変更通知で記録した行（cycle が GOOGLE_PUSH）も対象外です。</p>
+   *
+   * @param afterId この ID より後の行を対象とする
+   * @param siteId  AppSiteInfoのID
+   * @param from    作成日時の開始（この日時を含む）
+   * @param to      作成日時の終了（この日時を含まない）
+   * @param limit   取得する最大件数
+   * @return 再送対象の行
+   * @since 1.0
+   */
+  @Query(value = "SELECT ad.id AS id, ad.app_site_id AS appSiteId, s.webhook_url AS webhookUrl, "
+      + "ad.received_payload AS receivedPayload "
+      + "FROM app_data ad JOIN app_site_info s ON s.id = ad.app_site_id "
+      + "WHERE ad.id > :afterId AND (CAST(:siteId AS BIGINT) IS NULL OR ad.app_site_id = :siteId) "
+      + "AND ad.created_at >= :from AND ad.created_at < :to "
+      + "AND (ad.cycle IS NULL OR ad.cycle <> 'GOOGLE_PUSH') "
+      + "AND ad.send_payload IS NULL "
+      + "ORDER BY ad.id LIMIT :limit", nativeQuery = true)
+  List<AppDataReplayRow> findReplayRows(@Param("afterId") Long afterId,
+      @Param("siteId") Long siteId, @Param("from") LocalDateTime from,
+      @Param("to") LocalDateTime to, @Param("limit") int limit);
+
+  @Query(value = "SELECT COUNT(*) FROM app_data ad "
+      + "WHERE (CAST(:siteId AS BIGINT) IS NULL OR ad.app_site_id = :siteId) "
+      + "AND ad.created_at >= :from AND ad.created_at < :to "
+      + "AND (ad.cycle IS NULL OR ad.cycle <> 'GOOGLE_PUSH') "
+      + "AND ad.send_payload IS NULL", nativeQuery = true)
+  long countReplayRows(@Param("siteId") Long siteId, @Param("from") LocalDateTime from,
+      @Param("to") LocalDateTime to);
 }
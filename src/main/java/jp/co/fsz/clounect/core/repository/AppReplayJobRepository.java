@@ -0,0 +1,130 @@
+package jp.co.fsz.clounect.core.repository;
+
+import jp.co.fsz.clounect.core.model.AppReplayJob;
+import jp.co.fsz.clounect.core.model.ReplayJobState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>[概要] AppReplayJobRepository app_data 再送ジョブのリポジトリ。</p>
+ * <p>[詳細] JPAを利用するためのインターフェースです。</p>
+ * <p>[備考] 状態と進捗は条件付きの UPDATE 文で更新し、管理者による取消しや一時停止と実行中のジョブの進捗更新が互いに上書きしないようにします。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Repository
+public interface AppReplayJobRepository extends JpaRepository<AppReplayJob, Long> {
+
+  List<AppReplayJob> findByState(ReplayJobState state);
+
+  /**
+   * <p>[概要] ジョブの状態を遷移させるメソッド。</p>
+   * <p>[詳細] 現在の状態が指定した状態のいずれかである場合のみ、新しい状態に更新します。</p>
+   *
+   * @param id       ジョブのID
+   * @param expected 遷移元として許可する状態
+   * @param state    新しい状態
+   * @param now      更新日時
+   * @return 更新した件数
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.state = :state, j.updatedAt = :now "
+      + "WHERE j.id = :id AND j.state IN :expected")
+  int transition(@Param("id") Long id, @Param("expected") Collection<ReplayJobState> expected,
+      @Param("state") ReplayJobState state, @Param("now") LocalDateTime now);
+
+  /**
+   * <p>[概要] 実行中のジョブの実行権を取得するメソッド。</p>
+   * <p>[詳細] ジョブが RUNNING で、実行権を持つインスタンスがないか、自身が持っているか、
+   * 最後のハートビートが staleBefore より前の場合のみ、実行権を取得してハートビートを更新します。</p>
+   *
+   * @param id          ジョブのID
+   * @param owner       実行権を取得するインスタンスのID
+   * @param running     RUNNING 状態
+   * @param staleBefore この時刻より前のハートビートは放棄されたとみなす
+   * @param now         現在時刻
+   * @return 取得できた場合は 1
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.claimedBy = :owner, j.heartbeatAt = :now "
+      + "WHERE j.id = :id AND j.state = :running AND (j.claimedBy IS NULL "
+      + "OR j.claimedBy = :owner OR j.heartbeatAt IS NULL OR j.heartbeatAt < :staleBefore)")
+  int claim(@Param("id") Long id, @Param("owner") String owner,
+      @Param("running") ReplayJobState running, @Param("staleBefore") LocalDateTime staleBefore,
+      @Param("now") LocalDateTime now);
+
+  /**
+   * <p>[概要] 実行権を持つジョブのハートビートを更新するメソッド。</p>
+   *
+   * @param id    ジョブのID
+   * @param owner 実行権を持つインスタンスのID
+   * @param now   現在時刻
+   * @return 実行権を持っている場合は 1、他のインスタンスに取得された場合は 0
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.heartbeatAt = :now "
+      + "WHERE j.id = :id AND j.claimedBy = :owner")
+  int heartbeat(@Param("id") Long id, @Param("owner") String owner,
+      @Param("now") LocalDateTime now);
+
+  /**
+   * <p>[概要] ジョブの実行権を解放するメソッド。</p>
+   *
+   * @param id    ジョブのID
+   * @param owner 実行権を持つインスタンスのID
+   * @return 更新した件数
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.claimedBy = null, j.heartbeatAt = null "
+      + "WHERE j.id = :id AND j.claimedBy = :owner")
+  int release(@Param("id") Long id, @Param("owner") String owner);
+
+  /**
+   * <p>[概要] ジョブの進捗とチェックポイントを記録するメソッド。</p>
+   * <p>[詳細] 処理件数を加算し、処理を完了した最後の app_data の ID を記録します。エラーがない場合は既存のエラーログを保持します。</p>
+   *
+   * @param id            ジョブのID
+   * @param lastAppDataId 処理を完了した最後の app_data の ID
+   * @param succeeded     成功した件数
+   * @param failed        失敗した件数
+   * @param errorLog      最後に発生したエラー
+   * @param now           更新日時
+   * @return 更新した件数
+   * @since 1.0
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.lastAppDataId = :lastAppDataId, "
+      + "j.processed = j.processed + :succeeded + :failed, "
+      + "j.succeeded = j.succeeded + :succeeded, j.failed = j.failed + :failed, "
+      + "j.errorLog = COALESCE(:errorLog, j.errorLog), j.updatedAt = :now WHERE j.id = :id")
+  int recordProgress(@Param("id") Long id, @Param("lastAppDataId") Long lastAppDataId,
+      @Param("succeeded") long succeeded, @Param("failed") long failed,
+      @Param("errorLog") String errorLog, @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE AppReplayJob j SET j.state = :state, j.errorLog = :errorLog, j.updatedAt = :now "
+      + "WHERE j.id = :id")
+  int fail(@Param("id") Long id, @Param("state") ReplayJobState state,
+      @Param("errorLog") String errorLog, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,49 @@
+package jp.co.fsz.clounect.core.repository;
+
+import jp.co.fsz.clounect.core.model.AppWebhookDedup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <p>[概要] AppWebhookDedupRepository Webhook重複排除キーのリポジトリ。</p>
+ * <p>[詳細] JPAを利用するためのインターフェースです。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Repository
+public interface AppWebhookDedupRepository extends JpaRepository<AppWebhookDedup, Long> {
+
+  Optional<AppWebhookDedup> findByDedupKey(String dedupKey);
+
+  /**
+   * <p>[概要] トランザクションIDに対応する重複排除キーを削除します。</p>
+   *
+   * @param transactionId 登録時に発行したトランザクションID
+   * @return 削除件数
+   * @since 1.0
+   */
+  @Modifying
+  @Query("DELETE FROM AppWebhookDedup d WHERE d.transactionId = :transactionId")
+  int deleteByTransactionId(@Param("transactionId") UUID transactionId);
+
+  /**
+   * <p>[概要] 有効期限切れの重複排除キーを削除します。</p>
+   *
+   * @param before この時刻より前に期限切れとなった行を対象とする
+   * @return 削除件数
+   * @since 1.0
+   */
+  @Modifying
+  @Query("DELETE FROM AppWebhookDedup d WHERE d.expiresAt < :before")
+  int deleteExpired(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,103 @@
+package jp.co.fsz.clounect.core.repository;
+
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.core.model.WebhookQueueStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>[概要] AppWebhookQueueRepository Webhook受付キューのリポジトリ。</p>
+ * <p>[詳細] JPAを利用するためのインターフェースです。</p>
+ * <p>[備考] 取り出し処理は FOR UPDATE SKIP LOCKED を使用し、複数ワーカー間で同じ行を重複して取得しないようにします。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Repository
+public interface AppWebhookQueueRepository extends JpaRepository<AppWebhookQueue, Long> {
+
+  /**
+   * <p>[概要] 処理可能なキュー行をロックして取得します。</p>
+   * <p>[詳細] PENDING 状態かつ次回実行時刻を過ぎた行を登録順に取得し、行ロックを取得します。
+   * テナント（WebhookのUUID）ごとに登録順で先頭から perTenant 件までに制限し、除外するテナントの行は取得しません。
+   * 同じレコードにより前に登録された PENDING または PROCESSING の行（再試行待ちや他のインスタンスで処理中の行）がある場合は、
+   * その行が処理されるまで取得しません。</p>
+   * <p>[備考] トランザクション内で呼び出す必要があります。
+   * 1つのテナントの滞留した行が取り出し件数を占有し、他のテナントの行が取り出されなくなることを防ぎます。
+   * excluded が空の場合は SQL の NOT IN が成立しないため、呼び出し元で空文字列のみのリストを渡します。</p>
+   *
+   * @param now       現在時刻
+   * @param limit     取得する最大件数
+   * @param perTenant テナントごとに取得する最大件数
+   * @param excluded  取得しないテナントのWebhookのUUID
+   * @return ロックされたキュー行のリスト
+   * @since 1.0
+   */
+  @Query(value = "SELECT q.* FROM app_webhook_queue q WHERE q.status = 'PENDING' AND q.id IN ("
+      + "SELECT r.id FROM (SELECT c.id, ROW_NUMBER() OVER "
+      + "(PARTITION BY c.webhook_url ORDER BY c.id) AS rn FROM app_webhook_queue c "
+      + "WHERE c.status = 'PENDING' AND c.next_attempt_at <= :now "
+      + "AND c.webhook_url NOT IN (:excluded) "
+      + "AND NOT EXISTS (SELECT 1 FROM app_webhook_queue p WHERE p.webhook_url = c.webhook_url "
+      + "AND p.record_id = c.record_id AND p.id < c.id "
+      + "AND p.status IN ('PENDING', 'PROCESSING'))) r "
+      + "WHERE r.rn <= :perTenant ORDER BY r.id LIMIT :limit) "
+      + "ORDER BY q.id FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<AppWebhookQueue> findClaimable(@Param("now") LocalDateTime now,
+      @Param("limit") int limit, @Param("perTenant") int perTenant,
+      @Param("excluded") Collection<String> excluded);
+
+  long countByStatus(WebhookQueueStatus status);
+
+  boolean existsByWebhookUrlAndRecordIdAndIdLessThanAndStatusIn(String webhookUrl,
+      String recordId, Long id, Collection<WebhookQueueStatus> statuses);
+
+  long countByWebhookUrlAndStatusIn(String webhookUrl, Collection<WebhookQueueStatus> statuses);
+
+  @Query("SELECT MIN(q.createdAt) FROM AppWebhookQueue q WHERE q.status = :status")
+  LocalDateTime findOldestCreatedAt(@Param("status") WebhookQueueStatus status);
+
+  /**
+   * <p>[概要] 処理中の行のロック時刻を更新します。</p>
+   * <p>[詳細] パーティションの待ち行列や UPDATE_RECORD の保留中など、メモリ上で処理を待っている行が
+   * 放置された行として解放されないようにします。</p>
+   *
+   * @param ids        ロック時刻を更新する行のID
+   * @param now        現在時刻
+   * @param processing PROCESSING 状態
+   * @return 更新件数
+   * @since 1.0
+   */
+  @Modifying
+  @Query("UPDATE AppWebhookQueue q SET q.lockedAt = :now "
+      + "WHERE q.id IN :ids AND q.status = :processing")
+  int refreshLocks(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now,
+      @Param("processing") WebhookQueueStatus processing);
+
+  /**
+   * <p>[概要] 処理中のまま放置された行を PENDING に戻します。</p>
+   * <p>[詳細] ワーカーの異常終了などでロック時刻が一定時間を超えた PROCESSING 行を再処理対象にします。</p>
+   *
+   * @param before     この時刻より前にロックされた行を対象とする
+   * @param pending    PENDING 状態
+   * @param processing PROCESSING 状態
+   * @return 更新件数
+   * @since 1.0
+   */
+  @Modifying
+  @Query("UPDATE AppWebhookQueue q SET q.status = :pending, q.lockedAt = null "
+      + "WHERE q.status = :processing AND q.lockedAt < :before")
+  int releaseStaleLocks(@Param("before") LocalDateTime before,
+      @Param("pending") WebhookQueueStatus pending,
+      @Param("processing") WebhookQueueStatus processing);
+}
@@ -6,7 +6,9 @@ import jp.co.fsz.clounect.core.model.AppData;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -43,4 +45,6 @@ public interface AppDataService {
 
   Optional<AppDataDto> getByRecIdAndAppSiteId(Integer recId, Long appSiteId);
 
+  Map<String, String> getSentEventEtags(Long appSiteId, Collection<String> eventIds);
+
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package jp.co.fsz.clounect.core.service;
+
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+
+import java.util.Optional;
+
+public interface SiteRoutingService {
+
+  Optional<SiteRoute> findByWebhookUrl(String webhookUrl);
+
+  void evict(Long siteId);
+}
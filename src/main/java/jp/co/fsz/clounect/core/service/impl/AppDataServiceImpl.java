@@ -1,6 +1,7 @@
 package jp.co.fsz.clounect.core.service.impl;
 
 import jp.co.fsz.clounect.core.dto.AppDataDto;
+import jp.co.fsz.clounect.core.dto.AppDataEventEtag;
 import jp.co.fsz.clounect.core.exception.ResourceNotFoundException;
 import jp.co.fsz.clounect.core.model.AppData;
 import jp.co.fsz.clounect.core.repository.AppDataRepository;
@@ -16,7 +17,10 @@ import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -149,6 +153,18 @@ public class AppDataServiceImpl implements AppDataService {
     return obj.map(AppDataDto::fromEntity);
   }
 
+  @Override
+  public Map<String, String> getSentEventEtags(Long appSiteId, Collection<String> eventIds) {
+    Map<String, String> etags = new HashMap<>();
+    if (eventIds.isEmpty()) {
+      return etags;
+    }
+    for (AppDataEventEtag sent : appDataRepository.findSentEventEtags(appSiteId, eventIds)) {
+      etags.put(sent.getEventId(), sent.getEtag());
+    }
+    return etags;
+  }
+
   private User getAuthenticatedUser() {
     log.info("Inside getAuthenticatedUser");
     DefaultOidcUser defaultOidcUser = (DefaultOidcUser) SecurityContextHolder.getContext()
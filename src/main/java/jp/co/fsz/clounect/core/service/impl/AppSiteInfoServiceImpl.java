@@ -3,14 +3,18 @@ package jp.co.fsz.clounect.core.service.impl;
 import jp.co.fsz.clounect.core.model.AppSiteInfo;
 import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
 import jp.co.fsz.clounect.core.service.AppSiteInfoService;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
 import org.springframework.stereotype.Service;
 
 @Service
 public class AppSiteInfoServiceImpl implements AppSiteInfoService {
   private final AppSiteInfoRepository appSiteInfoRepository;
+  private final SiteRoutingService siteRoutingService;
 
-  public AppSiteInfoServiceImpl(AppSiteInfoRepository appSiteInfoRepository) {
+  public AppSiteInfoServiceImpl(AppSiteInfoRepository appSiteInfoRepository,
+      SiteRoutingService siteRoutingService) {
     this.appSiteInfoRepository = appSiteInfoRepository;
+    this.siteRoutingService = siteRoutingService;
   }
 
   @Override
@@ -22,6 +26,7 @@ public class AppSiteInfoServiceImpl implements AppSiteInfoService {
   public AppSiteInfo save(AppSiteInfo appSiteInfo) {
     appSiteInfo.setWebhookUrl("/webhook/");
     appSiteInfo = appSiteInfoRepository.save(appSiteInfo);
+    siteRoutingService.evict(appSiteInfo.getId());
     appSiteInfo.setWebhookUrl("/webhook/" + appSiteInfo.getUuid());
     return appSiteInfo;
   }
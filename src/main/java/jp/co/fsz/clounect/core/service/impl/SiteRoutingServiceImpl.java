@@ -0,0 +1,97 @@
+package jp.co.fsz.clounect.core.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.GoogleCredentialsDto;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.mapper.CredentialsMapper;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>[概要] Webhookのルーティング情報をキャッシュするサービスクラス。</p>
+ * <p>[詳細] WebhookのUUIDから {@link SiteRoute} への対応をメモリ上に保持し、
+ * Webhookの受信ごとにAppSiteInfoをデータベースから読み込まないようにします。</p>
+ * <p>[備考] AppSiteInfoを更新する処理は {@link #evict(Long)} を呼び出してキャッシュを無効化します。
+ * 他のインスタンスでの更新に備え、google.site.routing.ttl-seconds を過ぎたキャッシュは再読み込みします。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class SiteRoutingServiceImpl implements SiteRoutingService {
+  private final AppSiteInfoRepository appSiteInfoRepository;
+  private final CredentialsMapper credentialsMapper;
+  private final ConcurrentHashMap<String, CachedRoute> routes = new ConcurrentHashMap<>();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  @Value("${google.site.routing.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  private record CachedRoute(SiteRoute route, long loadedAt) {
+  }
+
+  public SiteRoutingServiceImpl(AppSiteInfoRepository appSiteInfoRepository,
+      CredentialsMapper credentialsMapper, MeterRegistry meterRegistry) {
+    this.appSiteInfoRepository = appSiteInfoRepository;
+    this.credentialsMapper = credentialsMapper;
+    this.hitCounter = meterRegistry.counter("site.routing.cache", "result", "hit");
+    this.missCounter = meterRegistry.counter("site.routing.cache", "result", "miss");
+  }
+
+  @Override
+  public Optional<SiteRoute> findByWebhookUrl(String webhookUrl) {
+    CachedRoute cached = routes.get(webhookUrl);
+    if (cached != null && System.currentTimeMillis() - cached.loadedAt() < ttlSeconds * 1000) {
+      hitCounter.increment();
+      return Optional.of(cached.route());
+    }
+    missCounter.increment();
+    Optional<SiteRoute> route = appSiteInfoRepository.findByWebhookUrl(webhookUrl)
+        .map(site -> toRoute(webhookUrl, site));
+    route.ifPresentOrElse(
+        value -> routes.put(webhookUrl, new CachedRoute(value, System.currentTimeMillis())),
+        () -> routes.remove(webhookUrl));
+    return route;
+  }
+
+  @Override
+  public void evict(Long siteId) {
+    if (siteId != null && routes.values().removeIf(cached -> siteId.equals(cached.route().siteId()))) {
+      log.debug("Evicted routing cache for site {}", siteId);
+    }
+  }
+
+  private SiteRoute toRoute(String webhookUrl, AppSiteInfo site) {
+    String clientId = null;
+    String clientSecret = null;
+    String refreshToken = null;
+    try {
+      GoogleCredentialsDto credentials = credentialsMapper.mapToGoogleCredentials(
+          Optional.of(site));
+      clientId = credentials.getClientId();
+      clientSecret = credentials.getClientSecret();
+      refreshToken = credentials.getRefreshToken();
+    } catch (NotFoundException | CouldNotPerformActionException | IllegalArgumentException e) {
+      log.debug("Site {} has no Google credentials: {}", site.getId(), e.getMessage());
+    }
+    EventSyncMode syncMode = credentialsMapper.mapToEventSyncMode(Optional.of(site));
+    return new SiteRoute(site.getId(), site.getAppId() != null ? site.getAppId().getId() : null,
+        Boolean.TRUE.equals(site.getIsActive()), webhookUrl, clientId, clientSecret,
+        refreshToken, syncMode, credentialsMapper.mapToSendUpdates(Optional.of(site), syncMode));
+  }
+}
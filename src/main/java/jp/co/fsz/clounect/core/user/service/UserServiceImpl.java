@@ -11,6 +11,7 @@ import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
 import jp.co.fsz.clounect.core.repository.projections.UserStat;
 import jp.co.fsz.clounect.core.service.AppSiteInfoService;
 import jp.co.fsz.clounect.core.service.AwsCognitoService;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
 import jp.co.fsz.clounect.core.user.dto.UserDto;
 import jp.co.fsz.clounect.core.user.entity.User;
 import jp.co.fsz.clounect.core.user.repository.UserRepo;
@@ -59,15 +60,19 @@ public class UserServiceImpl implements UserService {
 
   private final AppSiteInfoService appSiteInfoService;
 
+  private final SiteRoutingService siteRoutingService;
+
   public UserServiceImpl(UserRepo userRepo, AwsCognitoService awsCognitoService,
       AppSiteInfoRepository appSiteInfoRepo, @Lazy UserService userService,
-      AppMasterRepository appMasterRepo, AppSiteInfoService appSiteInfoService) {
+      AppMasterRepository appMasterRepo, AppSiteInfoService appSiteInfoService,
+      SiteRoutingService siteRoutingService) {
     this.userRepo = userRepo;
     this.awsCognitoService = awsCognitoService;
     this.appSiteInfoRepo = appSiteInfoRepo;
     this.userService = userService;
     this.appMasterRepo = appMasterRepo;
     this.appSiteInfoService = appSiteInfoService;
+    this.siteRoutingService = siteRoutingService;
   }
 
   /**
@@ -434,9 +439,11 @@ public class UserServiceImpl implements UserService {
       } else if (appSiteInfoEntity.getIsActive()) {
         appSiteInfoEntity.setIsActive(false);
         appSiteInfoRepo.save(appSiteInfoEntity);
+        siteRoutingService.evict(appSiteInfoEntity.getId());
       } else {
         appSiteInfoEntity.setIsActive(true);
         appSiteInfoRepo.save(appSiteInfoEntity);
+        siteRoutingService.evict(appSiteInfoEntity.getId());
       }
       return true;
     }
@@ -0,0 +1,124 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.controller;
+
+import jp.co.fsz.clounect.core.security.annotations.Admin;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WatchRequest;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.service.CalendarWatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * <p>[概要] Google Calendar の変更通知を扱うControllerクラス。</p>
+ * <p>[詳細] Google からの変更通知の受信と、管理者による変更通知チャネルの登録、停止、一覧取得のエンドポイントを提供します。</p>
+ * <p>[備考] 通知の受信は Google から呼び出されるため認証を必要とせず、チャネルのトークンで検証します。
+ * 通知はヘッダーのみで構成されるため、ローカル環境では同じヘッダーを持つ POST リクエストで通知を再現できます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@RestController
+@RequestMapping("/google/calendar/watch")
+@Slf4j
+public class CalendarWatchController {
+  private final CalendarWatchService calendarWatchService;
+
+  /**
+   * <p>[概要] CalendarWatchControllerのコンストラクタ。</p>
+   *
+   * @param calendarWatchService Google Calendar の変更通知サービス
+   * @since 1.0
+   */
+  public CalendarWatchController(CalendarWatchService calendarWatchService) {
+    this.calendarWatchService = calendarWatchService;
+  }
+
+  /**
+   * <p>[概要] Google からの変更通知を受信するメソッド。</p>
+   * <p>[詳細] チャネルを検証して差分取得を予約し、差分取得の完了を待たずに 200 OK を返します。</p>
+   *
+   * @param channelId     X-Goog-Channel-ID
+   * @param channelToken  X-Goog-Channel-Token
+   * @param resourceState X-Goog-Resource-State
+   * @param messageNumber X-Goog-Message-Number
+   * @return 200 OK、またはチャネルが存在しないかトークンが一致しない場合は 404 Not Found
+   * @since 1.0
+   */
+  @PostMapping("/notifications")
+  public ResponseEntity<Void> notification(
+      @RequestHeader("X-Goog-Channel-ID") String channelId,
+      @RequestHeader(value = "X-Goog-Channel-Token", required = false) String channelToken,
+      @RequestHeader("X-Goog-Resource-State") String resourceState,
+      @RequestHeader(value = "X-Goog-Message-Number", required = false) Long messageNumber) {
+    try {
+      calendarWatchService.onNotification(channelId, channelToken, resourceState, messageNumber);
+      return ResponseEntity.ok().build();
+    } catch (NotFoundException e) {
+      log.warn("Rejected calendar notification: {}", e.getMessage());
+      return ResponseEntity.notFound().build();
+    }
+  }
+
+  /**
+   * <p>[概要] 変更通知チャネルを登録するメソッド。</p>
+   *
+   * @param request チャネルの登録リクエスト
+   * @return 登録したチャネル
+   * @since 1.0
+   */
+  @PostMapping
+  @Admin
+  public ResponseEntity<Object> register(@RequestBody WatchRequest request) {
+    try {
+      return new ResponseEntity<>(
+          calendarWatchService.register(request.siteId(), request.calendarId()),
+          HttpStatus.CREATED);
+    } catch (NotFoundException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.NOT_FOUND);
+    } catch (IllegalStateException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.CONFLICT);
+    } catch (IOException e) {
+      log.error("Failed to register watch channel", e);
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.BAD_GATEWAY);
+    }
+  }
+
+  /**
+   * <p>[概要] 変更通知チャネルを停止するメソッド。</p>
+   *
+   * @param siteId     AppSiteInfoのID
+   * @param calendarId カレンダーのID
+   * @return 停止したチャネル数
+   * @since 1.0
+   */
+  @DeleteMapping
+  @Admin
+  public ResponseEntity<Object> unregister(@RequestParam Long siteId,
+      @RequestParam String calendarId) {
+    try {
+      return ResponseEntity.ok(Map.of("stopped",
+          calendarWatchService.unregister(siteId, calendarId)));
+    } catch (NotFoundException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.NOT_FOUND);
+    }
+  }
+
+  @GetMapping
+  @Admin
+  public ResponseEntity<Object> list(@RequestParam Long siteId) {
+    return ResponseEntity.ok(calendarWatchService.findBySite(siteId));
+  }
+}
@@ -1,19 +1,25 @@
 package jp.co.fsz.clounect.googleCalendarPlugin.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarAccess;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.UserDetails;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookBatchResult;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.BatchTooLargeException;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CredentialsMissingException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
 import jp.co.fsz.clounect.googleCalendarPlugin.service.*;
 import jp.co.fsz.clounect.googleCalendarPlugin.util.SecurityUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.json.simple.parser.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.view.RedirectView;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -36,20 +42,25 @@ public class GoogleController {
   private final JustSfaService justSfaService;
   private final GoogleRecordService googleRecordService;
   private final SecurityUtil securityUtil;
-  private final CheckTypeService checkTypeService;
+  private final WebhookIntakeService webhookIntakeService;
+  private final WebhookBatchService webhookBatchService;
+  private final CalendarAccessService calendarAccessService;
 
   @Autowired
   public GoogleController(GoogleCalendarService googleCalendarService,
       JsonDataOptimizationService jsonDataOptimizationService,
       JustSfaService justSfaService, GoogleRecordService googleRecordService,
-      SecurityUtil securityUtil, CheckTypeService checkTypeService) {
+      SecurityUtil securityUtil, WebhookIntakeService webhookIntakeService,
+      WebhookBatchService webhookBatchService, CalendarAccessService calendarAccessService) {
 
     this.googleCalendarService = googleCalendarService;
     this.jsonDataOptimizationService = jsonDataOptimizationService;
     this.justSfaService = justSfaService;
     this.googleRecordService = googleRecordService;
     this.securityUtil = securityUtil;
-    this.checkTypeService = checkTypeService;
+    this.webhookIntakeService = webhookIntakeService;
+    this.webhookBatchService = webhookBatchService;
+    this.calendarAccessService = calendarAccessService;
   }
 
   /**
@@ -111,26 +122,23 @@ public class GoogleController {
    * <p>[詳細] 提供されたアクセストークンとメールリストを使用して、カレンダーアクセスを検証します。</p>
    * <p>[メソッド名] validateEmail</p>
    * <p>[概要] アクセストークンとメールリストを使用して、カレンダーアクセスを検証するメソッド。</p>
-   * <p>[詳細] 提供されたアクセストークンとメールリストを使用して、各メールアドレスに対するカレンダーアクセスを検証します。</p>
+   * <p>[詳細] free/busy の問い合わせでカレンダーアクセスを検証します。
+   * 結果はサイトとメールアドレスごとにキャッシュされ、キャッシュにある場合はアクセストークンを取得しません。</p>
    *
    * @param email メールアドレスのリスト
    * @return HTTPステータスおよびメッセージ
-   * @throws GoogleJsonResponseException メール検証中にエラーが発生した場合
    * @since 1.0
    */
   @PostMapping("/validate-email")
   public ResponseEntity<Map<String, Object>> validateEmail(@RequestBody Map<String, String> email) {
     Map<String, Object> response = new HashMap<>();
     try {
-      OAuthToken token = securityUtil.getAccessToken();
-      String accessToken = token.getAccessToken();
       String emailToBeValidated = email.get("email");
       if (checkNullAndEmpty(emailToBeValidated)) {
         throw new CredentialsMissingException("Emails list is missing or empty");
       }
 
-      boolean validate = googleCalendarService.checkCalendarAccess(accessToken,
-          emailToBeValidated);
+      boolean validate = validateCalendars(List.of(emailToBeValidated)).get(0).accessible();
 
       log.info("validateEmail: " + validate);
       response.put("success", validate);
@@ -139,13 +147,55 @@ public class GoogleController {
 
       HttpStatus httpStatus = validate ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
       return new ResponseEntity<>(response, httpStatus);
-    } catch (GoogleJsonResponseException e) {
+    } catch (IOException e) {
       response.put("success", false);
       response.put("message", "Error validating email: " + e.getMessage());
       return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
   }
 
+  /**
+   * <p>[概要] 複数のメールアドレスをまとめて検証するメソッド。</p>
+   * <p>[詳細] ユーザー設定フォームの userRecord の一覧を受け取り、googleEmail を1回の free/busy 問い合わせで検証して、
+   * 各ユーザーの validateEmailFlag に結果を設定して返します。</p>
+   * <p>[備考] googleEmail が空のユーザーは検証せず、validateEmailFlag を false とします。</p>
+   *
+   * @param users ユーザー設定フォームの userRecord の一覧
+   * @return HTTPステータス、すべて有効かどうか、および検証結果を設定したユーザーの一覧
+   * @since 1.0
+   */
+  @PostMapping("/validate-emails")
+  public ResponseEntity<Map<String, Object>> validateEmails(@RequestBody List<UserDetails> users) {
+    Map<String, Object> response = new HashMap<>();
+    try {
+      List<String> emails = users.stream()
+          .map(UserDetails::getGoogleEmail)
+          .filter(value -> !checkNullAndEmpty(value))
+          .toList();
+      Map<String, Boolean> accessible = new HashMap<>();
+      if (!emails.isEmpty()) {
+        validateCalendars(emails).forEach(
+            access -> accessible.put(access.email(), access.accessible()));
+      }
+      users.forEach(user -> user.setValidateEmailFlag(
+          accessible.getOrDefault(user.getGoogleEmail(), false)));
+
+      response.put("success", users.stream().allMatch(UserDetails::isValidateEmailFlag));
+      response.put("users", users);
+      return new ResponseEntity<>(response, HttpStatus.OK);
+    } catch (IOException e) {
+      response.put("success", false);
+      response.put("message", "Error validating emails: " + e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private List<CalendarAccess> validateCalendars(List<String> emails) throws IOException {
+    Long siteId = securityUtil.getExistingRecord().map(AppSiteInfo::getId).orElse(null);
+    return calendarAccessService.validate(siteId,
+        () -> securityUtil.getAccessToken().getAccessToken(), emails);
+  }
+
   /**
    * <p>[概要] SFAデータの検証メソッド。</p>
    * <p>[詳細] 提供された状態情報を使用して、SFAデータの検証を行います。</p>
@@ -198,20 +248,74 @@ public class GoogleController {
   }
 
   /**
-   * <p>[概要] Google イベントを処理するメソッド。</p>
-   * <p>[詳細] Google イベントに関する情報を処理し、指定された UUID を使用して特定の処理を実行します。</p>
-   * <p>[備考] Google イベントのデータと処理対象の UUID がパラメータとして渡されます。</p>
+   * <p>[概要] Google イベントを受け付けるメソッド。</p>
+   * <p>[詳細] Google イベントに関する情報を受付キューに保存し、処理は非同期に行います。</p>
+   * <p>[備考] キューへの保存が完了した時点で 202 Accepted とトランザクションIDを返します。
+   * UUID に対応するサイトが存在しない場合は 404 Not Found を返します。
+   * テナントの未処理件数が上限に達している場合は 429 Too Many Requests と Retry-After ヘッダーを返します。</p>
    *
-   * @param data リクエストボディから取得した Google イベントのデータ
+   * @param data リクエストボディから取得した Google イベントのデータ（受信したバイト列のまま）
    * @param uuid Google イベントを処理するための UUID
-   * @return HTTPステータスおよびメッセージ
+   * @return HTTPステータスおよびトランザクションID
    * @since 1.0
    */
   @PostMapping("/webhook/{uuid}")
-  public ResponseEntity event(@RequestBody Map<String, Object> data,
+  public ResponseEntity<Map<String, Object>> event(@RequestBody byte[] data,
       @PathVariable String uuid) {
+    Map<String, Object> response = new HashMap<>();
+    try {
+      UUID transactionId = webhookIntakeService.enqueue(uuid, data);
+      response.put("transactionId", transactionId);
+      return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+    } catch (IllegalArgumentException e) {
+      response.put("message", e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    } catch (NotFoundException e) {
+      response.put("message", e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+    } catch (TenantThrottledException e) {
+      return throttled(response, e);
+    }
+  }
+
+  /**
+   * <p>[概要] 複数の Google イベントをまとめて処理するメソッド。</p>
+   * <p>[詳細] JustSFAのバックフィルや一括編集で発生する複数のレコードを1回のリクエストで受け取り、
+   * レコードごとの処理結果を返します。</p>
+   * <p>[備考] サイト情報とアクセストークンの取得はバッチ全体で1回のみ行います。</p>
+   *
+   * @param data リクエストボディから取得した Google イベントのデータの配列（受信したバイト列のまま）
+   * @param uuid Google イベントを処理するための UUID
+   * @return HTTPステータスおよびレコードごとの処理結果
+   * @since 1.0
+   */
+  @PostMapping("/webhook/{uuid}/batch")
+  public ResponseEntity<Map<String, Object>> batchEvent(@RequestBody byte[] data,
+      @PathVariable String uuid) {
+    Map<String, Object> response = new HashMap<>();
+    try {
+      List<WebhookBatchResult> results = webhookBatchService.process(uuid, data);
+      response.put("results", results);
+      return new ResponseEntity<>(response, HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      response.put("message", e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    } catch (NotFoundException e) {
+      response.put("message", e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+    } catch (BatchTooLargeException e) {
+      response.put("message", e.getMessage());
+      return new ResponseEntity<>(response, HttpStatus.PAYLOAD_TOO_LARGE);
+    } catch (TenantThrottledException e) {
+      return throttled(response, e);
+    }
+  }
 
-    checkTypeService.getPlayLoad(data, uuid, UUID.randomUUID());
-    return ResponseEntity.ok("Success");
+  private ResponseEntity<Map<String, Object>> throttled(Map<String, Object> response,
+      TenantThrottledException e) {
+    response.put("message", e.getMessage());
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(response);
   }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.controller;
+
+import jp.co.fsz.clounect.core.model.AppReplayJob;
+import jp.co.fsz.clounect.core.security.annotations.Admin;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.ReplayRequest;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.service.AppDataReplayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * <p>[概要] app_data 再送ジョブを操作するControllerクラス。</p>
+ * <p>[詳細] 管理者が再送ジョブを開始し、進捗の確認、一時停止、再開、および取消しを行うためのエンドポイントを提供します。</p>
+ * <p>[備考] すべてのエンドポイントに管理者権限が必要です。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@RestController
+@RequestMapping("/replay")
+@Slf4j
+public class ReplayController {
+  private final AppDataReplayService appDataReplayService;
+
+  /**
+   * <p>[概要] ReplayControllerのコンストラクタ。</p>
+   *
+   * @param appDataReplayService app_data 再送サービス
+   * @since 1.0
+   */
+  public ReplayController(AppDataReplayService appDataReplayService) {
+    this.appDataReplayService = appDataReplayService;
+  }
+
+  /**
+   * <p>[概要] 再送ジョブを開始するメソッド。</p>
+   * <p>[詳細] ジョブを登録してバックグラウンドで実行を開始し、202 Accepted とジョブの情報を返します。</p>
+   *
+   * @param request 再送ジョブの開始リクエスト
+   * @return 登録した再送ジョブ、または条件が正しくない場合は 400 Bad Request
+   * @since 1.0
+   */
+  @PostMapping
+  @Admin
+  public ResponseEntity<Object> start(@RequestBody ReplayRequest request) {
+    try {
+      return new ResponseEntity<>(appDataReplayService.start(request), HttpStatus.ACCEPTED);
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * <p>[概要] 再送ジョブの進捗を取得するメソッド。</p>
+   *
+   * @param id ジョブのID
+   * @return 再送ジョブ、または存在しない場合は 404 Not Found
+   * @since 1.0
+   */
+  @GetMapping("/{id}")
+  @Admin
+  public ResponseEntity<Object> status(@PathVariable Long id) {
+    try {
+      return ResponseEntity.ok(appDataReplayService.find(id));
+    } catch (NotFoundException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.NOT_FOUND);
+    }
+  }
+
+  @PostMapping("/{id}/pause")
+  @Admin
+  public ResponseEntity<Object> pause(@PathVariable Long id) {
+    return transition(id, appDataReplayService::pause);
+  }
+
+  @PostMapping("/{id}/resume")
+  @Admin
+  public ResponseEntity<Object> resume(@PathVariable Long id) {
+    return transition(id, appDataReplayService::resume);
+  }
+
+  @PostMapping("/{id}/cancel")
+  @Admin
+  public ResponseEntity<Object> cancel(@PathVariable Long id) {
+    return transition(id, appDataReplayService::cancel);
+  }
+
+  /**
+   * <p>[概要] 再送ジョブの状態を遷移させるメソッド。</p>
+   * <p>[詳細] 遷移できた場合は現在のジョブ、現在の状態から遷移できない場合は 409 Conflict を返します。</p>
+   */
+  private ResponseEntity<Object> transition(Long id, Predicate<Long> action) {
+    try {
+      boolean changed = action.test(id);
+      AppReplayJob job = appDataReplayService.find(id);
+      return new ResponseEntity<>(job, changed ? HttpStatus.OK : HttpStatus.CONFLICT);
+    } catch (NotFoundException e) {
+      return new ResponseEntity<>(Map.of("error", e.getMessage()), HttpStatus.NOT_FOUND);
+    }
+  }
+}
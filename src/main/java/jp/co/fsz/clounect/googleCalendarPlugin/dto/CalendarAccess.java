@@ -0,0 +1,16 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+/**
+ * <p>[概要] カレンダーへのアクセス確認の結果。</p>
+ * <p>[詳細] free/busy の問い合わせで、メールアドレスのカレンダーを参照できたかどうかと、参照できなかった理由を保持します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param email      メールアドレス
+ * @param accessible カレンダーを参照できた場合は true
+ * @param reason     参照できなかった理由（Google のエラー理由。参照できた場合は null）
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record CalendarAccess(String email, boolean accessible, String reason) {
+}
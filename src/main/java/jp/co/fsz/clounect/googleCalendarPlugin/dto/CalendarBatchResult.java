@@ -0,0 +1,45 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+
+/**
+ * <p>[概要] Google Calendar バッチリクエストの1件分の結果。</p>
+ * <p>[詳細] 成功した場合はレスポンス、失敗した場合は Google API のエラーを保持します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param value        レスポンス（失敗した場合は null）
+ * @param error        Google API のエラー（成功した場合は null）
+ * @param retryAfterMs レスポンスの Retry-After から求めた待機時間（ミリ秒）。ない場合は -1
+ * @param <T>          レスポンスの型
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record CalendarBatchResult<T>(T value, GoogleJsonError error, long retryAfterMs) {
+
+  public static <T> CalendarBatchResult<T> success(T value) {
+    return new CalendarBatchResult<>(value, null, -1);
+  }
+
+  public static <T> CalendarBatchResult<T> failure(GoogleJsonError error) {
+    return failure(error, -1);
+  }
+
+  public static <T> CalendarBatchResult<T> failure(GoogleJsonError error, long retryAfterMs) {
+    return new CalendarBatchResult<>(null, error, retryAfterMs);
+  }
+
+  public boolean succeeded() {
+    return error == null;
+  }
+
+  /**
+   * <p>[概要] 失敗時の HTTP ステータスコードを返すメソッド。</p>
+   *
+   * @return HTTP ステータスコード（成功した場合は 0）
+   * @since 1.0
+   */
+  public int statusCode() {
+    return error == null ? 0 : error.getCode();
+  }
+}
@@ -0,0 +1,21 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import com.google.api.services.calendar.model.Event;
+
+import java.util.List;
+
+/**
+ * <p>[概要] Google Calendar から取得したイベントの変更内容。</p>
+ * <p>[詳細] 同期トークン以降に変更されたイベント、または全件取得したイベントと、次回の差分取得に使用する同期トークンを保持します。</p>
+ * <p>[備考] 差分取得では削除されたイベントも status が "cancelled" のイベントとして含まれます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param events        変更されたイベント
+ * @param nextSyncToken 次回の差分取得に使用する同期トークン
+ * @param fullSync      全件を取得した場合は true
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record CalendarChanges(List<Event> events, String nextSyncToken, boolean fullSync) {
+}
@@ -0,0 +1,15 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+/**
+ * <p>[概要] アクセストークンのキャッシュキー。</p>
+ * <p>[詳細] AppSiteInfoのIDとGoogleのクライアントIDの組み合わせで構成されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param siteId   AppSiteInfoのID
+ * @param clientId GoogleのクライアントID
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record GoogleTokenKey(Long siteId, String clientId) {
+}
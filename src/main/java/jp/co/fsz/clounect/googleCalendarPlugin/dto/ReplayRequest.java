@@ -0,0 +1,23 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import jp.co.fsz.clounect.core.model.ReplayFilter;
+
+import java.time.LocalDateTime;
+
+/**
+ * <p>[概要] app_data 再送ジョブの開始リクエスト。</p>
+ * <p>[詳細] 再送対象の app_data をサイト、作成日時の範囲、および反映状態で絞り込みます。</p>
+ * <p>[備考] siteId を省略した場合はすべてのサイト、filter を省略した場合は UNSYNCED が対象となります。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param siteId AppSiteInfoのID
+ * @param from   作成日時の開始（この日時を含む）
+ * @param to     作成日時の終了（この日時を含まない）
+ * @param filter 反映状態の絞り込み条件
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record ReplayRequest(Long siteId, LocalDateTime from, LocalDateTime to,
+                            ReplayFilter filter) {
+}
@@ -0,0 +1,14 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+/**
+ * <p>[概要] Google Calendar の変更通知チャネルの登録リクエスト。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param siteId     AppSiteInfoのID
+ * @param calendarId 通知の対象とするカレンダーのID
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record WatchRequest(Long siteId, String calendarId) {
+}
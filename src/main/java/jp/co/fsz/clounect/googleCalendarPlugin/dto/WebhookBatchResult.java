@@ -0,0 +1,23 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import java.util.UUID;
+
+/**
+ * <p>[概要] バッチWebhookの1レコード分の処理結果。</p>
+ * <p>[詳細] リクエスト内の位置、レコードID、イベント種別、処理状態、トランザクションID、およびエラー内容を保持します。</p>
+ * <p>[備考] status は SUCCESS、DUPLICATE、THROTTLED、FAILED のいずれかです。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param index         リクエスト内の位置
+ * @param recordId      SFAのレコードID
+ * @param type          イベント種別
+ * @param status        処理状態
+ * @param transactionId トランザクションID
+ * @param error         エラー内容
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record WebhookBatchResult(int index, String recordId, String type, String status,
+                                 UUID transactionId, String error) {
+}
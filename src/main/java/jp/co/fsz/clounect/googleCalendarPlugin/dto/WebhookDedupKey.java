@@ -0,0 +1,20 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+/**
+ * <p>[概要] Webhookの重複排除に使用するキー。</p>
+ * <p>[詳細] WebhookのUUID、SFAのレコードID、イベント種別、およびペイロードのハッシュ値で構成され、
+ * キーの記録先（配信IDがある場合は配信ごと、ない場合はレコードごと）のSHA-256ハッシュ値を {@code value} として保持します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param webhookUrl  WebhookのUUID
+ * @param recordId    SFAのレコードID
+ * @param type        イベント種別
+ * @param payloadHash ペイロードのSHA-256ハッシュ値
+ * @param value       重複排除キーの記録先
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record WebhookDedupKey(String webhookUrl, String recordId, String type,
+                              String payloadHash, String value) {
+}
@@ -0,0 +1,31 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import java.util.Map;
+
+/**
+ * <p>[概要] Webhook処理の順序保証に使用するパーティションキー。</p>
+ * <p>[詳細] AppSiteInfoのIDとSFAのレコードIDの組み合わせで構成され、
+ * 同じキーのWebhookは受信順に直列で処理されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param appSiteId AppSiteInfoのID
+ * @param recordId  SFAのレコードID
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record WebhookPartitionKey(Long appSiteId, String recordId) {
+
+  /**
+   * <p>[概要] ペイロードからパーティションキーを生成するメソッド。</p>
+   * <p>[詳細] ペイロードの "recordId" を文字列化してキーを生成します。</p>
+   *
+   * @param appSiteId AppSiteInfoのID
+   * @param payLoad   Webhookのペイロード
+   * @return パーティションキー
+   * @since 1.0
+   */
+  public static WebhookPartitionKey of(Long appSiteId, Map<String, Object> payLoad) {
+    return new WebhookPartitionKey(appSiteId, String.valueOf(payLoad.get("recordId")));
+  }
+}
@@ -0,0 +1,27 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.dto;
+
+import java.util.Map;
+
+/**
+ * <p>[概要] 受信したWebhookのペイロード。</p>
+ * <p>[詳細] 受信したリクエストボディの文字列と、それを1回だけ解析したマップを保持します。</p>
+ * <p>[備考] raw は受信時のJSONをそのまま保持し、received_payload に再シリアライズせずに保存するために使用します。
+ * 受信時の文字列がない場合は null です。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @param raw  受信したJSON文字列
+ * @param body 解析済みのペイロード
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public record WebhookPayload(String raw, Map<String, Object> body) {
+
+  public String recordId() {
+    return String.valueOf(body.get("recordId"));
+  }
+
+  public String type() {
+    return String.valueOf(body.get("type"));
+  }
+}
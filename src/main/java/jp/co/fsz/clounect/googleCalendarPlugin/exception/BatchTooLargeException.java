@@ -0,0 +1,24 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.exception;
+
+/**
+ * <p>[概要] バッチWebhookのレコード数が上限を超えた場合にスローされる例外クラス。</p>
+ * <p>[詳細] 1回のリクエストに含まれるレコード数が google.webhook.batch.max-records を超える場合にこの例外がスローされます。</p>
+ * <p>[備考] HTTP 413 のレスポンスに使用されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public class BatchTooLargeException extends RuntimeException {
+
+  /**
+   * <p>[概要] バッチWebhookのレコード数が上限を超えた場合にスローされる例外クラスのコンストラクタ。</p>
+   *
+   * @param message 受付を拒否した理由を示す説明
+   * @since 1.0
+   */
+  public BatchTooLargeException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,24 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.exception;
+
+/**
+ * <p>[概要] Google API の呼び出し上限を超えた場合にスローされる例外クラス。</p>
+ * <p>[詳細] ローカルのレート制限で、呼び出しの待機時間が上限を超える場合にこの例外がスローされます。</p>
+ * <p>[備考] Google に送信する前に拒否するため、Google 側の割り当ては消費しません。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+  /**
+   * <p>[概要] Google API の呼び出し上限を超えた場合にスローされる例外クラスのコンストラクタ。</p>
+   *
+   * @param message 呼び出しを拒否した理由を示す説明
+   * @since 1.0
+   */
+  public RateLimitExceededException(String message) {
+    super(message);
+  }
+}
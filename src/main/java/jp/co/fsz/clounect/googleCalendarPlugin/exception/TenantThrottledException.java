@@ -0,0 +1,31 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.exception;
+
+/**
+ * <p>[概要] テナントの受付上限を超えた場合にスローされる例外クラス。</p>
+ * <p>[詳細] 1つのサイトから受信したWebhookの未処理件数が上限に達した場合にこの例外がスローされます。</p>
+ * <p>[備考] 呼び出し元が再送までに待機すべき秒数を保持し、HTTP 429 の Retry-After ヘッダーに使用されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public class TenantThrottledException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  /**
+   * <p>[概要] テナントの受付上限を超えた場合にスローされる例外クラスのコンストラクタ。</p>
+   *
+   * @param message           受付を拒否した理由を示す説明
+   * @param retryAfterSeconds 再送までに待機すべき秒数
+   * @since 1.0
+   */
+  public TenantThrottledException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,417 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.AppDataReplayRow;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppReplayJob;
+import jp.co.fsz.clounect.core.model.ReplayFilter;
+import jp.co.fsz.clounect.core.model.ReplayJobState;
+import jp.co.fsz.clounect.core.repository.AppDataRepository;
+import jp.co.fsz.clounect.core.repository.AppReplayJobRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.ReplayRequest;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>[概要] app_data 再送サービスクラス。</p>
+ * <p>[詳細] 管理者が開始した再送ジョブに従い、保存済みの app_data の received_payload を
+ * Webhookと同じ処理パイプラインに再投入して Google Calendar へ再反映します。</p>
+ * <p>[備考] 対象の行は ID 順にページ単位で読み込み、ページ内の行を {@link WebhookPartitionedExecutor} で
+ * (appSiteId, recordId) ごとに直列、レコード間では google.replay.parallelism 件まで並列に処理します。
+ * 投入速度は google.replay.rate-per-second で制限します。
+ * ページの処理が完了するたびに最後の ID をチェックポイントとして記録するため、一時停止や再起動の後は続きから再開できます。
+ * 中断されたページの行は再開時にもう一度処理されます。
+ * ジョブは実行前に実行権（claimed_by と heartbeat_at）を条件付きの更新で取得するため、複数のインスタンスで同じジョブを実行しません。
+ * 実行中はページごとにハートビートを更新し、google.replay.claim-timeout-seconds を超えて更新されていない実行権は他のインスタンスが引き継ぎます。
+ * 対象は Google Calendar に反映されていない行（send_payload がない行）のみで、ADD_RECORD として再送します。
+ * received_payload には最初の ADD_RECORD のペイロードのみが保存されるため、反映済みの行を再送すると後続の更新が元に戻り、
+ * 削除済みの行では予定が再び更新されてしまうためです。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class AppDataReplayService {
+  private static final int MAX_ERROR_LENGTH = 2000;
+
+  private final AppReplayJobRepository appReplayJobRepository;
+  private final AppDataRepository appDataRepository;
+  private final SiteRoutingService siteRoutingService;
+  private final CheckTypeService checkTypeService;
+  private final WebhookPartitionedExecutor partitionedExecutor;
+  private final TaskExecutor replayJobExecutor;
+  private final ObjectMapper objectMapper;
+  private final Counter succeededCounter;
+  private final Counter failedCounter;
+  private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+  private final String owner = UUID.randomUUID().toString();
+
+  @Value("${google.replay.page-size:100}")
+  private int pageSize;
+
+  @Value("${google.replay.parallelism:4}")
+  private int parallelism;
+
+  @Value("${google.replay.rate-per-second:10}")
+  private double ratePerSecond;
+
+  @Value("${google.replay.claim-timeout-seconds:600}")
+  private long claimTimeoutSeconds;
+
+  /**
+   * <p>[概要] AppDataReplayServiceのコンストラクタ。</p>
+   *
+   * @param appReplayJobRepository 再送ジョブのリポジトリ
+   * @param appDataRepository      AppDataのリポジトリ
+   * @param siteRoutingService     Webhookのルーティング情報のキャッシュ
+   * @param checkTypeService       Webhookの処理パイプライン
+   * @param partitionedExecutor    レコード単位で順序を保証する実行クラス
+   * @param replayJobExecutor      再送ジョブを実行する実行クラス
+   * @param objectMapper           JSON変換に使用するObjectMapper
+   * @param meterRegistry          メトリクスレジストリ
+   * @since 1.0
+   */
+  public AppDataReplayService(AppReplayJobRepository appReplayJobRepository,
+      AppDataRepository appDataRepository, SiteRoutingService siteRoutingService,
+      CheckTypeService checkTypeService, WebhookPartitionedExecutor partitionedExecutor,
+      @Qualifier("replayJobExecutor") TaskExecutor replayJobExecutor, ObjectMapper objectMapper,
+      MeterRegistry meterRegistry) {
+    this.appReplayJobRepository = appReplayJobRepository;
+    this.appDataRepository = appDataRepository;
+    this.siteRoutingService = siteRoutingService;
+    this.checkTypeService = checkTypeService;
+    this.partitionedExecutor = partitionedExecutor;
+    this.replayJobExecutor = replayJobExecutor;
+    this.objectMapper = objectMapper;
+    this.succeededCounter = meterRegistry.counter("replay.records", "result", "success");
+    this.failedCounter = meterRegistry.counter("replay.records", "result", "failed");
+  }
+
+  /**
+   * <p>[概要] 再送ジョブを開始するメソッド。</p>
+   * <p>[詳細] 対象件数を集計してジョブを登録し、バックグラウンドで実行を開始します。</p>
+   *
+   * @param request 再送ジョブの開始リクエスト
+   * @return 登録した再送ジョブ
+   * @throws IllegalArgumentException 作成日時の範囲が指定されていないか正しくない場合、または UNSYNCED 以外の対象が指定された場合
+   * @since 1.0
+   */
+  public AppReplayJob start(ReplayRequest request) {
+    if (request.from() == null || request.to() == null || !request.from().isBefore(request.to())) {
+      throw new IllegalArgumentException("from and to are required and from must be before to");
+    }
+    ReplayFilter filter = Optional.ofNullable(request.filter()).orElse(ReplayFilter.UNSYNCED);
+    if (filter != ReplayFilter.UNSYNCED) {
+      throw new IllegalArgumentException("Only UNSYNCED rows can be replayed: received_payload "
+          + "holds the original ADD_RECORD payload, not the latest applied one");
+    }
+    long total = appDataRepository.countReplayRows(request.siteId(), request.from(),
+        request.to());
+    AppReplayJob job = appReplayJobRepository.save(AppReplayJob.builder()
+        .appSiteId(request.siteId())
+        .fromTime(request.from())
+        .toTime(request.to())
+        .filter(filter)
+        .state(ReplayJobState.RUNNING)
+        .lastAppDataId(0L)
+        .total(total)
+        .processed(0L)
+        .succeeded(0L)
+        .failed(0L)
+        .build());
+    log.info("Replay job {} started: siteId={}, from={}, to={}, filter={}, total={}",
+        job.getId(), request.siteId(), request.from(), request.to(), filter, total);
+    launch(job.getId());
+    return job;
+  }
+
+  /**
+   * <p>[概要] 再送ジョブを取得するメソッド。</p>
+   *
+   * @param jobId ジョブのID
+   * @return 再送ジョブ
+   * @throws NotFoundException ジョブが存在しない場合
+   * @since 1.0
+   */
+  public AppReplayJob find(Long jobId) {
+    return appReplayJobRepository.findById(jobId)
+        .orElseThrow(() -> new NotFoundException("Replay job not found: " + jobId));
+  }
+
+  /**
+   * <p>[概要] 実行中の再送ジョブを一時停止するメソッド。</p>
+   * <p>[詳細] 処理中のページが完了した時点で停止します。</p>
+   *
+   * @param jobId ジョブのID
+   * @return 状態を遷移できた場合は true
+   * @since 1.0
+   */
+  public boolean pause(Long jobId) {
+    return transition(jobId, EnumSet.of(ReplayJobState.RUNNING), ReplayJobState.PAUSED);
+  }
+
+  /**
+   * <p>[概要] 一時停止または失敗した再送ジョブを再開するメソッド。</p>
+   * <p>[詳細] 最後に記録したチェックポイントの続きから処理を再開します。</p>
+   *
+   * @param jobId ジョブのID
+   * @return 状態を遷移できた場合は true
+   * @since 1.0
+   */
+  public boolean resume(Long jobId) {
+    if (!transition(jobId, EnumSet.of(ReplayJobState.PAUSED, ReplayJobState.FAILED),
+        ReplayJobState.RUNNING)) {
+      return false;
+    }
+    launch(jobId);
+    return true;
+  }
+
+  /**
+   * <p>[概要] 再送ジョブを取り消すメソッド。</p>
+   * <p>[詳細] 処理中のページが完了した時点で停止し、以降は再開できません。</p>
+   *
+   * @param jobId ジョブのID
+   * @return 状態を遷移できた場合は true
+   * @since 1.0
+   */
+  public boolean cancel(Long jobId) {
+    return transition(jobId,
+        EnumSet.of(ReplayJobState.RUNNING, ReplayJobState.PAUSED, ReplayJobState.FAILED),
+        ReplayJobState.CANCELLED);
+  }
+
+  /**
+   * <p>[概要] 再起動前に実行中だった再送ジョブを再開するメソッド。</p>
+   * <p>[詳細] アプリケーションの起動完了時と google.replay.resume-interval-ms ごとに、
+   * 状態が RUNNING のジョブのうち実行権を取得できたものをチェックポイントから再開します。</p>
+   * <p>[備考] 他のインスタンスが実行中のジョブは実行権を取得できないため再開しません。
+   * 停止したインスタンスのジョブは、ハートビートが途絶えてから google.replay.claim-timeout-seconds 後に再開します。</p>
+   *
+   * @since 1.0
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(initialDelayString = "${google.replay.resume-interval-ms:60000}",
+      fixedDelayString = "${google.replay.resume-interval-ms:60000}")
+  public void resumeInterrupted() {
+    for (AppReplayJob job : appReplayJobRepository.findByState(ReplayJobState.RUNNING)) {
+      if (!runningJobs.contains(job.getId()) && launch(job.getId())) {
+        log.info("Resumed replay job {} after id {}", job.getId(), job.getLastAppDataId());
+      }
+    }
+  }
+
+  private boolean transition(Long jobId, Set<ReplayJobState> expected, ReplayJobState state) {
+    find(jobId);
+    boolean changed =
+        appReplayJobRepository.transition(jobId, expected, state, LocalDateTime.now()) == 1;
+    if (changed) {
+      log.info("Replay job {} is now {}", jobId, state);
+    }
+    return changed;
+  }
+
+  /**
+   * <p>[概要] ジョブの実行権を取得してバックグラウンドで実行するメソッド。</p>
+   * <p>[詳細] このインスタンスで実行中の場合、または他のインスタンスが実行権を持っている場合は実行しません。
+   * 実行が終了すると実行権を解放します。</p>
+   */
+  private boolean launch(Long jobId) {
+    if (!runningJobs.add(jobId)) {
+      return false;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    boolean claimed;
+    try {
+      claimed = appReplayJobRepository.claim(jobId, owner, ReplayJobState.RUNNING,
+          now.minusSeconds(claimTimeoutSeconds), now) == 1;
+    } catch (RuntimeException e) {
+      runningJobs.remove(jobId);
+      throw e;
+    }
+    if (!claimed) {
+      runningJobs.remove(jobId);
+      log.info("Replay job {} is claimed by another instance", jobId);
+      return false;
+    }
+    replayJobExecutor.execute(() -> {
+      try {
+        run(jobId);
+      } finally {
+        appReplayJobRepository.release(jobId, owner);
+        runningJobs.remove(jobId);
+      }
+    });
+    return true;
+  }
+
+  private void run(Long jobId) {
+    long intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond)
+        : 0;
+    long nextSlot = System.nanoTime();
+    try {
+      while (true) {
+        if (appReplayJobRepository.heartbeat(jobId, owner, LocalDateTime.now()) != 1) {
+          log.warn("Replay job {} was claimed by another instance; stopping", jobId);
+          return;
+        }
+        AppReplayJob job = find(jobId);
+        if (job.getState() != ReplayJobState.RUNNING) {
+          log.info("Replay job {} stopped in state {}", jobId, job.getState());
+          return;
+        }
+        List<AppDataReplayRow> rows = appDataRepository.findReplayRows(job.getLastAppDataId(),
+            job.getAppSiteId(), job.getFromTime(), job.getToTime(), pageSize);
+        if (rows.isEmpty()) {
+          appReplayJobRepository.transition(jobId, EnumSet.of(ReplayJobState.RUNNING),
+              ReplayJobState.COMPLETED, LocalDateTime.now());
+          log.info("Replay job {} completed", jobId);
+          return;
+        }
+
+        Semaphore permits = new Semaphore(parallelism);
+        Map<Long, String> accessTokens = new HashMap<>();
+        List<CompletableFuture<String>> results = new ArrayList<>(rows.size());
+        for (AppDataReplayRow row : rows) {
+          long wait = nextSlot - System.nanoTime();
+          if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+          }
+          nextSlot = Math.max(nextSlot, System.nanoTime()) + intervalNanos;
+          permits.acquire();
+          results.add(submit(row, accessTokens).whenComplete((r, e) -> permits.release()));
+        }
+
+        long succeeded = 0;
+        long failed = 0;
+        String lastError = null;
+        for (CompletableFuture<String> result : results) {
+          String error = result.join();
+          if (error == null) {
+            succeeded++;
+          } else {
+            failed++;
+            lastError = error;
+          }
+        }
+        succeededCounter.increment(succeeded);
+        failedCounter.increment(failed);
+        appReplayJobRepository.recordProgress(jobId, rows.get(rows.size() - 1).getId(),
+            succeeded, failed, truncate(lastError), LocalDateTime.now());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Replay job {} interrupted; it will resume from its checkpoint", jobId);
+    } catch (RuntimeException e) {
+      log.error("Replay job {} failed", jobId, e);
+      appReplayJobRepository.fail(jobId, ReplayJobState.FAILED, truncate(e.toString()),
+          LocalDateTime.now());
+    }
+  }
+
+  /**
+   * <p>[概要] 1行分の再送をパーティションに投入するメソッド。</p>
+   * <p>[詳細] 処理結果として、成功した場合は null、失敗した場合はエラー内容を返すFutureを返します。</p>
+   */
+  private CompletableFuture<String> submit(AppDataReplayRow row, Map<Long, String> accessTokens) {
+    WebhookPayload payLoad;
+    SiteRoute route;
+    String accessToken;
+    try {
+      payLoad = toReplayPayload(row);
+      route = siteRoutingService.findByWebhookUrl(row.getWebhookUrl())
+          .filter(SiteRoute::active)
+          .orElseThrow(() -> new NotFoundException("Active AppSiteInfo not found"));
+      accessToken = accessTokens.computeIfAbsent(route.siteId(),
+          siteId -> checkTypeService.getAccessToken(route));
+    } catch (RuntimeException e) {
+      return CompletableFuture.completedFuture(error(row, e));
+    }
+
+    CompletableFuture<String> result = new CompletableFuture<>();
+    UUID transactionId = UUID.randomUUID();
+    partitionedExecutor.submit(WebhookPartitionKey.of(route.siteId(), payLoad.body()), () -> {
+      try {
+        checkTypeService.getPlayLoad(payLoad, route.toReference(), accessToken, transactionId);
+        result.complete(null);
+      } catch (Exception e) {
+        result.complete(error(row, e));
+      }
+    }).whenComplete((ignored, e) -> {
+      if (e != null) {
+        result.complete(error(row, e));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * <p>[概要] received_payload から再送するペイロードを復元するメソッド。</p>
+   * <p>[詳細] 受信時のペイロード（request[0].load）を取り出し、未反映の行として ADD_RECORD で再送します。
+   * イベント種別を置き換えない場合は保存されているJSON文字列をそのまま使用します。</p>
+   */
+  private WebhookPayload toReplayPayload(AppDataReplayRow row) {
+    JsonNode load;
+    try {
+      load = objectMapper.readTree(Objects.requireNonNullElse(row.getReceivedPayload(), ""))
+          .path("request").path(0).path("load");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("received_payload is not valid JSON", e);
+    }
+    if (!load.isObject()) {
+      throw new IllegalArgumentException("received_payload has no request payload");
+    }
+    Map<String, Object> body = objectMapper.convertValue(load,
+        new TypeReference<LinkedHashMap<String, Object>>() {
+        });
+    if ("ADD_RECORD".equals(String.valueOf(body.get("type")))) {
+      return new WebhookPayload(load.toString(), body);
+    }
+    body.put("type", "ADD_RECORD");
+    return new WebhookPayload(null, body);
+  }
+
+  private String error(AppDataReplayRow row, Throwable e) {
+    log.warn("Replay of app_data {} failed: {}", row.getId(), e.toString());
+    return "app_data " + row.getId() + ": " + e.getMessage();
+  }
+
+  private String truncate(String error) {
+    return error == null || error.length() <= MAX_ERROR_LENGTH ? error
+        : error.substring(0, MAX_ERROR_LENGTH);
+  }
+}
@@ -0,0 +1,144 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarAccess;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * <p>[概要] カレンダーへのアクセス確認サービスクラス。</p>
+ * <p>[詳細] メールアドレスのカレンダーを参照できるかを free/busy の問い合わせで確認し、
+ * 結果をサイトとメールアドレスの組み合わせごとにキャッシュします。</p>
+ * <p>[備考] 参照できた結果は google.calendar.access-cache.ttl-seconds、参照できなかった結果は
+ * google.calendar.access-cache.negative-ttl-seconds の間キャッシュします。Google 側の一時的なエラーはキャッシュしません。
+ * すべてキャッシュにある場合はアクセストークンを取得しません。
+ * キャッシュは google.calendar.access-cache.max-entries 件までとし、超えた場合は最も長く参照されていない組み合わせから破棄します。
+ * キャッシュの利用状況は google.calendar.access.cache として記録します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class CalendarAccessService {
+  private static final Set<String> TRANSIENT_REASONS = Set.of("internalError", "backendError");
+
+  private final GoogleCalendarService googleCalendarService;
+  private final Map<AccessKey, CachedAccess> cache;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  @Value("${google.calendar.access-cache.ttl-seconds:600}")
+  private long ttlSeconds;
+
+  @Value("${google.calendar.access-cache.negative-ttl-seconds:60}")
+  private long negativeTtlSeconds;
+
+  private record AccessKey(Long siteId, String email) {
+  }
+
+  private record CachedAccess(CalendarAccess access, long expiresAt) {
+  }
+
+  /**
+   * <p>[概要] CalendarAccessServiceのコンストラクタ。</p>
+   *
+   * @param googleCalendarService Google Calendar サービス
+   * @param maxEntries            キャッシュする組み合わせの最大件数
+   * @param meterRegistry         メトリクスレジストリ
+   * @since 1.0
+   */
+  public CalendarAccessService(GoogleCalendarService googleCalendarService,
+      @Value("${google.calendar.access-cache.max-entries:10000}") int maxEntries,
+      MeterRegistry meterRegistry) {
+    this.googleCalendarService = googleCalendarService;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<AccessKey, CachedAccess> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.hitCounter = meterRegistry.counter("google.calendar.access.cache", "result", "hit");
+    this.missCounter = meterRegistry.counter("google.calendar.access.cache", "result", "miss");
+    Gauge.builder("google.calendar.access.cache.size", this, CalendarAccessService::cacheSize)
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] 複数のメールアドレスのカレンダーへのアクセスを確認するメソッド。</p>
+   * <p>[詳細] キャッシュにないメールアドレスのみを1回の free/busy 問い合わせで確認し、メールアドレスと同じ順序で結果を返します。</p>
+   *
+   * @param siteId      AppSiteInfoのID
+   * @param accessToken アクセストークンを取得する関数（キャッシュにないメールアドレスがある場合のみ呼び出します）
+   * @param emails      確認するメールアドレス
+   * @return メールアドレスごとの確認結果
+   * @throws IOException 問い合わせ中にエラーが発生した場合
+   * @since 1.0
+   */
+  public List<CalendarAccess> validate(Long siteId, Supplier<String> accessToken,
+      List<String> emails) throws IOException {
+    long now = System.currentTimeMillis();
+    Map<String, CalendarAccess> resolved = new LinkedHashMap<>();
+    Set<String> misses = new LinkedHashSet<>();
+    for (String email : emails) {
+      String normalized = email.trim().toLowerCase(Locale.ROOT);
+      if (resolved.containsKey(normalized) || misses.contains(normalized)) {
+        continue;
+      }
+      CachedAccess cached;
+      synchronized (cache) {
+        cached = cache.get(new AccessKey(siteId, normalized));
+      }
+      if (cached != null && cached.expiresAt() > now) {
+        hitCounter.increment();
+        resolved.put(normalized, cached.access());
+      } else {
+        missCounter.increment();
+        misses.add(normalized);
+      }
+    }
+
+    if (!misses.isEmpty()) {
+      for (CalendarAccess access : googleCalendarService.checkCalendarAccess(accessToken.get(),
+          new ArrayList<>(misses))) {
+        resolved.put(access.email(), access);
+        if (access.accessible() || !TRANSIENT_REASONS.contains(access.reason())) {
+          long ttl = access.accessible() ? ttlSeconds : negativeTtlSeconds;
+          synchronized (cache) {
+            cache.put(new AccessKey(siteId, access.email()),
+                new CachedAccess(access, now + ttl * 1000));
+          }
+        }
+      }
+      log.info("Validated {} calendar(s) for site {} via free/busy", misses.size(), siteId);
+    }
+
+    List<CalendarAccess> results = new ArrayList<>(emails.size());
+    for (String email : emails) {
+      CalendarAccess access = resolved.get(email.trim().toLowerCase(Locale.ROOT));
+      results.add(new CalendarAccess(email, access.accessible(), access.reason()));
+    }
+    return results;
+  }
+
+  private double cacheSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+}
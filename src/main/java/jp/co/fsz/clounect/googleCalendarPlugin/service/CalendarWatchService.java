@@ -0,0 +1,366 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.calendar.model.Channel;
+import com.google.api.services.calendar.model.Event;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.AppDataDto;
+import jp.co.fsz.clounect.core.dto.AppSiteInfoDto;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppCalendarChannel;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.repository.AppCalendarChannelRepository;
+import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.core.service.AppDataService;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * <p>[概要] Google Calendar の変更通知サービスクラス。</p>
+ * <p>[詳細] サイトとカレンダーIDの組み合わせごとに events.watch のチャネルを登録、更新、停止し、
+ * Google からの変更通知を受けて同期トークンによる差分を取得し、Google 側の変更を app_data に記録します。</p>
+ * <p>[備考] 通知は X-Goog-Channel-Token を登録時のトークンと照合して検証します。
+ * 同じカレンダーの差分取得は {@link WebhookPartitionedExecutor} で直列に実行し、通知への応答は差分取得を待たずに返します。
+ * 取得した変更の app_data、同期トークン、および処理済みの通知番号は1つのトランザクションで保存し、
+ * 差分取得に失敗した場合はいずれも進めずにログと google.calendar.watch.pull.failed に記録します。
+ * チャネルは有効期限の google.calendar.watch.renew-ahead-seconds 前に新しいチャネルへ置き換えます。
+ * 記録する app_data の cycle は {@link #CYCLE} で、JustSFA からの Webhook の行と区別します。
+ * 通知先は google.calendar.watch.address で指定し、ローカル環境ではこのアドレスに通知と同じヘッダーを送信して動作を確認できます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class CalendarWatchService {
+  /** Google 側の変更を記録した app_data の cycle。 */
+  public static final String CYCLE = "GOOGLE_PUSH";
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final AppCalendarChannelRepository appCalendarChannelRepository;
+  private final AppSiteInfoRepository appSiteInfoRepository;
+  private final SiteRoutingService siteRoutingService;
+  private final CheckTypeService checkTypeService;
+  private final GoogleCalendarService googleCalendarService;
+  private final CalendarSyncService calendarSyncService;
+  private final AppDataService appDataService;
+  private final WebhookPartitionedExecutor partitionedExecutor;
+  private final MeterRegistry meterRegistry;
+  private final Gson gson = new Gson();
+
+  @Value("${google.calendar.watch.address:}")
+  private String address;
+
+  @Value("${google.calendar.watch.ttl-seconds:604800}")
+  private long ttlSeconds;
+
+  @Value("${google.calendar.watch.renew-ahead-seconds:86400}")
+  private long renewAheadSeconds;
+
+  /**
+   * <p>[概要] CalendarWatchServiceのコンストラクタ。</p>
+   *
+   * @param appCalendarChannelRepository 変更通知チャネルのリポジトリ
+   * @param appSiteInfoRepository        アプリケーションサイト情報のリポジトリ
+   * @param siteRoutingService           Webhookのルーティング情報のキャッシュ
+   * @param checkTypeService             アクセストークンの取得に使用するサービス
+   * @param googleCalendarService        Google Calendar サービス
+   * @param calendarSyncService          Google Calendar の差分同期サービス
+   * @param appDataService               AppDataのサービス
+   * @param partitionedExecutor          カレンダー単位で差分取得を直列に実行する実行クラス
+   * @param meterRegistry                メトリクスレジストリ
+   * @since 1.0
+   */
+  public CalendarWatchService(AppCalendarChannelRepository appCalendarChannelRepository,
+      AppSiteInfoRepository appSiteInfoRepository, SiteRoutingService siteRoutingService,
+      CheckTypeService checkTypeService, GoogleCalendarService googleCalendarService,
+      CalendarSyncService calendarSyncService, AppDataService appDataService,
+      WebhookPartitionedExecutor partitionedExecutor, MeterRegistry meterRegistry) {
+    this.appCalendarChannelRepository = appCalendarChannelRepository;
+    this.appSiteInfoRepository = appSiteInfoRepository;
+    this.siteRoutingService = siteRoutingService;
+    this.checkTypeService = checkTypeService;
+    this.googleCalendarService = googleCalendarService;
+    this.calendarSyncService = calendarSyncService;
+    this.appDataService = appDataService;
+    this.partitionedExecutor = partitionedExecutor;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * <p>[概要] カレンダーの変更通知チャネルを登録するメソッド。</p>
+   * <p>[詳細] 新しいチャネルを登録した後、同じカレンダーの既存のチャネルを停止します。
+   * カレンダーの同期トークンがまだない場合は、登録前の状態を基準とするため全件を取得します。</p>
+   *
+   * @param siteId     AppSiteInfoのID
+   * @param calendarId 通知の対象とするカレンダーのID
+   * @return 登録したチャネル
+   * @throws IOException           チャネルの登録中にエラーが発生した場合
+   * @throws NotFoundException     サイトが存在しない場合
+   * @throws IllegalStateException 通知先アドレスが設定されていない場合
+   * @since 1.0
+   */
+  public AppCalendarChannel register(Long siteId, String calendarId) throws IOException {
+    if (address == null || address.isBlank()) {
+      throw new IllegalStateException("google.calendar.watch.address is not configured");
+    }
+    String accessToken = checkTypeService.getAccessToken(route(siteId));
+    List<AppCalendarChannel> previous = appCalendarChannelRepository
+        .findByAppSiteIdAndCalendarId(siteId, calendarId);
+    if (previous.isEmpty()) {
+      calendarSyncService.sync(siteId, accessToken, calendarId);
+    }
+
+    byte[] secret = new byte[24];
+    RANDOM.nextBytes(secret);
+    Channel request = new Channel()
+        .setId(UUID.randomUUID().toString())
+        .setType("web_hook")
+        .setAddress(address)
+        .setToken(HexFormat.of().formatHex(secret))
+        .setParams(Map.of("ttl", String.valueOf(ttlSeconds)));
+    Channel created = googleCalendarService.watchCalendarEvents(accessToken, calendarId, request);
+    long expiration = created.getExpiration() != null ? created.getExpiration()
+        : System.currentTimeMillis() + ttlSeconds * 1000;
+    AppCalendarChannel channel = appCalendarChannelRepository.save(AppCalendarChannel.builder()
+        .appSiteId(siteId)
+        .calendarId(calendarId)
+        .channelId(request.getId())
+        .resourceId(created.getResourceId())
+        .channelToken(request.getToken())
+        .expiresAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiration),
+            ZoneId.systemDefault()))
+        .build());
+    meterRegistry.counter("google.calendar.watch.channels", "action", "registered").increment();
+    log.info("Watch channel {} registered for site {} calendar {} until {}",
+        channel.getChannelId(), siteId, calendarId, channel.getExpiresAt());
+
+    previous.forEach(old -> stop(accessToken, old));
+    return channel;
+  }
+
+  /**
+   * <p>[概要] カレンダーの変更通知チャネルを停止するメソッド。</p>
+   *
+   * @param siteId     AppSiteInfoのID
+   * @param calendarId 通知の対象としているカレンダーのID
+   * @return 停止したチャネル数
+   * @throws NotFoundException サイトが存在しない場合
+   * @since 1.0
+   */
+  public int unregister(Long siteId, String calendarId) {
+    List<AppCalendarChannel> channels = appCalendarChannelRepository
+        .findByAppSiteIdAndCalendarId(siteId, calendarId);
+    if (channels.isEmpty()) {
+      return 0;
+    }
+    String accessToken = checkTypeService.getAccessToken(route(siteId));
+    channels.forEach(channel -> stop(accessToken, channel));
+    return channels.size();
+  }
+
+  /**
+   * <p>[概要] サイトの変更通知チャネルを取得するメソッド。</p>
+   *
+   * @param siteId AppSiteInfoのID
+   * @return 登録されているチャネル
+   * @since 1.0
+   */
+  public List<AppCalendarChannel> findBySite(Long siteId) {
+    return appCalendarChannelRepository.findByAppSiteId(siteId);
+  }
+
+  /**
+   * <p>[概要] 期限が近いチャネルを更新するメソッド。</p>
+   * <p>[詳細] 有効期限まで google.calendar.watch.renew-ahead-seconds 未満のチャネルを新しいチャネルに置き換え、
+   * すでに期限切れのチャネルは破棄します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.calendar.watch.renew-interval-ms:3600000}")
+  public void renewExpiring() {
+    LocalDateTime now = LocalDateTime.now();
+    for (AppCalendarChannel channel : appCalendarChannelRepository
+        .findByExpiresAtBefore(now.plusSeconds(renewAheadSeconds))) {
+      if (channel.getExpiresAt().isBefore(now)) {
+        appCalendarChannelRepository.delete(channel);
+        meterRegistry.counter("google.calendar.watch.channels", "action", "expired").increment();
+        log.info("Watch channel {} expired for site {} calendar {}", channel.getChannelId(),
+            channel.getAppSiteId(), channel.getCalendarId());
+        continue;
+      }
+      try {
+        register(channel.getAppSiteId(), channel.getCalendarId());
+        meterRegistry.counter("google.calendar.watch.channels", "action", "renewed").increment();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Failed to renew watch channel {} for site {}: {}", channel.getChannelId(),
+            channel.getAppSiteId(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * <p>[概要] Google からの変更通知を受け付けるメソッド。</p>
+   * <p>[詳細] チャネルとトークンを検証し、リソースの状態が "sync"（登録直後の確認）以外の場合は差分取得を予約します。</p>
+   * <p>[備考] 処理済みの番号以下の通知は再送とみなして差分取得を行いません。
+   * 通知番号は差分取得の結果とともに保存するため、差分取得に失敗した通知は再送時に再度処理されます。</p>
+   *
+   * @param channelId     X-Goog-Channel-ID
+   * @param channelToken  X-Goog-Channel-Token
+   * @param resourceState X-Goog-Resource-State
+   * @param messageNumber X-Goog-Message-Number（ない場合は null）
+   * @throws NotFoundException チャネルが存在しない場合、またはトークンが一致しない場合
+   * @since 1.0
+   */
+  public void onNotification(String channelId, String channelToken, String resourceState,
+      Long messageNumber) {
+    AppCalendarChannel channel = appCalendarChannelRepository.findByChannelId(channelId)
+        .filter(found -> Objects.equals(found.getChannelToken(), channelToken))
+        .orElseThrow(() -> new NotFoundException("Unknown watch channel " + channelId));
+    meterRegistry.counter("google.calendar.watch.notifications", "state",
+        String.valueOf(resourceState)).increment();
+    if ("sync".equals(resourceState)) {
+      return;
+    }
+    if (messageNumber != null && channel.getLastMessageNumber() != null
+        && channel.getLastMessageNumber() >= messageNumber) {
+      log.debug("Duplicate notification {} on channel {}", messageNumber, channelId);
+      return;
+    }
+    Long siteId = channel.getAppSiteId();
+    String calendarId = channel.getCalendarId();
+    partitionedExecutor.submit(new WebhookPartitionKey(siteId, "calendar:" + calendarId),
+        () -> pull(channel.getId(), siteId, calendarId, messageNumber));
+  }
+
+  /**
+   * <p>[概要] カレンダーの差分を取得して app_data に記録するメソッド。</p>
+   * <p>[詳細] 差分がある場合は、変更されたイベントを1行の app_data にまとめて記録します。
+   * 削除されたイベントは GOOGLE_EVENT_DELETED、それ以外は GOOGLE_EVENT_CHANGED として記録します。
+   * このアプリケーション自身が作成、更新、削除したイベントの変更は記録しません。</p>
+   * <p>[備考] 同期トークンが無効となり全件を取得し直した場合は、既存のイベントを変更として記録しません。
+   * app_data、同期トークン、および通知番号は同じトランザクションで保存します。
+   * 失敗した場合は例外をスローせずに記録し、次の通知で同じ変更を再度取得します。</p>
+   */
+  private void pull(Long channelId, Long siteId, String calendarId, Long messageNumber) {
+    try {
+      AppSiteInfo site = appSiteInfoRepository.findById(siteId)
+          .orElseThrow(() -> new NotFoundException("Site not found: " + siteId));
+      String accessToken = checkTypeService.getAccessToken(route(site));
+      calendarSyncService.sync(siteId, accessToken, calendarId, changes -> {
+        if (messageNumber != null) {
+          appCalendarChannelRepository.advanceMessageNumber(channelId, messageNumber);
+        }
+        if (!changes.fullSync() && !changes.events().isEmpty()) {
+          List<Event> foreign = withoutOwnWrites(siteId, changes.events());
+          if (!foreign.isEmpty()) {
+            record(site, calendarId, foreign);
+          }
+        }
+      });
+    } catch (IOException | RuntimeException e) {
+      meterRegistry.counter("google.calendar.watch.pull.failed").increment();
+      log.error("Delta fetch failed for site {} calendar {}; sync token not advanced", siteId,
+          calendarId, e);
+    }
+  }
+
+  /**
+   * <p>[概要] このアプリケーション自身の書き込みによる変更を除くメソッド。</p>
+   * <p>[詳細] send_payload に記録したイベントは、ETag が記録したものと一致する場合に自身の作成または更新とみなします。
+   * send_payload にないイベントは、{@link GoogleCalendarService#eventId(long, String)} で導出したIDのキャンセル済みのイベントのみを
+   * 自身の削除とみなします。除いた件数は google.calendar.watch.own-writes に記録します。</p>
+   */
+  private List<Event> withoutOwnWrites(Long siteId, List<Event> events) {
+    Map<String, String> sent = appDataService.getSentEventEtags(siteId,
+        events.stream().map(Event::getId).filter(Objects::nonNull).distinct().toList());
+    List<Event> foreign = new ArrayList<>(events.size());
+    for (Event event : events) {
+      boolean own = sent.containsKey(event.getId())
+          ? Objects.equals(sent.get(event.getId()), event.getEtag())
+          : "cancelled".equals(event.getStatus())
+              && GoogleCalendarService.isDerivedEventId(event.getId());
+      if (!own) {
+        foreign.add(event);
+      }
+    }
+    meterRegistry.counter("google.calendar.watch.own-writes")
+        .increment(events.size() - foreign.size());
+    return foreign;
+  }
+
+  /**
+   * <p>[概要] 取得した変更を1行の app_data に記録するメソッド。</p>
+   */
+  private void record(AppSiteInfo site, String calendarId, List<Event> events) {
+    List<AppDataDto.Data> request = new ArrayList<>(events.size());
+    for (Event event : events) {
+      String type = "cancelled".equals(event.getStatus()) ? "GOOGLE_EVENT_DELETED"
+          : "GOOGLE_EVENT_CHANGED";
+      request.add(new AppDataDto.Data(event.getId(), type, event));
+    }
+    AppDataDto appDataDto = new AppDataDto();
+    appDataDto.setAppSiteId(AppSiteInfoDto.fromEntity(site));
+    appDataDto.setCycle(CYCLE);
+    appDataDto.setStatus(true);
+    appDataDto.setIsActive(true);
+    appDataDto.setExecAt(LocalDateTime.now());
+    appDataDto.setDetail(calendarId);
+    appDataDto.setReceivedPayload(gson.toJson(new AppDataDto.Payload(request,
+        new ArrayList<>())));
+    appDataService.saveAppData(appDataDto);
+    meterRegistry.counter("google.calendar.watch.changes").increment(request.size());
+    log.info("Recorded {} Google change(s) for site {} calendar {}", request.size(),
+        site.getId(), calendarId);
+  }
+
+  /**
+   * <p>[概要] チャネルを停止して削除するメソッド。</p>
+   * <p>[詳細] Google 側ですでに期限切れまたは停止済み（404）の場合も削除します。</p>
+   */
+  private void stop(String accessToken, AppCalendarChannel channel) {
+    try {
+      googleCalendarService.stopChannel(accessToken, channel.getChannelId(),
+          channel.getResourceId());
+    } catch (GoogleJsonResponseException e) {
+      if (e.getStatusCode() != 404) {
+        log.warn("Failed to stop watch channel {}: {}", channel.getChannelId(), e.getMessage());
+      }
+    } catch (IOException e) {
+      log.warn("Failed to stop watch channel {}: {}", channel.getChannelId(), e.getMessage());
+    }
+    appCalendarChannelRepository.delete(channel);
+    meterRegistry.counter("google.calendar.watch.channels", "action", "stopped").increment();
+  }
+
+  private SiteRoute route(Long siteId) {
+    return route(appSiteInfoRepository.findById(siteId)
+        .orElseThrow(() -> new NotFoundException("Site not found: " + siteId)));
+  }
+
+  private SiteRoute route(AppSiteInfo site) {
+    return siteRoutingService.findByWebhookUrl(site.getWebhookUrl())
+        .orElseThrow(() -> new NotFoundException("Site not found: " + site.getId()));
+  }
+}
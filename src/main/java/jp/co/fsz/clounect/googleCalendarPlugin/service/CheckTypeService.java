@@ -4,16 +4,20 @@ import com.google.gson.Gson;
 import jp.co.fsz.clounect.core.dto.AppDataDto;
 import jp.co.fsz.clounect.core.dto.AppSiteInfoDto;
 import jp.co.fsz.clounect.core.dto.CalendarEventDto;
-import jp.co.fsz.clounect.core.dto.GoogleCredentialsDto;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
 import jp.co.fsz.clounect.core.mapper.CredentialsMapper;
 import jp.co.fsz.clounect.core.model.AppData;
 import jp.co.fsz.clounect.core.model.AppSiteInfo;
 import jp.co.fsz.clounect.core.model.AppUsagesLog;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
 import jp.co.fsz.clounect.core.repository.AppDataRepository;
-import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
 import jp.co.fsz.clounect.core.service.AppDataService;
 import jp.co.fsz.clounect.core.service.AppUsagesLogService;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
@@ -36,9 +40,9 @@ import java.util.stream.Collectors;
 public class CheckTypeService {
   private final GoogleCalendarRecordService googleCalendarRecordService;
   private final JsonDataOptimizationService jsonDataOptimizationService;
-  private final AppSiteInfoRepository appSiteInfoRepository;
+  private final SiteRoutingService siteRoutingService;
   private final CredentialsMapper credentialsMapper;
-  private final GoogleOAuthService googleOAuthService;
+  private final GoogleTokenCache googleTokenCache;
   private final AppDataService appDataService;
   private final AppUsagesLogService appUsagesLogService;
 
@@ -49,9 +53,9 @@ public class CheckTypeService {
    *
    * @param googleCalendarRecordService Google Calendarのレコードに関連するサービス
    * @param jsonDataOptimizationService JSONデータの最適化に関連するサービス
-   * @param appSiteInfoRepository       AppSiteInfoのリポジトリ
+   * @param siteRoutingService          Webhookのルーティング情報のキャッシュ
    * @param credentialsMapper           資格情報のマッピングに使用されるマッパー
-   * @param googleOAuthService          Google OAuthに関連するサービス
+   * @param googleTokenCache            Googleのアクセストークンのキャッシュ
    * @param appDataRepository           AppDataのリポジトリ
    * @param appDataService
    * @param appUsagesLogService
@@ -59,14 +63,14 @@ public class CheckTypeService {
    */
   public CheckTypeService(GoogleCalendarRecordService googleCalendarRecordService,
       JsonDataOptimizationService jsonDataOptimizationService,
-      AppSiteInfoRepository appSiteInfoRepository, CredentialsMapper credentialsMapper,
-      GoogleOAuthService googleOAuthService, AppDataRepository appDataRepository,
+      SiteRoutingService siteRoutingService, CredentialsMapper credentialsMapper,
+      GoogleTokenCache googleTokenCache, AppDataRepository appDataRepository,
       AppDataService appDataService, AppUsagesLogService appUsagesLogService) {
     this.googleCalendarRecordService = googleCalendarRecordService;
     this.jsonDataOptimizationService = jsonDataOptimizationService;
-    this.appSiteInfoRepository = appSiteInfoRepository;
+    this.siteRoutingService = siteRoutingService;
     this.credentialsMapper = credentialsMapper;
-    this.googleOAuthService = googleOAuthService;
+    this.googleTokenCache = googleTokenCache;
     this.appDataService = appDataService;
     this.appUsagesLogService = appUsagesLogService;
   }
@@ -84,87 +88,156 @@ public class CheckTypeService {
    * @since 1.0
    */
   public void getPlayLoad(Map<String, Object> payLoad, String uuid, UUID transactionId) {
-    Optional<AppSiteInfo> appSiteInfo = appSiteInfoRepository.findByWebhookUrl(uuid);
-    AppUsagesLog appUsagesLog = new AppUsagesLog();
-
-    if (appSiteInfo.isPresent()) {
-      appUsagesLog.setAppId(appSiteInfo.get().getAppId().getId());
-      Map<String, Object> result = jsonDataOptimizationService.processGoogleCalendarRecords(
-          payLoad);
-      Long appSiteId = appSiteInfo.get().getId();
+    Optional<SiteRoute> route = siteRoutingService.findByWebhookUrl(uuid);
 
-      GoogleCredentialsDto googleCredentialsDto = credentialsMapper.mapToGoogleCredentials(
-          appSiteInfo);
-      String clientId = googleCredentialsDto.getClientId();
-      String clientSecret = googleCredentialsDto.getClientSecret();
-      String refreshToken = googleCredentialsDto.getRefreshToken();
+    if (route.isPresent()) {
+      getPlayLoad(new WebhookPayload(null, payLoad), route.get(), transactionId);
+    } else {
+      throw new NotFoundException("AppSiteInfo not found in Optional");
+    }
+  }
 
-      OAuthToken token = googleOAuthService.getRefreshAccessToken(clientId, clientSecret,
-          refreshToken);
+  /**
+   * <p>[概要] 解決済みのルーティング情報を使用してペイロード情報を処理するメソッド。</p>
+   * <p>[詳細] WebhookのUUIDからのサイトの解決を呼び出し元で済ませている場合に使用し、
+   * Google Calendarへの追加、更新、削除などの操作を実行します。</p>
+   * <p>[備考] 受付キューのワーカーはパーティションキーの算出時にルーティング情報を解決するため、このメソッドを呼び出します。</p>
+   *
+   * @param payLoad       受信したペイロード
+   * @param route         Webhookに対応するルーティング情報
+   * @param transactionId Log TransactionId
+   * @since 1.0
+   */
+  public void getPlayLoad(WebhookPayload payLoad, SiteRoute route, UUID transactionId) {
+    getPlayLoad(payLoad, route.toReference(), getAccessToken(route), transactionId);
+  }
 
-      String accessToken = token.getAccessToken();
-      String type = (String) result.get("type");
-      Integer recordId = (Integer) result.get("recordId");
+  /**
+   * <p>[概要] サイトの認証情報からアクセストークンを取得するメソッド。</p>
+   * <p>[詳細] ルーティング情報に保持されたGoogleの認証情報を使用し、リフレッシュトークンからアクセストークンを取得します。
+   * 有効期限まで余裕のあるアクセストークンがキャッシュにある場合はそれを使用します。</p>
+   *
+   * @param route Webhookに対応するルーティング情報
+   * @return アクセストークン
+   * @throws NotFoundException Googleの認証情報が設定されていない場合
+   * @since 1.0
+   */
+  public String getAccessToken(SiteRoute route) {
+    if (!route.hasCredentials()) {
+      throw new NotFoundException("'googleRecords' key is missing or not a Map in configMap");
+    }
+    OAuthToken token = googleTokenCache.getAccessToken(route.siteId(), route.clientId(),
+        route.clientSecret(), route.refreshToken());
+    return token.getAccessToken();
+  }
 
-      //create received payload
-      AppDataDto.Payload receivedPayload = new AppDataDto.Payload(
-          List.of(new AppDataDto.Data(String.valueOf(recordId), type, payLoad)),
-          new ArrayList<>());
-
-      Gson gson = new Gson();
-      Optional<AppDataDto> getDetails= Optional.empty();
-      AppDataDto appDataDto = new AppDataDto();
-      String calendarId = "";
-      List<String> eventIds = new ArrayList<>();
-      try {
-        getDetails = appDataService.getByRecIdAndAppSiteId(
-            (Integer) result.get("recordId"), appSiteId);
-        if (getDetails.isPresent()) {
-          appDataDto = getDetails.get();
-          List<CalendarEventDto> calendarEvents = credentialsMapper.getCalendarEvents(
-              Optional.of(appDataDto.toEntity()));
-          calendarId = calendarEvents.get(0).getCalendarId();
-
-          eventIds = calendarEvents.stream()
-              .flatMap(calendarEventDto -> calendarEventDto.getEventIds().stream())
-              .toList();
+  /**
+   * <p>[概要] 取得済みのアクセストークンを使用してペイロード情報を処理するメソッド。</p>
+   * <p>[詳細] 複数のレコードをまとめて処理する場合など、アクセストークンを呼び出し元で一度だけ取得している場合に使用します。</p>
+   * <p>[備考] 受信時のJSON文字列がある場合は、再シリアライズせずにそのまま received_payload に保存します。
+   * 更新に失敗した場合は例外をそのまま送出し、受付キューのワーカーが再試行できるようにします。</p>
+   *
+   * @param webhookPayload 受信したペイロード
+   * @param site          Webhookに対応するAppSiteInfo
+   * @param accessToken   Google APIのアクセストークン
+   * @param transactionId Log TransactionId
+   * @throws CouldNotPerformActionException Google Calendar のイベントを更新できなかった場合
+   * @since 1.0
+   */
+  public void getPlayLoad(WebhookPayload webhookPayload, AppSiteInfo site, String accessToken,
+      UUID transactionId) {
+    Map<String, Object> payLoad = webhookPayload.body();
+    Optional<AppSiteInfo> appSiteInfo = Optional.of(site);
+    AppUsagesLog appUsagesLog = new AppUsagesLog();
+    appUsagesLog.setAppId(site.getAppId().getId());
+    Map<String, Object> result = jsonDataOptimizationService.processGoogleCalendarRecords(
+        payLoad);
+    Long appSiteId = site.getId();
+
+    String type = (String) result.get("type");
+    Integer recordId = (Integer) result.get("recordId");
+    Optional<SiteRoute> route = siteRoutingService.findByWebhookUrl(site.getWebhookUrl());
+    EventSyncMode syncMode = route.map(SiteRoute::syncMode).orElse(EventSyncMode.PER_ATTENDEE);
+    SendUpdatesPolicy sendUpdates = route.map(SiteRoute::sendUpdates)
+        .orElse(SendUpdatesPolicy.defaultFor(syncMode));
+
+    Gson gson = new Gson();
+    Optional<AppDataDto> getDetails= Optional.empty();
+    AppDataDto appDataDto = new AppDataDto();
+    String calendarId = "";
+    List<String> eventIds = new ArrayList<>();
+    Map<String, String> etags = new HashMap<>();
+    try {
+      getDetails = appDataService.getByRecIdAndAppSiteId(
+          (Integer) result.get("recordId"), appSiteId);
+      if (getDetails.isPresent()) {
+        appDataDto = getDetails.get();
+        List<CalendarEventDto> calendarEvents = credentialsMapper.getCalendarEvents(
+            Optional.of(appDataDto.toEntity()));
+        calendarId = calendarEvents.get(0).getCalendarId();
+
+        eventIds = calendarEvents.stream()
+            .flatMap(calendarEventDto -> calendarEventDto.getEventIds().stream())
+            .toList();
+        for (CalendarEventDto calendarEvent : calendarEvents) {
+          if (calendarEvent.getEtag() != null) {
+            calendarEvent.getEventIds()
+                .forEach(eventId -> etags.put(eventId, calendarEvent.getEtag()));
+          }
         }
-      } catch (InvalidDataAccessResourceUsageException e) {
-        log.warn("{}", e.getMessage());
       }
+    } catch (InvalidDataAccessResourceUsageException e) {
+      log.warn("{}", e.getMessage());
+    }
 
-      if (Objects.equals(type, "ADD_RECORD")) {
-        Optional<AppSiteInfoDto> appSiteInfoDto = appSiteInfo.map(AppSiteInfoDto:: fromEntity);
-        appDataDto.setAppSiteId(appSiteInfoDto.get());
-        appDataDto.setReceivedPayload(gson.toJson(receivedPayload));
+    if (Objects.equals(type, "ADD_RECORD")) {
+      Optional<AppSiteInfoDto> appSiteInfoDto = appSiteInfo.map(AppSiteInfoDto:: fromEntity);
+      appDataDto.setAppSiteId(appSiteInfoDto.get());
+      //create received payload
+      appDataDto.setReceivedPayload(
+          receivedPayload(gson, String.valueOf(recordId), type, webhookPayload));
 
-        appDataDto = appDataService.saveAppData(appDataDto);
-        googleCalendarRecordService.addRecord(accessToken, payLoad, appDataDto,
-            transactionId);
+      appDataDto = appDataService.saveAppData(appDataDto);
+      googleCalendarRecordService.addRecord(accessToken, payLoad, appDataDto, syncMode,
+          sendUpdates, transactionId);
 
-      } else if (Objects.equals(type, "UPDATE_RECORD")) {
-        try {
-          if (getDetails.isPresent()) {
-            googleCalendarRecordService.updateRecord(accessToken, payLoad, calendarId,
-                eventIds, appDataDto, transactionId);
-          }
-        } catch (Exception e) {
-          log.error("error", e);
-        }
-      } else if (Objects.equals(type, "DELETE_RECORD")) {
-        if (getDetails.isPresent()) {
-          for (String eventId : eventIds) {
-            googleCalendarRecordService.deleteRecord(accessToken, eventId, transactionId);
-          }
-          AppDataDto.Payload sendPayload = new AppDataDto.Payload(
-              List.of(new AppDataDto.Data(String.valueOf(recordId), type, result)), new ArrayList<>());
-          appDataDto.setSendPayload(gson.toJson(sendPayload));
-          appDataService.saveAppData(appDataDto);
-        }
+    } else if (Objects.equals(type, "UPDATE_RECORD")) {
+      if (getDetails.isPresent()) {
+        googleCalendarRecordService.updateRecord(accessToken, payLoad, calendarId,
+            eventIds, etags, appDataDto, syncMode, sendUpdates, transactionId);
       }
+    } else if (Objects.equals(type, "DELETE_RECORD")) {
+      if (getDetails.isPresent()) {
+        googleCalendarRecordService.deleteRecords(accessToken, eventIds, sendUpdates,
+            transactionId);
+        AppDataDto.Payload sendPayload = new AppDataDto.Payload(
+            List.of(new AppDataDto.Data(String.valueOf(recordId), type, result)), new ArrayList<>());
+        appDataDto.setSendPayload(gson.toJson(sendPayload));
+        appDataService.saveAppData(appDataDto);
+      }
+    }
+  }
 
-    } else {
-      throw new NotFoundException("AppSiteInfo not found in Optional");
+  /**
+   * <p>[概要] received_payload に保存する文字列を生成するメソッド。</p>
+   * <p>[詳細] 受信時のJSON文字列がある場合は load にそのまま埋め込み、ない場合はペイロードをシリアライズします。</p>
+   *
+   * @param gson           id と type のエンコードに使用するGson
+   * @param recordId       SFAのレコードID
+   * @param type           イベント種別
+   * @param webhookPayload 受信したペイロード
+   * @return received_payload に保存する文字列
+   * @since 1.0
+   */
+  private String receivedPayload(Gson gson, String recordId, String type,
+      WebhookPayload webhookPayload) {
+    if (webhookPayload.raw() == null) {
+      return gson.toJson(new AppDataDto.Payload(
+          List.of(new AppDataDto.Data(recordId, type, webhookPayload.body())),
+          new ArrayList<>()));
     }
+    return "{\"request\":[{\"id\":" + gson.toJson(recordId)
+        + (type != null ? ",\"type\":" + gson.toJson(type) : "")
+        + ",\"load\":" + webhookPayload.raw() + "}],\"response\":[]}";
   }
 }
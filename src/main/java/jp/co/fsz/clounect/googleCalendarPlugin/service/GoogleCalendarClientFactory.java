@@ -0,0 +1,320 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.CalendarRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarBatchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>[概要] 共有の Google Calendar クライアントを提供するクラス。</p>
+ * <p>[詳細] 共有の HTTP トランスポートごとに {@link Calendar} クライアントを1つだけ生成し、
+ * アクセストークンはリクエストごとに Authorization ヘッダーとして設定します。
+ * API 呼び出しのたびに認証情報やクライアントを生成しないようにします。</p>
+ * <p>[備考] 各リクエストの所要時間は google.calendar.request として操作と結果ごとに記録し、
+ * google.calendar.client.created でクライアントの生成回数を確認できます。
+ * 複数のリクエストは {@link #executeBatch(String, String, List)} で google.calendar.batch.max-size 件ずつ
+ * Google のバッチリクエストにまとめて送信できます。
+ * google.calendar.batch.enabled が false の場合は、google.calendar.fanout.concurrency 件まで並列に個別のリクエストを送信します。
+ * レート制限やサーバーエラーで失敗したリクエストは {@link GoogleRetryPolicy} に従って再試行し、
+ * バッチリクエストでは失敗した項目のみを再送します。
+ * 送信前に {@link GoogleRateLimiter} でクライアントIDと対象カレンダーの送信枠を取得します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class GoogleCalendarClientFactory {
+  private final Calendar calendar;
+  private final HttpRequestInitializer requestInitializer;
+  private final TaskExecutor fanOutExecutor;
+  private final GoogleRetryPolicy retryPolicy;
+  private final GoogleRateLimiter rateLimiter;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${google.calendar.batch.max-size:50}")
+  private int maxBatchSize;
+
+  @Value("${google.calendar.batch.enabled:true}")
+  private boolean batchEnabled;
+
+  @Value("${google.calendar.fanout.concurrency:4}")
+  private int fanOutConcurrency;
+
+  /**
+   * <p>[概要] GoogleCalendarClientFactoryのコンストラクタ。</p>
+   * <p>[詳細] 共有の HTTP トランスポートと JSON ファクトリを使用して Calendar クライアントを生成します。</p>
+   *
+   * @param httpTransport      共有の HTTP トランスポート
+   * @param jsonFactory        共有の JSON ファクトリ
+   * @param applicationName    アプリケーション名
+   * @param requestInitializer タイムアウトを設定するリクエストの初期化クラス
+   * @param fanOutExecutor     リクエストを並列に実行する実行クラス
+   * @param retryPolicy        Google API 呼び出しの再試行ポリシー
+   * @param rateLimiter        Google Calendar API 呼び出しのレート制限クラス
+   * @param meterRegistry      メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleCalendarClientFactory(HttpTransport httpTransport, JsonFactory jsonFactory,
+      String applicationName,
+      @Qualifier("googleTimeoutInitializer") HttpRequestInitializer requestInitializer,
+      @Qualifier("calendarFanOutExecutor") TaskExecutor fanOutExecutor,
+      GoogleRetryPolicy retryPolicy, GoogleRateLimiter rateLimiter,
+      MeterRegistry meterRegistry) {
+    this.requestInitializer = requestInitializer;
+    this.fanOutExecutor = fanOutExecutor;
+    this.retryPolicy = retryPolicy;
+    this.rateLimiter = rateLimiter;
+    this.meterRegistry = meterRegistry;
+    this.calendar = new Calendar.Builder(httpTransport, jsonFactory, requestInitializer)
+        .setApplicationName(applicationName).build();
+    meterRegistry.counter("google.calendar.client.created").increment();
+    log.info("Shared Google Calendar client created on {}",
+        httpTransport.getClass().getSimpleName());
+  }
+
+  /**
+   * <p>[概要] 共有の Calendar クライアントを返すメソッド。</p>
+   * <p>[詳細] 返されたクライアントで生成したリクエストは {@link #execute(String, String, CalendarRequest)} で実行します。</p>
+   *
+   * @return 共有の Calendar クライアント
+   * @since 1.0
+   */
+  public Calendar calendar() {
+    return calendar;
+  }
+
+  /**
+   * <p>[概要] アクセストークンを設定してリクエストを実行するメソッド。</p>
+   * <p>[詳細] リクエストに Authorization ヘッダーを設定して実行し、所要時間を記録します。
+   * 再試行可能なエラーの場合は {@link GoogleRetryPolicy} に従って再試行します。</p>
+   *
+   * @param operation   メトリクスに記録する操作名
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param request     実行するリクエスト
+   * @param <T>         レスポンスの型
+   * @return レスポンス
+   * @throws IOException リクエストの実行中にエラーが発生した場合
+   * @since 1.0
+   */
+  public <T> T execute(String operation, String accessToken, CalendarRequest<T> request)
+      throws IOException {
+    request.getRequestHeaders().setAuthorization("Bearer " + accessToken);
+    return retryPolicy.execute(operation, () -> {
+      rateLimiter.acquire(accessToken, Map.of(calendarIdOf(request), 1));
+      Timer.Sample sample = Timer.start(meterRegistry);
+      String outcome = "failure";
+      try {
+        T response = request.execute();
+        outcome = "success";
+        return response;
+      } finally {
+        sample.stop(meterRegistry.timer("google.calendar.request", "operation", operation,
+            "outcome", outcome));
+      }
+    });
+  }
+
+  /**
+   * <p>[概要] 複数のリクエストをバッチリクエストで実行するメソッド。</p>
+   * <p>[詳細] リクエストを google.calendar.batch.max-size 件ずつ1回のバッチリクエストにまとめて送信し、
+   * リクエストと同じ順序で1件ごとの結果を返します。1件のみの場合は通常のリクエストとして実行します。
+   * バッチリクエストが無効な場合は、個別のリクエストを並列に実行して同じ順序で結果を返します。</p>
+   * <p>[備考] 1件ごとの失敗は結果として返し、例外はスローしません。
+   * 再試行可能なエラーで失敗した項目は、期限と回数の上限まで失敗した項目のみのバッチリクエストで再送します。
+   * リクエストに含めるオブジェクトはバッチの送信時にシリアライズされるため、リクエストごとに別のインスタンスを渡してください。</p>
+   *
+   * @param operation   メトリクスに記録する操作名
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param requests    実行するリクエスト
+   * @param <T>         レスポンスの型
+   * @return リクエストと同じ順序の結果
+   * @throws IOException バッチリクエストの送信中にエラーが発生した場合
+   * @since 1.0
+   */
+  public <T> List<CalendarBatchResult<T>> executeBatch(String operation, String accessToken,
+      List<? extends CalendarRequest<T>> requests) throws IOException {
+    List<CalendarBatchResult<T>> results = new ArrayList<>(
+        Collections.nCopies(requests.size(), null));
+    if (requests.size() == 1) {
+      results.set(0, executeOne(operation, accessToken, requests.get(0)));
+      return results;
+    }
+    if (!batchEnabled) {
+      return executeParallel(operation, accessToken, requests);
+    }
+    for (int from = 0; from < requests.size(); from += maxBatchSize) {
+      int to = Math.min(from + maxBatchSize, requests.size());
+      List<Integer> pending = new ArrayList<>();
+      for (int i = from; i < to; i++) {
+        pending.add(i);
+      }
+      GoogleRetryPolicy.Attempt attempt = retryPolicy.begin(operation);
+      while (true) {
+        try {
+          sendBatch(operation, accessToken, requests, pending, results);
+        } catch (IOException e) {
+          String errorClass = retryPolicy.classify(e);
+          if (errorClass != null && attempt.backoff(errorClass, retryPolicy.retryAfterMillis(e))) {
+            continue;
+          }
+          throw e;
+        }
+        List<Integer> retryable = new ArrayList<>();
+        String errorClass = null;
+        long retryAfterMs = -1;
+        for (int index : pending) {
+          CalendarBatchResult<T> result = results.get(index);
+          String resultClass = result.succeeded() ? null : retryPolicy.classify(result.error());
+          if (resultClass != null) {
+            retryable.add(index);
+            errorClass = errorClass == null ? resultClass : errorClass;
+            retryAfterMs = Math.max(retryAfterMs, result.retryAfterMs());
+          }
+        }
+        if (retryable.isEmpty() || !attempt.backoff(errorClass, retryAfterMs)) {
+          break;
+        }
+        pending = retryable;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * <p>[概要] 指定した位置のリクエストを1回のバッチリクエストで送信するメソッド。</p>
+   * <p>[詳細] 1件ごとの結果を results の同じ位置に設定します。失敗した項目には Retry-After の待機時間を記録します。</p>
+   */
+  private <T> void sendBatch(String operation, String accessToken,
+      List<? extends CalendarRequest<T>> requests, List<Integer> indexes,
+      List<CalendarBatchResult<T>> results) throws IOException {
+    Map<String, Integer> permits = new HashMap<>();
+    for (int index : indexes) {
+      permits.merge(calendarIdOf(requests.get(index)), 1, Integer::sum);
+    }
+    rateLimiter.acquire(accessToken, permits);
+    BatchRequest batch = calendar.batch(request -> {
+      requestInitializer.initialize(request);
+      request.getHeaders().setAuthorization("Bearer " + accessToken);
+    });
+    for (int index : indexes) {
+      CalendarRequest<T> request = requests.get(index);
+      request.getRequestHeaders().setAuthorization("Bearer " + accessToken);
+      request.queue(batch, new JsonBatchCallback<T>() {
+        @Override
+        public void onSuccess(T value, HttpHeaders responseHeaders) {
+          results.set(index, CalendarBatchResult.success(value));
+        }
+
+        @Override
+        public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+          results.set(index, CalendarBatchResult.failure(error,
+              retryPolicy.retryAfterMillis(responseHeaders.getRetryAfter())));
+        }
+      });
+    }
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "failure";
+    try {
+      batch.execute();
+      outcome = "success";
+    } finally {
+      sample.stop(meterRegistry.timer("google.calendar.batch", "operation", operation,
+          "outcome", outcome));
+    }
+    meterRegistry.summary("google.calendar.batch.size", "operation", operation)
+        .record(indexes.size());
+  }
+
+  /**
+   * <p>[概要] 複数のリクエストを並列に実行するメソッド。</p>
+   * <p>[詳細] 同時に実行するリクエストを google.calendar.fanout.concurrency 件に制限し、
+   * 1件ごとの成功と失敗をリクエストと同じ順序で返します。通信エラーも1件ごとの失敗として返します。</p>
+   */
+  private <T> List<CalendarBatchResult<T>> executeParallel(String operation, String accessToken,
+      List<? extends CalendarRequest<T>> requests) {
+    Semaphore permits = new Semaphore(Math.max(1, fanOutConcurrency));
+    List<CompletableFuture<CalendarBatchResult<T>>> futures = new ArrayList<>(requests.size());
+    for (CalendarRequest<T> request : requests) {
+      permits.acquireUninterruptibly();
+      try {
+        futures.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return executeOne(operation, accessToken, request);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            permits.release();
+          }
+        }, fanOutExecutor));
+      } catch (RuntimeException e) {
+        permits.release();
+        futures.add(CompletableFuture.failedFuture(e));
+      }
+    }
+    List<CalendarBatchResult<T>> results = new ArrayList<>(requests.size());
+    for (CompletableFuture<CalendarBatchResult<T>> future : futures) {
+      try {
+        results.add(future.join());
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() instanceof UncheckedIOException io ? io.getCause()
+            : e.getCause();
+        GoogleJsonError error = new GoogleJsonError();
+        error.setMessage(String.valueOf(cause));
+        results.add(CalendarBatchResult.failure(error));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * <p>[概要] リクエストの対象カレンダーIDを返すメソッド。</p>
+   * <p>[詳細] カレンダーIDを持たないリクエストの場合は空文字を返します。</p>
+   */
+  private static String calendarIdOf(CalendarRequest<?> request) {
+    Object calendarId = request.get("calendarId");
+    return calendarId == null ? "" : calendarId.toString();
+  }
+
+  private <T> CalendarBatchResult<T> executeOne(String operation, String accessToken,
+      CalendarRequest<T> request) throws IOException {
+    try {
+      return CalendarBatchResult.success(execute(operation, accessToken, request));
+    } catch (GoogleJsonResponseException e) {
+      GoogleJsonError error = e.getDetails();
+      if (error == null) {
+        error = new GoogleJsonError();
+        error.setCode(e.getStatusCode());
+        error.setMessage(e.getStatusMessage());
+      }
+      return CalendarBatchResult.failure(error, retryPolicy.retryAfterMillis(e));
+    }
+  }
+}
@@ -1,13 +1,21 @@
 package jp.co.fsz.clounect.googleCalendarPlugin.service;
 
+import com.google.api.client.googleapis.GoogleUtils;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.SslUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 
@@ -22,21 +30,50 @@ import java.security.GeneralSecurityException;
  * @since 1.0
  */
 @Configuration
+@Slf4j
 public class GoogleCalendarConfig {
 
   /**
    * <p>[概要] HTTP トランスポートの Bean 定義メソッド。</p>
-   * <p>[詳細] Google Calendar API へのアクセスに使用する HTTP トランスポートを提供する Bean 定義メソッド。</p>
-   * <p>[備考] 信頼できるトランスポートを作成するために、一般的なセキュリティ例外と入出力例外が発生する可能性があります。</p>
+   * <p>[詳細] Google Calendar API へのアクセスに使用する HTTP トランスポートを提供する Bean 定義メソッド。
+   * 既定では HTTP/2 に対応した接続プールを持つ {@link PooledHttp2Transport} を生成し、
+   * google.http.transport を net にした場合は従来の {@link GoogleNetHttpTransport} を生成します。</p>
+   * <p>[備考] トランスポートはアプリケーション全体で共有し、OAuth のトークン取得でも使用するため、
+   * トラストストアの読み込みは起動時の1回のみとなります。
+   * 宛先ごとの同時リクエスト数は google.http.pool.max-per-route、ボディの受信完了までの上限は google.http.total-timeout-ms で変更できます。
+   * HTTP/1.1 の空き接続を破棄するまでの秒数は JVM 全体の設定のため、起動時に -Djdk.httpclient.keepalive.timeout=秒数 で指定します
+   * （指定しない場合は JDK の既定値の 1200 秒）。HTTP/2 の空き接続は Google 側で切断されるまで再利用されます。</p>
    *
+   * @param transport           使用するトランスポートの種類（http2 または net）
+   * @param maxPerRoute         宛先ごとの同時リクエスト数の上限
+   * @param connectTimeoutMs    接続タイムアウト（ミリ秒）
+   * @param readTimeoutMs       読み取りタイムアウト（ミリ秒）
+   * @param totalTimeoutMs      ボディの受信完了までの総所要時間の上限（ミリ秒）
+   * @param meterRegistry       メトリクスレジストリ
    * @return 信頼できる HTTP トランスポート
    * @throws GeneralSecurityException セキュリティ例外が発生した場合
    * @throws IOException              入出力例外が発生した場合
    * @since 1.0
    */
   @Bean
-  public HttpTransport httpTransport() throws GeneralSecurityException, IOException {
-    return GoogleNetHttpTransport.newTrustedTransport();
+  public HttpTransport httpTransport(
+      @Value("${google.http.transport:http2}") String transport,
+      @Value("${google.http.pool.max-per-route:50}") int maxPerRoute,
+      @Value("${google.http.connect-timeout-ms:10000}") int connectTimeoutMs,
+      @Value("${google.http.read-timeout-ms:20000}") int readTimeoutMs,
+      @Value("${google.http.total-timeout-ms:60000}") long totalTimeoutMs,
+      MeterRegistry meterRegistry) throws GeneralSecurityException, IOException {
+    if ("net".equalsIgnoreCase(transport)) {
+      return GoogleNetHttpTransport.newTrustedTransport();
+    }
+    SSLContext sslContext = SslUtils.getTlsSslContext();
+    SslUtils.initSslContext(sslContext, GoogleUtils.getCertificateTrustStore(),
+        SslUtils.getPkixTrustManagerFactory());
+    log.info("Google API transport: HTTP/2 pool (max {} per route, idle {}s, total {} ms)",
+        maxPerRoute, System.getProperty("jdk.httpclient.keepalive.timeout", "1200"),
+        totalTimeoutMs);
+    return new PooledHttp2Transport(sslContext, maxPerRoute, connectTimeoutMs, readTimeoutMs,
+        totalTimeoutMs, meterRegistry);
   }
 
   /**
@@ -52,6 +89,44 @@ public class GoogleCalendarConfig {
     return GsonFactory.getDefaultInstance();
   }
 
+  /**
+   * <p>[概要] Google API リクエストの初期化クラスの Bean 定義メソッド。</p>
+   * <p>[詳細] 共有の HTTP トランスポートで送信するリクエストに接続タイムアウトと読み取りタイムアウトを設定します。</p>
+   * <p>[備考] タイムアウトは google.http.connect-timeout-ms と google.http.read-timeout-ms で変更できます。</p>
+   *
+   * @param connectTimeoutMs 接続タイムアウト（ミリ秒）
+   * @param readTimeoutMs    読み取りタイムアウト（ミリ秒）
+   * @return タイムアウトを設定するリクエストの初期化クラス
+   * @since 1.0
+   */
+  @Bean
+  public HttpRequestInitializer googleTimeoutInitializer(
+      @Value("${google.http.connect-timeout-ms:10000}") int connectTimeoutMs,
+      @Value("${google.http.read-timeout-ms:20000}") int readTimeoutMs) {
+    return request -> request.setConnectTimeout(connectTimeoutMs)
+        .setReadTimeout(readTimeoutMs);
+  }
+
+  /**
+   * <p>[概要] Google Calendar API の並列呼び出し用スレッドプールの Bean 定義メソッド。</p>
+   * <p>[詳細] バッチリクエストを使用しない場合に、参加者ごとのリクエストを並列に実行するスレッドプールを提供します。</p>
+   * <p>[備考] スレッド数は google.calendar.fanout.threads で変更できます。
+   * Webhook処理のスレッドから待機するため、Webhook処理用とは別のプールとしています。</p>
+   *
+   * @param threads スレッド数
+   * @return 並列呼び出し用の実行クラス
+   * @since 1.0
+   */
+  @Bean(name = "calendarFanOutExecutor")
+  public TaskExecutor calendarFanOutExecutor(
+      @Value("${google.calendar.fanout.threads:16}") int threads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setThreadNamePrefix("calendar-fanout-");
+    return executor;
+  }
+
   /**
    * <p>[概要] アプリケーション名の Bean 定義メソッド。</p>
    * <p>[詳細] Google Calendar API へのアクセス時に使用するアプリケーション名を提供する Bean 定義メソッド。</p>
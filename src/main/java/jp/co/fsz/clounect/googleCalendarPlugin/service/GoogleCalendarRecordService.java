@@ -4,7 +4,10 @@ import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventAttendee;
 import com.google.gson.Gson;
 import jp.co.fsz.clounect.core.dto.AppDataDto;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
 import jp.co.fsz.clounect.core.service.AppDataService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarBatchResult;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CredentialsMissingException;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
@@ -62,16 +65,24 @@ public class GoogleCalendarRecordService {
    * <p>[備考] このメソッドは、指定されたアクセストークンでGoogle Calendar
    * APIにアクセスし、提供されたJSONデータを新しいレコードとして追加します。</p>
    * <p>データベースが設定された後には、コメントアウトされている部分を有効にしてアクセストークンを取得できるようにしてください。</p>
+   * <p>参加者ごとのイベントは1回のバッチリクエストで作成し、作成できたイベントのみを send_payload に記録します。
+   * 作成できなかった参加者がいる場合は、記録した後に例外をスローして受付キューで再試行させます。
+   * イベントIDは AppData の ID と参加者から導出するため、再試行では作成済みのイベントは重複せず、不足している参加者のみが作成されます。
+   * 反映方法が SHARED_EVENT の場合は、すべての参加者を含むイベントを1件だけ作成し、そのイベントIDを記録します。
+   * イベントIDは AppData の ID から導出するため、作成リクエストを再試行してもイベントは重複しません。</p>
    *
    * @param accessToken Google Calendar API へのアクセスに使用するアクセストークン
    * @param jsonData    追加するレコードの情報を含むJSONデータのリスト
+   * @param syncMode    サイトのイベントの反映方法
+   * @param sendUpdates サイトの参加者への通知方法
    * @throws CredentialsMissingException    アクセストークンまたはJSONデータが不足している場合に発生
    * @throws IllegalArgumentException       JSONデータから生成されたイベントが存在しない場合に発生
    * @throws CouldNotPerformActionException カレンダーイベントの作成中に発生したその他の例外
    * @since 1.0
    */
   public void addRecord(String accessToken, Map<String, Object> jsonData,
-      AppDataDto appDataDto, UUID transactionId) {
+      AppDataDto appDataDto, EventSyncMode syncMode, SendUpdatesPolicy sendUpdates,
+      UUID transactionId) {
     try {
       if (checkNullAndEmpty(accessToken) || jsonData == null || jsonData.isEmpty()) {
         throw new CredentialsMissingException("accessToken, JsonData are required");
@@ -88,17 +99,40 @@ public class GoogleCalendarRecordService {
         List<AppDataDto.Data> events = new ArrayList<>();
         Gson gson = new Gson();
 
-        for (EventAttendee participant : participants) {
-          Event createdEvent = googleCalendarService.createCalendarEvent(accessToken,
-              event, participant, transactionId);
-          if (createdEvent != null) {
+        List<CalendarBatchResult<Event>> results;
+        if (participants.isEmpty()) {
+          results = List.of();
+        } else if (syncMode == EventSyncMode.SHARED_EVENT) {
+          results = List.of(
+              googleCalendarService.createSharedCalendarEvent(accessToken, appDataDto.getId(),
+                  event, participants, sendUpdates));
+        } else {
+          results = googleCalendarService.createCalendarEvents(accessToken, appDataDto.getId(),
+              event, participants, sendUpdates);
+        }
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+          CalendarBatchResult<Event> created = results.get(i);
+          if (created.succeeded()) {
+            Event createdEvent = created.value();
             events.add(new AppDataDto.Data(createdEvent.getId(), type, createdEvent));
+          } else {
+            String attendee = syncMode == EventSyncMode.SHARED_EVENT ? "all participants"
+                : participants.get(i).getEmail();
+            log.warn("Failed to create event for {}: {} (transactionId={})", attendee,
+                created.error().getMessage(), transactionId);
+            failed.add(attendee);
           }
         }
-        AppDataDto.Payload sendPayload = new AppDataDto.Payload(
-            List.of(new AppDataDto.Data(String.valueOf(recordId), type, result)), events);
-        appDataDto.setSendPayload(gson.toJson(sendPayload));
-        appDataService.saveAppData(appDataDto);
+        if (!events.isEmpty() || failed.isEmpty()) {
+          AppDataDto.Payload sendPayload = new AppDataDto.Payload(
+              List.of(new AppDataDto.Data(String.valueOf(recordId), type, result)), events);
+          appDataDto.setSendPayload(gson.toJson(sendPayload));
+          appDataService.saveAppData(appDataDto);
+        }
+        if (!failed.isEmpty()) {
+          throw new CouldNotPerformActionException("カレンダーを作成できませんでした: " + failed);
+        }
 
       } else {
         throw new NotFoundException("イベントは存在しません");
@@ -116,18 +150,25 @@ public class GoogleCalendarRecordService {
    * <p>[備考] このメソッドは、指定されたアクセストークンでGoogle Calendar
    * APIにアクセスし、提供されたJSONデータを使って指定されたイベントを更新します。</p>
    * <p>データベースが設定された後には、コメントアウトされている部分を有効にしてアクセストークンを取得できるようにしてください。</p>
+   * <p>イベントは前回のレスポンスの ETag を条件とした PATCH で1回のバッチリクエストにまとめて更新し、
+   * いずれかのイベントを更新できなかった場合は send_payload を変更しません。
+   * 反映方法が SHARED_EVENT で共有イベントを1件のみ記録している場合は、出席者も更新します。</p>
    *
    * @param accessToken Google Calendar API へのアクセスに使用するアクセストークン
    * @param jsonData    更新するレコードの情報を含むJSONデータのリスト
    * @param calendarId  更新対象のカレンダーのID
    * @param eventIds    更新対象のイベントのID
+   * @param etags       イベントIDごとの前回のレスポンスの ETag
+   * @param syncMode    サイトのイベントの反映方法
+   * @param sendUpdates サイトの参加者への通知方法
    * @throws CredentialsMissingException    アクセストークン、カレンダーID、イベントID、またはJSONデータが不足している場合に発生
    * @throws IllegalArgumentException       JSONデータから生成されたイベントが存在しない場合に発生
    * @throws CouldNotPerformActionException カレンダーイベントの更新中に発生したその他の例外
    * @since 1.0
    */
   public void updateRecord(String accessToken, Map<String, Object> jsonData,
-      String calendarId, List<String> eventIds, AppDataDto appDataDto,
+      String calendarId, List<String> eventIds, Map<String, String> etags,
+      AppDataDto appDataDto, EventSyncMode syncMode, SendUpdatesPolicy sendUpdates,
       UUID transactionId) {
     try {
 
@@ -147,16 +188,21 @@ public class GoogleCalendarRecordService {
 
         List<AppDataDto.Data> events = new ArrayList<>();
         Gson gson = new Gson();
-        for (String eventId : eventIds) {
-
-          log.info("event" + event);
-          Event updateEventDetails = googleCalendarService.updateCalendarEvent(
-              accessToken, calendarId, eventId, event);
-          if (updateEventDetails != null) {
-            events.add(new AppDataDto.Data(updateEventDetails.getId(), type,
-                updateEventDetails));
+        if (syncMode == EventSyncMode.SHARED_EVENT && eventIds.size() == 1) {
+          event = event.clone();
+          event.setAttendees(new ArrayList<>(castList(result.get("participants"))));
+        }
+        log.info("event" + event);
+        List<CalendarBatchResult<Event>> results = googleCalendarService.updateCalendarEvents(
+            accessToken, calendarId, eventIds, etags, event, sendUpdates);
+        for (int i = 0; i < results.size(); i++) {
+          CalendarBatchResult<Event> updated = results.get(i);
+          if (!updated.succeeded()) {
+            throw new CouldNotPerformActionException(
+                "Failed to update event " + eventIds.get(i) + ": " + updated.error().getMessage());
           }
-
+          Event updateEventDetails = updated.value();
+          events.add(new AppDataDto.Data(updateEventDetails.getId(), type, updateEventDetails));
           log.info("updateEventDetails" + updateEventDetails);
         }
 
@@ -198,6 +244,49 @@ public class GoogleCalendarRecordService {
     }
   }
 
+  /**
+   * <p>[概要] Google Calendar の複数のレコードをまとめて削除するメソッド。</p>
+   * <p>[詳細] 指定されたイベントIDのイベントを、Google のバッチリクエストにまとめて削除します。</p>
+   * <p>[備考] 既に削除されているイベント（404 または 410）は削除済みとして扱います。</p>
+   *
+   * @param accessToken   Google Calendar API へのアクセスに使用するアクセストークン
+   * @param eventIds      削除対象のイベントのID
+   * @param sendUpdates   サイトの参加者への通知方法
+   * @param transactionId Log TransactionId
+   * @throws CredentialsMissingException    アクセストークンが不足している場合に発生
+   * @throws CouldNotPerformActionException 削除できなかったイベントがある場合に発生
+   * @since 1.0
+   */
+  public void deleteRecords(String accessToken, List<String> eventIds,
+      SendUpdatesPolicy sendUpdates, UUID transactionId) {
+    if (checkNullAndEmpty(accessToken)) {
+      throw new CredentialsMissingException("Access token and eventId are required");
+    }
+    List<String> targets = eventIds.stream().filter(eventId -> !checkNullAndEmpty(eventId))
+        .toList();
+    if (targets.isEmpty()) {
+      return;
+    }
+    List<CalendarBatchResult<Void>> results;
+    try {
+      results = googleCalendarService.deleteCalendarEvents(accessToken, targets, sendUpdates);
+    } catch (IOException e) {
+      throw new CouldNotPerformActionException("カレンダーを削除できませんでした", e);
+    }
+    List<String> failed = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      CalendarBatchResult<Void> deleted = results.get(i);
+      if (!deleted.succeeded() && deleted.statusCode() != 404 && deleted.statusCode() != 410) {
+        log.warn("Failed to delete event {}: {} (transactionId={})", targets.get(i),
+            deleted.error().getMessage(), transactionId);
+        failed.add(targets.get(i));
+      }
+    }
+    if (!failed.isEmpty()) {
+      throw new CouldNotPerformActionException("カレンダーを削除できませんでした: " + failed);
+    }
+  }
+
   /**
    * <p>[概要] ジェネリックな型のリストに変換を行うメソッド。</p>
    * <p>[詳細] 指定されたオブジェクトをジェネリックな型のリストに安全に変換して返すメソッド。</p>
@@ -1,25 +1,39 @@
 package jp.co.fsz.clounect.googleCalendarPlugin.service;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Channel;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventAttendee;
+import com.google.api.services.calendar.model.FreeBusyCalendar;
+import com.google.api.services.calendar.model.FreeBusyRequest;
+import com.google.api.services.calendar.model.FreeBusyRequestItem;
+import com.google.api.services.calendar.model.FreeBusyResponse;
 import com.google.api.services.calendar.model.Events;
-import com.google.auth.oauth2.AccessToken;
-import com.google.auth.oauth2.GoogleCredentials;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarAccess;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarBatchResult;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarChanges;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * <p>[概要] Google Calendar サービスクラス。</p>
@@ -34,30 +48,32 @@ import java.util.UUID;
 @Service
 @Slf4j
 public class GoogleCalendarService {
-  private final HttpTransport httpTransport;
-  private final JsonFactory jsonFactory;
-  private final String applicationName;
+  private static final Pattern DERIVED_EVENT_ID = Pattern.compile("[0-9a-f]{64}");
+
+  private final GoogleCalendarClientFactory calendarClientFactory;
   private final GoogleRecordService googleRecordService;
 
+  @Value("${google.calendar.sync.page-size:250}")
+  private int syncPageSize;
+
+  @Value("${google.calendar.freebusy.max-items:50}")
+  private int freeBusyMaxItems;
+
   /**
    * <p>[概要] Google Calendar サービスを初期化するためのコンストラクタ。</p>
-   * <p>[詳細] 指定された HTTP トランスポート、JSON ファクトリ、およびアプリケーション名を使用して、Google Calendar
+   * <p>[詳細] 共有の Calendar クライアントを提供するファクトリを使用して、Google Calendar
    * サービスを初期化します。</p>
    * <p>[備考] なし。</p>
    *
-   * @param httpTransport     Google Calendar サービスへの HTTP トランスポート
-   * @param jsonFactory       JSON ファクトリ
-   * @param applicationName   アプリケーション名
+   * @param calendarClientFactory 共有の Calendar クライアントを提供するファクトリ
    * @param googleRecordService
    * @since 1.0
    */
   @Autowired
-  public GoogleCalendarService(HttpTransport httpTransport, JsonFactory jsonFactory,
-      String applicationName, GoogleRecordService googleRecordService) {
+  public GoogleCalendarService(GoogleCalendarClientFactory calendarClientFactory,
+      GoogleRecordService googleRecordService) {
 
-    this.httpTransport = httpTransport;
-    this.jsonFactory = jsonFactory;
-    this.applicationName = applicationName;
+    this.calendarClientFactory = calendarClientFactory;
     this.googleRecordService = googleRecordService;
   }
 
@@ -75,17 +91,11 @@ public class GoogleCalendarService {
   public Event createCalendarEvent(String accessToken, Event eventDetails,
       EventAttendee participant, UUID transactionId) throws IOException {
     try {
-      GoogleCredentials credentials = GoogleCredentials.newBuilder()
-          .setAccessToken(new AccessToken(accessToken, null)).build();
-
-      HttpRequestInitializer requestInitializer = request -> request.getHeaders()
-          .setAuthorization("Bearer " + credentials.getAccessToken().getTokenValue());
-
-      Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory,
-          requestInitializer).setApplicationName(applicationName).build();
+      Calendar calendar = calendarClientFactory.calendar();
       eventDetails.setAttendees(Collections.singletonList(participant));
 
-      Event createdData = calendar.events().insert("primary", eventDetails).execute();
+      Event createdData = calendarClientFactory.execute("insert", accessToken,
+          calendar.events().insert("primary", eventDetails));
       log.info("Calendar created: " + createdData);
       return createdData;
     } catch (CouldNotPerformActionException e) {
@@ -108,16 +118,10 @@ public class GoogleCalendarService {
    */
   public void deleteCalendarEvent(String accessToken, String eventId) throws IOException {
     try {
-      GoogleCredentials credentials = GoogleCredentials.newBuilder()
-          .setAccessToken(new AccessToken(accessToken, null)).build();
-
-      HttpRequestInitializer requestInitializer = request -> request.getHeaders()
-          .setAuthorization("Bearer " + credentials.getAccessToken().getTokenValue());
+      Calendar calendar = calendarClientFactory.calendar();
 
-      Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory,
-          requestInitializer).setApplicationName(applicationName).build();
-
-      calendar.events().delete("primary", eventId).execute();
+      calendarClientFactory.execute("delete", accessToken,
+          calendar.events().delete("primary", eventId));
     } catch (CouldNotPerformActionException e) {
       throw new CouldNotPerformActionException("Failed to delete CalendarEvent", e);
     }
@@ -126,7 +130,8 @@ public class GoogleCalendarService {
   /**
    * <p>[概要] アクセストークンとカレンダーIDを使用して指定されたイベントを更新するメソッド。</p>
    * <p>[詳細] アクセストークンとカレンダーIDを使用して、指定されたイベントの詳細情報を更新します。</p>
-   * <p>[備考] イベントの開始日時、終了日時、場所、サマリーなどが更新されたイベントの情報を渡してください。</p>
+   * <p>[備考] イベントの開始日時、終了日時、場所、サマリーなどが更新されたイベントの情報を渡してください。
+   * 変更する項目のみを PATCH で送信します。</p>
    *
    * @param accessToken         Google Calendar API にアクセスするためのアクセストークン
    * @param calendarId          イベントが存在するカレンダーのID
@@ -140,32 +145,285 @@ public class GoogleCalendarService {
   public Event updateCalendarEvent(String accessToken, String calendarId, String eventId,
       Event updatedEventDetails) {
     try {
-      AccessToken token = new AccessToken(accessToken, null);
-      GoogleCredentials credentials = GoogleCredentials.newBuilder().setAccessToken(token)
-          .build();
+      CalendarBatchResult<Event> updated = updateCalendarEvents(accessToken, calendarId,
+          List.of(eventId), Map.of(), updatedEventDetails, SendUpdatesPolicy.NONE).get(0);
+      if (!updated.succeeded()) {
+        throw new CouldNotPerformActionException(
+            "Failed to update CalendarEvent: " + updated.error().getMessage());
+      }
+      log.info("UpdatedData: " + updated.value());
+      return updated.value();
+    } catch (IOException e) {
+      log.error("Error");
+      throw new CouldNotPerformActionException("Failed to update CalendarEvent", e);
+    }
+  }
 
-      HttpRequestInitializer requestInitializer = request -> request.getHeaders()
-          .setAuthorization("Bearer " + credentials.getAccessToken().getTokenValue());
+  /**
+   * <p>[概要] 参加者ごとのカレンダーイベントをまとめて作成するメソッド。</p>
+   * <p>[詳細] 参加者1人につき1件のイベントを作成するリクエストを、Google のバッチリクエストにまとめて送信します。
+   * AppData の ID が指定されている場合は、AppData の ID と参加者から導出したイベントIDを設定します。</p>
+   * <p>[備考] 結果は参加者と同じ順序で返します。1件ごとの失敗は例外とせず結果として返します。
+   * イベントIDを設定することで、タイムアウトなどで再送した作成リクエストが既に反映されていた場合も
+   * 重複したイベントは作成されず、既存のイベントを結果として返します。</p>
+   *
+   * @param accessToken  Google Calendar API にアクセスするためのアクセストークン
+   * @param appDataId    イベントIDの導出に使用する AppData の ID
+   * @param eventDetails 新しいイベントの詳細を含む Event オブジェクト
+   * @param participants イベントの参加者
+   * @param sendUpdates  参加者への通知方法
+   * @return 参加者ごとの作成結果
+   * @throws IOException バッチリクエストの送信中にエラーが発生した場合
+   * @since 1.0
+   */
+  public List<CalendarBatchResult<Event>> createCalendarEvents(String accessToken,
+      Long appDataId, Event eventDetails, List<EventAttendee> participants,
+      SendUpdatesPolicy sendUpdates) throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    List<Calendar.Events.Insert> requests = new ArrayList<>(participants.size());
+    List<Event> events = new ArrayList<>(participants.size());
+    for (EventAttendee participant : participants) {
+      Event event = eventDetails.clone();
+      event.setAttendees(Collections.singletonList(participant));
+      event.setId(appDataId == null ? null
+          : eventId(appDataId, String.valueOf(participant.getEmail()).toLowerCase(Locale.ROOT)));
+      events.add(event);
+      requests.add(calendar.events().insert("primary", event.clone())
+          .setSendUpdates(sendUpdates.apiValue()));
+    }
+    return insertEvents(accessToken, requests, events, sendUpdates);
+  }
 
-      Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory,
-          requestInitializer).setApplicationName(applicationName).build();
+  /**
+   * <p>[概要] すべての参加者を含むカレンダーイベントを1件作成するメソッド。</p>
+   * <p>[詳細] アクセストークンの所有者（主催者）のカレンダーに、参加者全員を出席者とするイベントを作成し、
+   * サイトの通知方法に従って参加者に招待を送信します。</p>
+   * <p>[備考] AppData の ID が指定されている場合は、AppData の ID から導出したイベントIDを設定し、
+   * 再送した作成リクエストが既に反映されていた場合は既存のイベントを結果として返します。</p>
+   *
+   * @param accessToken  Google Calendar API にアクセスするためのアクセストークン
+   * @param appDataId    イベントIDの導出に使用する AppData の ID
+   * @param eventDetails 新しいイベントの詳細を含む Event オブジェクト
+   * @param participants イベントの参加者
+   * @param sendUpdates  参加者への通知方法
+   * @return 作成結果
+   * @throws IOException リクエストの送信中にエラーが発生した場合
+   * @since 1.0
+   */
+  public CalendarBatchResult<Event> createSharedCalendarEvent(String accessToken,
+      Long appDataId, Event eventDetails, List<EventAttendee> participants,
+      SendUpdatesPolicy sendUpdates) throws IOException {
+    Event event = eventDetails.clone();
+    event.setAttendees(new ArrayList<>(participants));
+    event.setId(appDataId == null ? null : eventId(appDataId, "shared"));
+    Calendar.Events.Insert request = calendarClientFactory.calendar().events()
+        .insert("primary", event.clone()).setSendUpdates(sendUpdates.apiValue());
+    return insertEvents(accessToken, List.of(request), List.of(event), sendUpdates).get(0);
+  }
 
-      Event existingEventData = calendar.events().get(calendarId, eventId).execute();
+  /**
+   * <p>[概要] 作成リクエストを送信し、既に存在するイベントを取得するメソッド。</p>
+   * <p>[詳細] イベントIDを指定した作成リクエストが 409 となった場合は、再送前のリクエストで作成済みのため、
+   * そのイベントを取得して結果とします。</p>
+   * <p>[備考] 削除したイベントは Google に status が cancelled のまま残るため、同じ AppData の行を再利用した作成では
+   * 409 となります。取得したイベントがキャンセル済みの場合は、status を confirmed に戻して新しい内容で PATCH し、
+   * 復元したイベントを結果とします。</p>
+   */
+  private List<CalendarBatchResult<Event>> insertEvents(String accessToken,
+      List<Calendar.Events.Insert> requests, List<Event> events, SendUpdatesPolicy sendUpdates)
+      throws IOException {
+    List<CalendarBatchResult<Event>> results = new ArrayList<>(
+        calendarClientFactory.executeBatch("insert", accessToken, requests));
+    List<Integer> duplicates = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i).statusCode() == 409 && events.get(i).getId() != null) {
+        duplicates.add(i);
+      }
+    }
+    if (duplicates.isEmpty()) {
+      return results;
+    }
 
-      existingEventData.setSummary(updatedEventDetails.getSummary());
-      existingEventData.setStart(updatedEventDetails.getStart());
-      existingEventData.setEnd(updatedEventDetails.getEnd());
-      existingEventData.setLocation(updatedEventDetails.getLocation());
+    log.info("{} event(s) already exist; fetching them instead of inserting", duplicates.size());
+    Calendar calendar = calendarClientFactory.calendar();
+    List<Calendar.Events.Get> gets = new ArrayList<>(duplicates.size());
+    for (int index : duplicates) {
+      gets.add(calendar.events().get("primary", events.get(index).getId()));
+    }
+    List<CalendarBatchResult<Event>> existing = calendarClientFactory.executeBatch("get",
+        accessToken, gets);
+    List<Integer> cancelled = new ArrayList<>();
+    List<Calendar.Events.Patch> restores = new ArrayList<>();
+    for (int i = 0; i < duplicates.size(); i++) {
+      int index = duplicates.get(i);
+      results.set(index, existing.get(i));
+      Event current = existing.get(i).value();
+      if (current != null && "cancelled".equals(current.getStatus())) {
+        Event restored = events.get(index).clone().setStatus("confirmed");
+        Calendar.Events.Patch restore = calendar.events()
+            .patch("primary", restored.getId(), restored)
+            .setSendUpdates(sendUpdates.apiValue());
+        if (current.getEtag() != null) {
+          restore.getRequestHeaders().setIfMatch(current.getEtag());
+        }
+        cancelled.add(index);
+        restores.add(restore);
+      }
+    }
+    if (!restores.isEmpty()) {
+      log.info("Restoring {} cancelled event(s)", restores.size());
+      List<CalendarBatchResult<Event>> restored = calendarClientFactory.executeBatch("restore",
+          accessToken, restores);
+      for (int i = 0; i < cancelled.size(); i++) {
+        results.set(cancelled.get(i), restored.get(i));
+      }
+    }
+    return results;
+  }
 
-      Event updatedData = calendar.events().update(calendarId, eventId, existingEventData)
-          .execute();
-      log.info("UpdatedData: " + updatedData);
+  /**
+   * <p>[概要] AppData の ID と参加者からイベントIDを導出するメソッド。</p>
+   * <p>[詳細] SHA-256 の16進表記を使用するため、Google Calendar のイベントIDに使用できる文字（base32hex）のみで構成されます。</p>
+   *
+   * @param appDataId AppData の ID
+   * @param attendee  参加者のメールアドレス。共有イベントの場合は "shared"
+   * @return イベントID
+   * @since 1.0
+   */
+  static String eventId(long appDataId, String attendee) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+          ("clounect:" + appDataId + ":" + attendee).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
 
-      return updatedData;
-    } catch (IOException e) {
-      log.error("Error");
-      throw new CouldNotPerformActionException("Failed to update CalendarEvent", e);
+  /**
+   * <p>[概要] イベントIDが {@link #eventId(long, String)} で導出した形式かどうかを判定するメソッド。</p>
+   *
+   * @param eventId イベントID
+   * @return 導出した形式（SHA-256 の16進表記）の場合は true
+   * @since 1.0
+   */
+  static boolean isDerivedEventId(String eventId) {
+    return eventId != null && DERIVED_EVENT_ID.matcher(eventId).matches();
+  }
+
+  /**
+   * <p>[概要] 複数のカレンダーイベントをまとめて更新するメソッド。</p>
+   * <p>[詳細] 変更する項目（サマリー、開始日時、終了日時、場所、および設定されている場合は出席者）のみを含む PATCH リクエストを、
+   * 1回のバッチリクエストで送信します。前回のレスポンスの ETag がある場合は If-Match ヘッダーに設定し、
+   * その後にイベントが変更されていないことを条件とします。</p>
+   * <p>[備考] 結果はイベントIDと同じ順序で返します。ETag が一致せず 412 となったイベントのみ、
+   * 最新のイベントを取得してその ETag で再度 PATCH を送信します。</p>
+   *
+   * @param accessToken         Google Calendar API にアクセスするためのアクセストークン
+   * @param calendarId          イベントが存在するカレンダーのID
+   * @param eventIds            更新するイベントのID
+   * @param etags               イベントIDごとの前回のレスポンスの ETag
+   * @param updatedEventDetails 更新後のイベントの詳細情報
+   * @param sendUpdates         参加者への通知方法
+   * @return イベントごとの更新結果
+   * @throws IOException バッチリクエストの送信中にエラーが発生した場合
+   * @since 1.0
+   */
+  public List<CalendarBatchResult<Event>> updateCalendarEvents(String accessToken,
+      String calendarId, List<String> eventIds, Map<String, String> etags,
+      Event updatedEventDetails, SendUpdatesPolicy sendUpdates) throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    List<Calendar.Events.Patch> patches = new ArrayList<>(eventIds.size());
+    for (String eventId : eventIds) {
+      patches.add(patchRequest(calendar, calendarId, eventId, etags.get(eventId),
+          updatedEventDetails, sendUpdates));
     }
+    List<CalendarBatchResult<Event>> results = new ArrayList<>(
+        calendarClientFactory.executeBatch("patch", accessToken, patches));
+
+    List<Integer> conflicts = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i).statusCode() == 412) {
+        conflicts.add(i);
+      }
+    }
+    if (conflicts.isEmpty()) {
+      return results;
+    }
+
+    log.info("ETag precondition failed for {} event(s); refetching", conflicts.size());
+    List<Calendar.Events.Get> gets = new ArrayList<>(conflicts.size());
+    for (int index : conflicts) {
+      gets.add(calendar.events().get(calendarId, eventIds.get(index)));
+    }
+    List<CalendarBatchResult<Event>> current = calendarClientFactory.executeBatch("get",
+        accessToken, gets);
+    List<Integer> retried = new ArrayList<>();
+    List<Calendar.Events.Patch> retries = new ArrayList<>();
+    for (int i = 0; i < conflicts.size(); i++) {
+      int index = conflicts.get(i);
+      if (!current.get(i).succeeded()) {
+        results.set(index, current.get(i));
+        continue;
+      }
+      retried.add(index);
+      retries.add(patchRequest(calendar, calendarId, eventIds.get(index),
+          current.get(i).value().getEtag(), updatedEventDetails, sendUpdates));
+    }
+    if (!retries.isEmpty()) {
+      List<CalendarBatchResult<Event>> patched = calendarClientFactory.executeBatch("patch",
+          accessToken, retries);
+      for (int i = 0; i < retried.size(); i++) {
+        results.set(retried.get(i), patched.get(i));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * <p>[概要] 変更する項目のみを含む PATCH リクエストを生成するメソッド。</p>
+   * <p>[詳細] ETag が指定されている場合は If-Match ヘッダーを設定します。</p>
+   */
+  private Calendar.Events.Patch patchRequest(Calendar calendar, String calendarId,
+      String eventId, String etag, Event updatedEventDetails, SendUpdatesPolicy sendUpdates)
+      throws IOException {
+    Event changes = new Event()
+        .setSummary(updatedEventDetails.getSummary())
+        .setStart(updatedEventDetails.getStart())
+        .setEnd(updatedEventDetails.getEnd())
+        .setLocation(updatedEventDetails.getLocation());
+    if (updatedEventDetails.getAttendees() != null) {
+      changes.setAttendees(updatedEventDetails.getAttendees());
+    }
+    Calendar.Events.Patch request = calendar.events().patch(calendarId, eventId, changes)
+        .setSendUpdates(sendUpdates.apiValue());
+    if (etag != null && !etag.isEmpty()) {
+      request.getRequestHeaders().setIfMatch(etag);
+    }
+    return request;
+  }
+
+  /**
+   * <p>[概要] 複数のカレンダーイベントをまとめて削除するメソッド。</p>
+   * <p>[詳細] 削除のリクエストを Google のバッチリクエストにまとめて送信します。</p>
+   * <p>[備考] 結果はイベントIDと同じ順序で返します。</p>
+   *
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param eventIds    削除するイベントのID
+   * @param sendUpdates 参加者への通知方法
+   * @return イベントごとの削除結果
+   * @throws IOException バッチリクエストの送信中にエラーが発生した場合
+   * @since 1.0
+   */
+  public List<CalendarBatchResult<Void>> deleteCalendarEvents(String accessToken,
+      List<String> eventIds, SendUpdatesPolicy sendUpdates) throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    List<Calendar.Events.Delete> requests = new ArrayList<>(eventIds.size());
+    for (String eventId : eventIds) {
+      requests.add(calendar.events().delete("primary", eventId)
+          .setSendUpdates(sendUpdates.apiValue()));
+    }
+    return calendarClientFactory.executeBatch("delete", accessToken, requests);
   }
 
   /**
@@ -185,20 +443,13 @@ public class GoogleCalendarService {
   public List<Event> listCalendarEvents(String accessToken, String calendarId,
       String startDate, String endDate) throws IOException {
     try {
-      GoogleCredentials credentials = GoogleCredentials.newBuilder()
-          .setAccessToken(new AccessToken(accessToken, null)).build();
-
-      HttpRequestInitializer requestInitializer = request -> request.getHeaders()
-          .setAuthorization("Bearer " + credentials.getAccessToken().getTokenValue());
-
-      Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory,
-          requestInitializer).setApplicationName(applicationName).build();
+      Calendar calendar = calendarClientFactory.calendar();
 
       DateTime startDateTime = new DateTime(startDate);
       DateTime endDateTime = new DateTime(endDate);
 
-      Events events = calendar.events().list(calendarId).setTimeMin(startDateTime)
-          .setTimeMax(endDateTime).execute();
+      Events events = calendarClientFactory.execute("list", accessToken,
+          calendar.events().list(calendarId).setTimeMin(startDateTime).setTimeMax(endDateTime));
 
       return events.getItems();
     } catch (CouldNotPerformActionException e) {
@@ -206,36 +457,141 @@ public class GoogleCalendarService {
     }
   }
 
+  /**
+   * <p>[概要] 同期トークン以降に変更されたイベントを取得するメソッド。</p>
+   * <p>[詳細] 同期トークンを指定した場合は前回の同期以降に変更されたイベントのみを、指定しない場合はカレンダーの全イベントを
+   * ページ単位で取得し、最後のページで返される次回の同期トークンとともに返します。</p>
+   * <p>[備考] 同期トークンは期間などの条件と併用できないため、全件取得も期間を指定せずに行います。
+   * 同期トークンが無効になっている場合は Google から 410 が返されます。</p>
+   *
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param calendarId  イベントを取得するカレンダーのID
+   * @param syncToken   前回の同期で取得した同期トークン（全件取得する場合は null）
+   * @return 変更されたイベントと次回の同期トークン
+   * @throws IOException イベントの取得中にエラーが発生した場合
+   * @since 1.0
+   */
+  public CalendarChanges listCalendarEventChanges(String accessToken, String calendarId,
+      String syncToken) throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    List<Event> events = new ArrayList<>();
+    String pageToken = null;
+    Events page;
+    do {
+      Calendar.Events.List request = calendar.events().list(calendarId)
+          .setMaxResults(syncPageSize)
+          .setPageToken(pageToken)
+          .setSyncToken(syncToken);
+      page = calendarClientFactory.execute(syncToken == null ? "full_sync" : "incremental_sync",
+          accessToken, request);
+      if (page.getItems() != null) {
+        events.addAll(page.getItems());
+      }
+      pageToken = page.getNextPageToken();
+    } while (pageToken != null);
+    return new CalendarChanges(events, page.getNextSyncToken(), syncToken == null);
+  }
+
+  /**
+   * <p>[概要] カレンダーのイベントの変更通知チャネルを登録するメソッド。</p>
+   * <p>[詳細] events.watch を呼び出し、カレンダーのイベントが変更された場合にチャネルのアドレスへ通知されるようにします。</p>
+   * <p>[備考] 返されたチャネルにはGoogle が発行したリソースIDと有効期限（エポックミリ秒）が設定されています。</p>
+   *
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param calendarId  通知の対象とするカレンダーのID
+   * @param channel     チャネルのID、通知先アドレス、検証用トークンを設定したチャネル
+   * @return 登録されたチャネル
+   * @throws IOException チャネルの登録中にエラーが発生した場合
+   * @since 1.0
+   */
+  public Channel watchCalendarEvents(String accessToken, String calendarId, Channel channel)
+      throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    return calendarClientFactory.execute("watch", accessToken,
+        calendar.events().watch(calendarId, channel));
+  }
+
+  /**
+   * <p>[概要] 変更通知チャネルを停止するメソッド。</p>
+   *
+   * @param accessToken Google Calendar API にアクセスするためのアクセストークン
+   * @param channelId   チャネルのID
+   * @param resourceId  チャネルの登録時に Google が発行したリソースID
+   * @throws IOException チャネルの停止中にエラーが発生した場合
+   * @since 1.0
+   */
+  public void stopChannel(String accessToken, String channelId, String resourceId)
+      throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    calendarClientFactory.execute("stop_channel", accessToken,
+        calendar.channels().stop(new Channel().setId(channelId).setResourceId(resourceId)));
+  }
+
   /**
    * <p>[概要] アクセストークンとカレンダーIDを使用してカレンダーアクセスを確認するメソッド。</p>
-   * <p>[詳細] 提供されたアクセストークンとカレンダーIDリストを使用して、各カレンダーへのアクセスを確認します。</p>
-   * <p>[備考] 開始日と終了日の形式は "yyyy-MM-dd" です。</p>
+   * <p>[詳細] {@link #checkCalendarAccess(String, List)} で1件のメールアドレスを確認します。</p>
    *
    * @param accessToken Google Calendar API アクセストークン
-   * @param email       カレンダーIDを表すメールアドレスのリスト
-   * @return 各カレンダーのアクセスステータスを示す真偽値のリスト
+   * @param email       カレンダーIDを表すメールアドレス
+   * @return カレンダーを参照できる場合は true
    * @throws GoogleJsonResponseException アクセス確認中にエラーが発生した場合
-   * @throws IOException                 アクセス確認中にエラーが発生した場合
    * @since 1.0
    */
   public boolean checkCalendarAccess(String accessToken, String email) throws GoogleJsonResponseException {
-    GoogleCredentials credentials = GoogleCredentials.newBuilder()
-        .setAccessToken(new AccessToken(accessToken, null)).build();
-    HttpRequestInitializer requestInitializer = request -> request.getHeaders()
-        .setAuthorization("Bearer " + credentials.getAccessToken().getTokenValue());
-
-    Calendar calendar = new Calendar.Builder(httpTransport, jsonFactory, requestInitializer).build();
-
-    boolean valid = false;
     try {
-      Events events = calendar.events().list(email).setMaxResults(1).execute();
-      if (events != null) {
-        valid = true;
-      }
+      return checkCalendarAccess(accessToken, List.of(email)).get(0).accessible();
+    } catch (GoogleJsonResponseException e) {
+      throw e;
     } catch (IOException e) {
       log.error("Error getting calendar User: " + e.getMessage());
+      return false;
     }
+  }
 
-    return valid;
+  /**
+   * <p>[概要] 複数のカレンダーへのアクセスをまとめて確認するメソッド。</p>
+   * <p>[詳細] google.calendar.freebusy.max-items 件ずつ1回の free/busy 問い合わせにまとめ、
+   * エラーなく free/busy を取得できたカレンダーを参照可能と判定します。</p>
+   * <p>[備考] イベントを取得しないため、カレンダーごとにイベント一覧を取得するより軽量です。結果はメールアドレスと同じ順序で返します。</p>
+   *
+   * @param accessToken Google Calendar API アクセストークン
+   * @param emails      カレンダーIDを表すメールアドレスのリスト
+   * @return メールアドレスごとの確認結果
+   * @throws IOException 問い合わせ中にエラーが発生した場合
+   * @since 1.0
+   */
+  public List<CalendarAccess> checkCalendarAccess(String accessToken, List<String> emails)
+      throws IOException {
+    Calendar calendar = calendarClientFactory.calendar();
+    List<CalendarAccess> results = new ArrayList<>(emails.size());
+    long now = System.currentTimeMillis();
+    for (int from = 0; from < emails.size(); from += freeBusyMaxItems) {
+      List<String> chunk = emails.subList(from, Math.min(from + freeBusyMaxItems, emails.size()));
+      List<FreeBusyRequestItem> items = new ArrayList<>(chunk.size());
+      chunk.forEach(email -> items.add(new FreeBusyRequestItem().setId(email)));
+      FreeBusyRequest query = new FreeBusyRequest()
+          .setTimeMin(new DateTime(now))
+          .setTimeMax(new DateTime(now + 3600_000L))
+          .setItems(items);
+      FreeBusyResponse response = calendarClientFactory.execute("freebusy", accessToken,
+          calendar.freebusy().query(query));
+
+      Map<String, FreeBusyCalendar> calendars = new HashMap<>();
+      if (response.getCalendars() != null) {
+        response.getCalendars().forEach(
+            (id, value) -> calendars.put(id.toLowerCase(Locale.ROOT), value));
+      }
+      for (String email : chunk) {
+        FreeBusyCalendar found = calendars.get(email.toLowerCase(Locale.ROOT));
+        if (found == null) {
+          results.add(new CalendarAccess(email, false, "notFound"));
+        } else if (found.getErrors() != null && !found.getErrors().isEmpty()) {
+          results.add(new CalendarAccess(email, false, found.getErrors().get(0).getReason()));
+        } else {
+          results.add(new CalendarAccess(email, true, null));
+        }
+      }
+    }
+    return results;
   }
 }
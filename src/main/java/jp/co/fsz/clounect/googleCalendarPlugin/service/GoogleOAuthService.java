@@ -3,13 +3,14 @@ package jp.co.fsz.clounect.googleCalendarPlugin.service;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleRefreshTokenRequest;
 import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.TokenGenerationException;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.util.List;
@@ -17,6 +18,9 @@ import java.util.List;
 /**
  * <p>[概要] Google Calendar APIにアクセスするためのサービスクラス。</p>
  * <p>[詳細] Google Calendar APIとのやり取りに必要な各種メソッドを提供します。</p>
+ * <p>[備考] トークンの取得には {@link GoogleCalendarConfig} が提供する共有の HTTP トランスポートと JSON ファクトリを使用し、
+ * 呼び出しごとにトランスポートを生成しません。各呼び出しの所要時間は google.oauth.request として記録します。
+ * トークンの更新は再試行しますが、認証コードは1回しか使用できないため認証コードによる取得は再試行しません。</p>
  * <p>[環境] JDK17.0</p>
  * <p>著作権 FSZ 2024</p>
  *
@@ -25,9 +29,34 @@ import java.util.List;
  */
 @Service
 public class GoogleOAuthService {
-  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
   private static final String calendarEvent = "https://www.googleapis.com/auth/calendar.events";
 
+  private final HttpTransport httpTransport;
+  private final JsonFactory jsonFactory;
+  private final HttpRequestInitializer requestInitializer;
+  private final GoogleRetryPolicy retryPolicy;
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * <p>[概要] GoogleOAuthServiceのコンストラクタ。</p>
+   *
+   * @param httpTransport      共有の HTTP トランスポート
+   * @param jsonFactory        共有の JSON ファクトリ
+   * @param requestInitializer タイムアウトを設定するリクエストの初期化クラス
+   * @param retryPolicy        Google API 呼び出しの再試行ポリシー
+   * @param meterRegistry      メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleOAuthService(HttpTransport httpTransport, JsonFactory jsonFactory,
+      @Qualifier("googleTimeoutInitializer") HttpRequestInitializer requestInitializer,
+      GoogleRetryPolicy retryPolicy, MeterRegistry meterRegistry) {
+    this.httpTransport = httpTransport;
+    this.jsonFactory = jsonFactory;
+    this.requestInitializer = requestInitializer;
+    this.retryPolicy = retryPolicy;
+    this.meterRegistry = meterRegistry;
+  }
+
   /**
    * <p>[概要] Google Calendar API からアクセストークンを取得するメソッド。</p>
    * <p>[詳細] 認証コードを使用して、Google Calendar アクセストークンを取得します。</p>
@@ -41,26 +70,34 @@ public class GoogleOAuthService {
    * @since 1.0
    */
   public OAuthToken getAccessToken(String clientId, String clientSecret,String authorizationCode, String redirectUri) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "failure";
     try {
       List<String> scopes = List.of(calendarEvent);
       GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-          GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, clientId,
+          httpTransport, jsonFactory, clientId,
           clientSecret, scopes).setAccessType("offline").setApprovalPrompt("force")
+          .setRequestInitializer(requestInitializer)
           .build();
 
       GoogleTokenResponse response = flow.newTokenRequest(authorizationCode)
           .setRedirectUri(redirectUri).execute();
 
+      outcome = "success";
       return new OAuthToken(response.getAccessToken(), response.getRefreshToken(),
           response.getTokenType(), Math.toIntExact(response.getExpiresInSeconds()));
     } catch (Exception e) {
       throw new TokenGenerationException("Failed to get access token", e);
+    } finally {
+      sample.stop(meterRegistry.timer("google.oauth.request", "grant", "authorization_code",
+          "outcome", outcome));
     }
   }
 
   /**
    * <p>[概要] アクセストークンをリフレッシュするメソッド。</p>
-   * <p>[詳細] リフレッシュトークンを使用して、Google Calendar アクセストークンを更新します。</p>
+   * <p>[詳細] リフレッシュトークンを使用して、Google Calendar アクセストークンを更新します。
+   * レート制限やサーバーエラーの場合は {@link GoogleRetryPolicy} に従って再試行します。</p>
    *
    * @param clientId     クライアントID
    * @param clientSecret クライアントシークレット
@@ -71,18 +108,25 @@ public class GoogleOAuthService {
    */
   public OAuthToken getRefreshAccessToken(String clientId, String clientSecret,
       String refreshToken) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "failure";
     try {
       GoogleRefreshTokenRequest tokenRequest = new GoogleRefreshTokenRequest(
-          new NetHttpTransport(), new JacksonFactory(), refreshToken, clientId,
+          httpTransport, jsonFactory, refreshToken, clientId,
           clientSecret);
 
       tokenRequest.setGrantType("refresh_token");
-      GoogleTokenResponse response = tokenRequest.execute();
+      tokenRequest.setRequestInitializer(requestInitializer);
+      GoogleTokenResponse response = retryPolicy.execute("refresh_token", tokenRequest::execute);
 
+      outcome = "success";
       return new OAuthToken(response.getAccessToken(), response.getRefreshToken(),
           response.getTokenType(), Math.toIntExact(response.getExpiresInSeconds()));
     } catch (IOException e) {
       throw new TokenGenerationException("Failed to refresh access token", e);
+    } finally {
+      sample.stop(meterRegistry.timer("google.oauth.request", "grant", "refresh_token",
+          "outcome", outcome));
     }
   }
 }
@@ -0,0 +1,306 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.GoogleQuota;
+import jp.co.fsz.clounect.core.mapper.CredentialsMapper;
+import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.GoogleTokenKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.RateLimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>[概要] Google Calendar API 呼び出しのレート制限クラス。</p>
+ * <p>[詳細] Google プロジェクト（クライアントID）単位と対象カレンダー単位のトークンバケットで呼び出しを制限し、
+ * Google の割り当てを超えて 403 や 429 が連続しないようにします。</p>
+ * <p>[備考] 上限は AppSiteInfo の config の "googleQuota" で指定し、指定がない項目は google.calendar.rate-limit.* の値を使用します。
+ * バケットにトークンがない場合は google.calendar.rate-limit.max-wait-ms まで待機し、それを超える場合のみ
+ * {@link RateLimitExceededException} をスローします。
+ * アクセストークンとサイトの対応は {@link GoogleTokenCache} がトークンの取得時に登録します。
+ * サイトごとの上限は google.calendar.rate-limit.config-ttl-seconds の間キャッシュし、期限切れの読み込みはロックの外で行います。
+ * 待機時間は google.calendar.rate-limit.wait、拒否した回数は google.calendar.rate-limit.rejected、
+ * クライアントIDごとのバケットの使用率は google.calendar.rate-limit.saturation として記録します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class GoogleRateLimiter {
+  private static final GoogleTokenKey UNBOUND = new GoogleTokenKey(null, "unknown");
+
+  private final AppSiteInfoRepository appSiteInfoRepository;
+  private final CredentialsMapper credentialsMapper;
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentHashMap<String, Binding> bindings = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, CachedQuota> quotas = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, TokenBucket> projectBuckets = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<CalendarKey, TokenBucket> calendarBuckets =
+      new ConcurrentHashMap<>();
+
+  @Value("${google.calendar.rate-limit.enabled:true}")
+  private boolean enabled;
+
+  @Value("${google.calendar.rate-limit.project-per-second:150}")
+  private double projectPerSecond;
+
+  @Value("${google.calendar.rate-limit.project-burst:150}")
+  private double projectBurst;
+
+  @Value("${google.calendar.rate-limit.calendar-per-second:10}")
+  private double calendarPerSecond;
+
+  @Value("${google.calendar.rate-limit.calendar-burst:20}")
+  private double calendarBurst;
+
+  @Value("${google.calendar.rate-limit.max-wait-ms:5000}")
+  private long maxWaitMs;
+
+  @Value("${google.calendar.rate-limit.config-ttl-seconds:300}")
+  private long configTtlSeconds;
+
+  @Value("${google.calendar.rate-limit.idle-seconds:600}")
+  private long idleSeconds;
+
+  /**
+   * アクセストークンに対応するサイトとクライアントID。expiresAt はアクセストークンの有効期限です。
+   */
+  private record Binding(GoogleTokenKey key, long expiresAt) {
+  }
+
+  private record CachedQuota(GoogleQuota quota, long loadedAt) {
+  }
+
+  private record CalendarKey(Long siteId, String calendarId) {
+  }
+
+  /**
+   * <p>[概要] トークンバケット。</p>
+   * <p>[詳細] 1秒あたり rate 個のトークンを最大 capacity 個まで補充します。
+   * 呼び出しはトークンを先に消費し、不足分が補充されるまで待機します。</p>
+   * <p>[備考] バッチリクエストのように容量を超える件数を要求した場合は、容量分のトークンが揃った時点で送信し、
+   * 超過分は後続の呼び出しの待機時間となります。</p>
+   */
+  private static final class TokenBucket {
+    private double ratePerNano;
+    private double capacity;
+    private double tokens;
+    private long refilledAt;
+    private long lastUsed;
+
+    private TokenBucket(double perSecond, double burst) {
+      configure(perSecond, burst);
+      this.tokens = capacity;
+      this.refilledAt = System.nanoTime();
+      this.lastUsed = refilledAt;
+    }
+
+    private synchronized void configure(double perSecond, double burst) {
+      this.ratePerNano = Math.max(perSecond, 0.001) / TimeUnit.SECONDS.toNanos(1);
+      this.capacity = Math.max(burst, 1);
+      this.tokens = Math.min(tokens, capacity);
+    }
+
+    /**
+     * トークンを消費し、送信までに待機すべき時間（ナノ秒）を返します。待機時間が上限を超える場合は消費せずに -1 を返します。
+     */
+    private synchronized long reserve(int permits, long maxWaitNanos) {
+      long now = System.nanoTime();
+      refill(now);
+      double deficit = Math.min(permits, capacity) - tokens;
+      long wait = deficit <= 0 ? 0 : (long) Math.ceil(deficit / ratePerNano);
+      if (wait > maxWaitNanos) {
+        return -1;
+      }
+      tokens -= permits;
+      lastUsed = now;
+      return wait;
+    }
+
+    private synchronized void refund(int permits) {
+      tokens = Math.min(capacity, tokens + permits);
+    }
+
+    /**
+     * 使用率を返します。待機中の呼び出しがある場合は 1 を超えます。
+     */
+    private synchronized double saturation() {
+      refill(System.nanoTime());
+      return 1 - tokens / capacity;
+    }
+
+    private synchronized boolean idle(long now, long idleNanos) {
+      refill(now);
+      return tokens >= capacity && now - lastUsed > idleNanos;
+    }
+
+    private void refill(long now) {
+      tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+      refilledAt = now;
+    }
+  }
+
+  /**
+   * <p>[概要] GoogleRateLimiterのコンストラクタ。</p>
+   *
+   * @param appSiteInfoRepository アプリケーションサイト情報のリポジトリ
+   * @param credentialsMapper     config の変換に使用するマッパー
+   * @param meterRegistry         メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleRateLimiter(AppSiteInfoRepository appSiteInfoRepository,
+      CredentialsMapper credentialsMapper, MeterRegistry meterRegistry) {
+    this.appSiteInfoRepository = appSiteInfoRepository;
+    this.credentialsMapper = credentialsMapper;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder("google.calendar.rate-limit.buckets", calendarBuckets, ConcurrentHashMap::size)
+        .tag("scope", "calendar")
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] アクセストークンとサイトを対応付けるメソッド。</p>
+   * <p>[詳細] アクセストークンを使用した呼び出しに、サイトとクライアントIDのバケットを適用します。</p>
+   *
+   * @param accessToken アクセストークン
+   * @param key         アクセストークンを取得したサイトとクライアントID
+   * @param expiresAt   アクセストークンの有効期限（エポックミリ秒）
+   * @since 1.0
+   */
+  public void bind(String accessToken, GoogleTokenKey key, long expiresAt) {
+    bindings.put(accessToken, new Binding(key, expiresAt));
+  }
+
+  /**
+   * <p>[概要] 呼び出しの送信枠を取得するメソッド。</p>
+   * <p>[詳細] クライアントIDのバケットから全件分、対象カレンダーのバケットからカレンダーごとの件数分のトークンを消費し、
+   * トークンが補充されるまで待機します。</p>
+   * <p>[備考] カレンダーIDが空の呼び出しはクライアントIDのバケットのみを使用します。
+   * いずれかのバケットの待機時間が上限を超える場合は、消費したトークンを戻して例外をスローします。</p>
+   *
+   * @param accessToken        アクセストークン
+   * @param permitsByCalendar カレンダーIDごとの呼び出し件数
+   * @throws RateLimitExceededException 待機時間が上限を超える場合、または待機中に割り込まれた場合
+   * @since 1.0
+   */
+  public void acquire(String accessToken, Map<String, Integer> permitsByCalendar) {
+    if (!enabled || permitsByCalendar.isEmpty()) {
+      return;
+    }
+    Binding binding = bindings.get(accessToken);
+    GoogleTokenKey key = binding != null ? binding.key() : UNBOUND;
+    GoogleQuota quota = quota(key.siteId());
+    long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    int total = permitsByCalendar.values().stream().mapToInt(Integer::intValue).sum();
+
+    TokenBucket project = projectBucket(key.clientId(), quota);
+    long projectWait = project.reserve(total, maxWaitNanos);
+    if (projectWait < 0) {
+      throw reject("project", "Google API quota for client " + key.clientId() + " exhausted");
+    }
+    long wait = projectWait;
+    List<Map.Entry<TokenBucket, Integer>> reserved = new ArrayList<>();
+    for (Map.Entry<String, Integer> entry : permitsByCalendar.entrySet()) {
+      if (entry.getKey() == null || entry.getKey().isEmpty()) {
+        continue;
+      }
+      TokenBucket calendar = calendarBucket(new CalendarKey(key.siteId(), entry.getKey()),
+          quota);
+      long calendarWait = calendar.reserve(entry.getValue(), maxWaitNanos);
+      if (calendarWait < 0) {
+        project.refund(total);
+        reserved.forEach(done -> done.getKey().refund(done.getValue()));
+        throw reject("calendar", "Google API quota for calendar " + entry.getKey() + " exhausted");
+      }
+      reserved.add(Map.entry(calendar, entry.getValue()));
+      wait = Math.max(wait, calendarWait);
+    }
+    meterRegistry.timer("google.calendar.rate-limit.wait", "scope",
+            wait > projectWait ? "calendar" : "project")
+        .record(wait, TimeUnit.NANOSECONDS);
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RateLimitExceededException("Interrupted while waiting for Google API quota");
+      }
+    }
+  }
+
+  /**
+   * <p>[概要] 期限切れの対応付けと使用されていないバケットを破棄するメソッド。</p>
+   * <p>[詳細] 有効期限を過ぎたアクセストークンの対応付けと、満杯のまま google.calendar.rate-limit.idle-seconds
+   * 以上使用されていないカレンダーのバケットを破棄します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.calendar.rate-limit.cleanup-interval-ms:60000}")
+  public void cleanup() {
+    long nowMillis = System.currentTimeMillis();
+    bindings.values().removeIf(binding -> binding.expiresAt() < nowMillis);
+    long now = System.nanoTime();
+    long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+    calendarBuckets.values().removeIf(bucket -> bucket.idle(now, idleNanos));
+  }
+
+  private GoogleQuota quota(Long siteId) {
+    if (siteId == null) {
+      return GoogleQuota.UNSPECIFIED;
+    }
+    long now = System.currentTimeMillis();
+    CachedQuota cached = quotas.get(siteId);
+    if (cached != null && now - cached.loadedAt() < configTtlSeconds * 1000) {
+      return cached.quota();
+    }
+    CachedQuota loaded = new CachedQuota(
+        credentialsMapper.mapToGoogleQuota(appSiteInfoRepository.findById(siteId)), now);
+    return quotas.merge(siteId, loaded,
+        (current, candidate) -> current.loadedAt() >= candidate.loadedAt() ? current : candidate)
+        .quota();
+  }
+
+  private TokenBucket projectBucket(String clientId, GoogleQuota quota) {
+    double rate = valueOr(quota.projectPerSecond(), projectPerSecond);
+    double burst = valueOr(quota.projectBurst(), projectBurst);
+    TokenBucket bucket = projectBuckets.computeIfAbsent(clientId, id -> {
+      TokenBucket created = new TokenBucket(rate, burst);
+      Gauge.builder("google.calendar.rate-limit.saturation", created, TokenBucket::saturation)
+          .tag("scope", "project")
+          .tag("client", id)
+          .register(meterRegistry);
+      return created;
+    });
+    bucket.configure(rate, burst);
+    return bucket;
+  }
+
+  private TokenBucket calendarBucket(CalendarKey key, GoogleQuota quota) {
+    double rate = valueOr(quota.calendarPerSecond(), calendarPerSecond);
+    double burst = valueOr(quota.calendarBurst(), calendarBurst);
+    TokenBucket bucket = calendarBuckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst));
+    bucket.configure(rate, burst);
+    return bucket;
+  }
+
+  private RateLimitExceededException reject(String scope, String message) {
+    meterRegistry.counter("google.calendar.rate-limit.rejected", "scope", scope).increment();
+    log.warn(message);
+    return new RateLimitExceededException(message);
+  }
+
+  private static double valueOr(Double value, double defaultValue) {
+    return value != null && value > 0 ? value : defaultValue;
+  }
+}
@@ -14,6 +14,7 @@ import jp.co.fsz.clounect.core.model.AppSiteInfo;
 import jp.co.fsz.clounect.core.repository.AppDataRepository;
 import jp.co.fsz.clounect.core.repository.AppMasterRepository;
 import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
 import jp.co.fsz.clounect.core.user.repository.UserRepo;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
 import jp.co.fsz.clounect.googleCalendarPlugin.exception.CouldNotPerformActionException;
@@ -43,6 +44,8 @@ public class GoogleRecordService {
   private final UserRepo userRepo;
   private final AppDataRepository appDataRepository;
   private final SecurityUtil securityUtil;
+  private final SiteRoutingService siteRoutingService;
+  private final GoogleTokenCache googleTokenCache;
   private final Gson gson = new Gson();
 
   /**
@@ -58,13 +61,16 @@ public class GoogleRecordService {
    * @param userRepo
    * @param appDataRepository
    * @param securityUtil
+   * @param siteRoutingService          {@link SiteRoutingService} インスタンス
+   * @param googleTokenCache            {@link GoogleTokenCache} インスタンス
    * @since 1.0
    */
   public GoogleRecordService(
       AppSiteInfoRepository appSiteInfoRepo, JsonDataOptimizationService jsonDataOptimizationService,
       GoogleOAuthService googleOAuthService, AppMasterRepository appMasterRepository,
       UserRepo userRepo, AppDataRepository appDataRepository,
-      SecurityUtil securityUtil) {
+      SecurityUtil securityUtil, SiteRoutingService siteRoutingService,
+      GoogleTokenCache googleTokenCache) {
     this.appSiteInfoRepo = appSiteInfoRepo;
     this.jsonDataOptimizationService = jsonDataOptimizationService;
     this.googleOAuthService = googleOAuthService;
@@ -72,6 +78,8 @@ public class GoogleRecordService {
     this.userRepo = userRepo;
     this.appDataRepository = appDataRepository;
     this.securityUtil = securityUtil;
+    this.siteRoutingService = siteRoutingService;
+    this.googleTokenCache = googleTokenCache;
   }
 
   /**
@@ -143,6 +151,8 @@ public class GoogleRecordService {
         appSiteInfo.setConfig(gson.toJson(configMap));
       }
       appSiteInfoRepo.save(appSiteInfo);
+      siteRoutingService.evict(appSiteInfo.getId());
+      googleTokenCache.evict(appSiteInfo.getId());
     }
   }
 
@@ -215,6 +225,7 @@ public class GoogleRecordService {
       }
 
       appSiteInfoRepo.save(existingInfo);
+      siteRoutingService.evict(existingInfo.getId());
     } else {
       AppSiteInfo appSiteInfo = new AppSiteInfo();
       appSiteInfo.setWebhookUrl(appSiteInfo.getWebhookUrl());
@@ -0,0 +1,244 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>[概要] Google API 呼び出しの再試行ポリシークラス。</p>
+ * <p>[詳細] Google Calendar API と OAuth のエラーを再試行可能なもの（レート制限、サーバーエラー、タイムアウト、通信エラー）と
+ * 再試行しないものに分類し、再試行可能なエラーは指数バックオフとフルジッターで待機してから再試行します。</p>
+ * <p>[備考] レスポンスに Retry-After がある場合はその時間だけ待機します。
+ * イベントの作成は冪等ではないため、作成リクエストには AppData の ID から導出したイベントIDを設定し、
+ * 再送した結果の 409 は {@link GoogleCalendarService} で既存のイベントとして扱います。
+ * 再試行は google.api.retry.max-attempts 回まで、かつ最初の呼び出しから google.api.retry.deadline-ms 以内に限ります。
+ * 再試行回数と再試行の打ち切り回数はエラーの分類ごとに google.api.retries と google.api.retry.exhausted として記録します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class GoogleRetryPolicy {
+  private static final Set<String> RATE_LIMIT_REASONS = Set.of("rateLimitExceeded",
+      "userRateLimitExceeded");
+
+  private final MeterRegistry meterRegistry;
+
+  @Value("${google.api.retry.max-attempts:5}")
+  private int maxAttempts;
+
+  @Value("${google.api.retry.base-delay-ms:500}")
+  private long baseDelayMs;
+
+  @Value("${google.api.retry.max-delay-ms:16000}")
+  private long maxDelayMs;
+
+  @Value("${google.api.retry.deadline-ms:60000}")
+  private long deadlineMs;
+
+  /**
+   * <p>[概要] 再試行の対象となる呼び出し。</p>
+   *
+   * @param <T> 戻り値の型
+   */
+  @FunctionalInterface
+  public interface IoCall<T> {
+    T call() throws IOException;
+  }
+
+  /**
+   * <p>[概要] GoogleRetryPolicyのコンストラクタ。</p>
+   *
+   * @param meterRegistry メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleRetryPolicy(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * <p>[概要] 再試行可能なエラーを再試行しながら呼び出しを実行するメソッド。</p>
+   *
+   * @param operation メトリクスとログに記録する操作名
+   * @param call      実行する呼び出し
+   * @param <T>       戻り値の型
+   * @return 呼び出しの戻り値
+   * @throws IOException 再試行しないエラーが発生した場合、または再試行の上限に達した場合
+   * @since 1.0
+   */
+  public <T> T execute(String operation, IoCall<T> call) throws IOException {
+    Attempt attempt = begin(operation);
+    while (true) {
+      try {
+        return call.call();
+      } catch (IOException e) {
+        String errorClass = classify(e);
+        if (errorClass == null || !attempt.backoff(errorClass, retryAfterMillis(e))) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>[概要] 再試行の状態を開始するメソッド。</p>
+   * <p>[詳細] バッチリクエストの失敗した項目のみを再送する場合など、呼び出し元で再試行を制御する場合に使用します。</p>
+   *
+   * @param operation メトリクスとログに記録する操作名
+   * @return 再試行の状態
+   * @since 1.0
+   */
+  public Attempt begin(String operation) {
+    return new Attempt(operation, System.currentTimeMillis() + deadlineMs);
+  }
+
+  /**
+   * <p>[概要] 例外を分類するメソッド。</p>
+   *
+   * @param e 発生した例外
+   * @return 再試行可能な場合はエラーの分類、再試行しない場合は null
+   * @since 1.0
+   */
+  public String classify(IOException e) {
+    if (e instanceof GoogleJsonResponseException json && json.getDetails() != null) {
+      return classify(json.getDetails());
+    }
+    if (e instanceof HttpResponseException http) {
+      return classify(http.getStatusCode(), null);
+    }
+    if (e instanceof SocketTimeoutException) {
+      return "timeout";
+    }
+    if (e instanceof InterruptedIOException) {
+      return null;
+    }
+    return "network";
+  }
+
+  /**
+   * <p>[概要] Google API のエラーを分類するメソッド。</p>
+   *
+   * @param error Google API のエラー
+   * @return 再試行可能な場合はエラーの分類、再試行しない場合は null
+   * @since 1.0
+   */
+  public String classify(GoogleJsonError error) {
+    String reason = error.getErrors() == null || error.getErrors().isEmpty() ? null
+        : error.getErrors().get(0).getReason();
+    return classify(error.getCode(), reason);
+  }
+
+  private String classify(int statusCode, String reason) {
+    if (statusCode == 429 || statusCode == 403 && RATE_LIMIT_REASONS.contains(reason)) {
+      return "rate_limit";
+    }
+    if (statusCode == 408) {
+      return "timeout";
+    }
+    if (statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504) {
+      return "server";
+    }
+    return null;
+  }
+
+  /**
+   * <p>[概要] 例外のレスポンスから Retry-After をミリ秒で取得するメソッド。</p>
+   *
+   * @param e 発生した例外
+   * @return 待機時間（ミリ秒）。Retry-After がない場合は -1
+   * @since 1.0
+   */
+  public long retryAfterMillis(IOException e) {
+    if (e instanceof HttpResponseException http && http.getHeaders() != null) {
+      return retryAfterMillis(http.getHeaders().getRetryAfter());
+    }
+    return -1;
+  }
+
+  /**
+   * <p>[概要] Retry-After ヘッダーの値をミリ秒に変換するメソッド。</p>
+   * <p>[詳細] 秒数と HTTP 日付の両方の形式に対応します。</p>
+   *
+   * @param retryAfter Retry-After ヘッダーの値
+   * @return 待機時間（ミリ秒）。値がないか解析できない場合は -1
+   * @since 1.0
+   */
+  public long retryAfterMillis(String retryAfter) {
+    if (retryAfter == null || retryAfter.isBlank()) {
+      return -1;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+    } catch (NumberFormatException e) {
+      try {
+        return Math.max(0, ZonedDateTime.parse(retryAfter.trim(),
+            DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+            - System.currentTimeMillis());
+      } catch (DateTimeParseException ignored) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * <p>[概要] 1回の呼び出しに対する再試行の状態。</p>
+   * <p>[詳細] 再試行の回数と期限を保持し、次の再試行までの待機を行います。</p>
+   */
+  public final class Attempt {
+    private final String operation;
+    private final long deadline;
+    private int retries;
+
+    private Attempt(String operation, long deadline) {
+      this.operation = operation;
+      this.deadline = deadline;
+    }
+
+    /**
+     * <p>[概要] 次の再試行まで待機するメソッド。</p>
+     * <p>[詳細] Retry-After がある場合はその時間、ない場合は指数バックオフの上限までのランダムな時間だけ待機します。</p>
+     *
+     * @param errorClass   エラーの分類
+     * @param retryAfterMs Retry-After の待機時間（ミリ秒）。ない場合は負の値
+     * @return 再試行してよい場合は true、回数または期限の上限に達した場合は false
+     * @throws InterruptedIOException 待機中に割り込まれた場合
+     * @since 1.0
+     */
+    public boolean backoff(String errorClass, long retryAfterMs) throws InterruptedIOException {
+      long delay = retryAfterMs >= 0 ? retryAfterMs
+          : ThreadLocalRandom.current().nextLong(
+              Math.min(maxDelayMs, baseDelayMs << Math.min(retries, 20)) + 1);
+      if (retries + 1 >= maxAttempts || System.currentTimeMillis() + delay > deadline) {
+        meterRegistry.counter("google.api.retry.exhausted", "class", errorClass).increment();
+        log.warn("Giving up {} after {} retries ({})", operation, retries, errorClass);
+        return false;
+      }
+      retries++;
+      meterRegistry.counter("google.api.retries", "class", errorClass).increment();
+      log.info("Retrying {} in {} ms after {} (retry {})", operation, delay, errorClass, retries);
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while backing off " + operation);
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.GoogleTokenKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>[概要] Googleのアクセストークンをキャッシュするクラス。</p>
+ * <p>[詳細] AppSiteInfoとクライアントIDごとにアクセストークンを保持し、有効期限の
+ * google.oauth.token-cache.expiry-margin-seconds 秒前まで再利用します。
+ * Webhookやメールアドレスの検証のたびにGoogleのトークンエンドポイントを呼び出さないようにします。</p>
+ * <p>[備考] キャッシュしたトークンは取得に使用したリフレッシュトークンとともに保持し、
+ * config のリフレッシュトークンが変更された場合は破棄して再取得します。
+ * 同じ認証情報に対する同時のトークン取得は1回のリクエストにまとめ、実行中の取得結果をすべての呼び出し元で共有します。
+ * 取得に失敗した場合は待機していたすべての呼び出し元に同じ例外を返し、
+ * google.oauth.token-cache.failure-backoff-ms の間は再取得せずにその例外を返します。
+ * 最近使用されたトークンは {@link GoogleTokenRefresher} が有効期限の前に再取得します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class GoogleTokenCache {
+  private final GoogleOAuthService googleOAuthService;
+  private final GoogleRateLimiter googleRateLimiter;
+  private final ConcurrentHashMap<GoogleTokenKey, CachedToken> tokens = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<GoogleTokenKey, Refresh> refreshes = new ConcurrentHashMap<>();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter coalescedCounter;
+  private final ConcurrentHashMap<GoogleTokenKey, Long> lastUsed = new ConcurrentHashMap<>();
+
+  @Value("${google.oauth.token-cache.expiry-margin-seconds:300}")
+  private long expiryMarginSeconds;
+
+  @Value("${google.oauth.token-cache.failure-backoff-ms:1000}")
+  private long failureBackoffMs;
+
+  @Value("${google.oauth.token-refresher.refresh-ahead-seconds:600}")
+  private long refreshAheadSeconds;
+
+  @Value("${google.oauth.token-refresher.jitter-seconds:120}")
+  private long jitterSeconds;
+
+  /**
+   * キャッシュしたトークン。refreshAt は事前に再取得を開始する時刻で、サイト間で分散するよう取得時にジッターを加えて決定します。
+   */
+  private record CachedToken(OAuthToken token, String clientSecret, String refreshToken,
+                             long expiresAt, long refreshAt) {
+  }
+
+  /**
+   * 実行中または直前に失敗したトークン取得。failedAt は失敗した時刻で、成功または実行中の場合は 0 です。
+   */
+  private record Refresh(String refreshToken, CompletableFuture<OAuthToken> future,
+                         long failedAt) {
+  }
+
+  /**
+   * <p>[概要] GoogleTokenCacheのコンストラクタ。</p>
+   *
+   * @param googleOAuthService Google OAuthサービス
+   * @param googleRateLimiter  Google Calendar API 呼び出しのレート制限クラス
+   * @param meterRegistry      メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleTokenCache(GoogleOAuthService googleOAuthService,
+      GoogleRateLimiter googleRateLimiter, MeterRegistry meterRegistry) {
+    this.googleOAuthService = googleOAuthService;
+    this.googleRateLimiter = googleRateLimiter;
+    this.hitCounter = meterRegistry.counter("google.token.cache", "result", "hit");
+    this.missCounter = meterRegistry.counter("google.token.cache", "result", "miss");
+    this.coalescedCounter = meterRegistry.counter("google.token.cache", "result", "coalesced");
+    Gauge.builder("google.token.cache.size", tokens, ConcurrentHashMap::size)
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] アクセストークンを取得するメソッド。</p>
+   * <p>[詳細] 有効なトークンがキャッシュにあればそれを返し、ない場合はリフレッシュトークンから取得してキャッシュします。</p>
+   *
+   * @param siteId       AppSiteInfoのID
+   * @param clientId     クライアントID
+   * @param clientSecret クライアントシークレット
+   * @param refreshToken リフレッシュトークン
+   * @return アクセストークン
+   * @throws jp.co.fsz.clounect.googleCalendarPlugin.exception.TokenGenerationException トークンの取得に失敗した場合
+   * @since 1.0
+   */
+  public OAuthToken getAccessToken(Long siteId, String clientId, String clientSecret,
+      String refreshToken) {
+    GoogleTokenKey key = new GoogleTokenKey(siteId, clientId);
+    lastUsed.put(key, System.currentTimeMillis());
+    OAuthToken cached = lookup(key, refreshToken);
+    if (cached != null) {
+      hitCounter.increment();
+      return cached;
+    }
+    return load(key, clientSecret, refreshToken, false);
+  }
+
+  /**
+   * <p>[概要] 事前の再取得が必要なトークンを返すメソッド。</p>
+   * <p>[詳細] 指定した時刻以降に使用され、再取得の開始時刻を過ぎたトークンのキーを返します。</p>
+   *
+   * @param activeSince この時刻以降に使用されたトークンを対象とする（エポックミリ秒）
+   * @return 再取得が必要なトークンのキー
+   * @since 1.0
+   */
+  public List<GoogleTokenKey> dueForRefresh(long activeSince) {
+    long now = System.currentTimeMillis();
+    return tokens.entrySet().stream()
+        .filter(entry -> now >= entry.getValue().refreshAt())
+        .filter(entry -> lastUsed.getOrDefault(entry.getKey(), 0L) >= activeSince)
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+
+  /**
+   * <p>[概要] トークンを有効期限の前に再取得するメソッド。</p>
+   * <p>[詳細] キャッシュしているトークンの認証情報を使用してトークンを再取得し、再取得時点での有効期限までの残り時間を返します。</p>
+   *
+   * @param key トークンのキー
+   * @return 再取得前のトークンの有効期限までの残り時間（ミリ秒）。キャッシュにない場合は -1
+   * @throws jp.co.fsz.clounect.googleCalendarPlugin.exception.TokenGenerationException トークンの取得に失敗した場合
+   * @since 1.0
+   */
+  public long refreshAhead(GoogleTokenKey key) {
+    CachedToken cached = tokens.get(key);
+    if (cached == null) {
+      return -1;
+    }
+    long remaining = cached.expiresAt() - System.currentTimeMillis();
+    load(key, cached.clientSecret(), cached.refreshToken(), true);
+    return remaining;
+  }
+
+  /**
+   * <p>[概要] トークンを取得してキャッシュするメソッド。</p>
+   * <p>[詳細] 同じ認証情報に対する取得が実行中の場合はその結果を待機します。
+   * force が true の場合は有効なトークンがキャッシュにあっても再取得します。</p>
+   */
+  private OAuthToken load(GoogleTokenKey key, String clientSecret, String refreshToken,
+      boolean force) {
+    CompletableFuture<OAuthToken> future = new CompletableFuture<>();
+    Refresh mine = new Refresh(refreshToken, future, 0);
+    Refresh current = refreshes.compute(key, (k, existing) -> {
+      if (existing == null || !Objects.equals(existing.refreshToken(), refreshToken)) {
+        return mine;
+      }
+      if (existing.failedAt() > 0
+          && System.currentTimeMillis() - existing.failedAt() >= failureBackoffMs) {
+        return mine;
+      }
+      return existing;
+    });
+    if (current != mine) {
+      coalescedCounter.increment();
+      return await(current.future());
+    }
+
+    try {
+      OAuthToken token = force ? null : lookup(key, refreshToken);
+      if (token == null) {
+        missCounter.increment();
+        token = googleOAuthService.getRefreshAccessToken(key.clientId(), clientSecret,
+            refreshToken);
+        long expiresAt = System.currentTimeMillis() + token.getExpiration() * 1000L;
+        long jitter = jitterSeconds > 0
+            ? ThreadLocalRandom.current().nextLong(jitterSeconds * 1000) : 0;
+        tokens.put(key, new CachedToken(token, clientSecret, refreshToken, expiresAt,
+            expiresAt - refreshAheadSeconds * 1000 - jitter));
+        googleRateLimiter.bind(token.getAccessToken(), key, expiresAt);
+      }
+      future.complete(token);
+      refreshes.remove(key, mine);
+      return token;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      refreshes.replace(key, mine,
+          new Refresh(refreshToken, future, System.currentTimeMillis()));
+      log.warn("Access token refresh failed for site {}: {}", key.siteId(), e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * <p>[概要] キャッシュから有効なアクセストークンを取得するメソッド。</p>
+   * <p>[詳細] リフレッシュトークンが変更されている場合はキャッシュを破棄し、null を返します。</p>
+   */
+  private OAuthToken lookup(GoogleTokenKey key, String refreshToken) {
+    CachedToken cached = tokens.get(key);
+    if (cached == null) {
+      return null;
+    }
+    if (!Objects.equals(cached.refreshToken(), refreshToken)) {
+      tokens.remove(key, cached);
+      log.info("Refresh token changed for site {}; evicted cached access token", key.siteId());
+      return null;
+    }
+    if (System.currentTimeMillis() < cached.expiresAt() - expiryMarginSeconds * 1000) {
+      return cached.token();
+    }
+    return null;
+  }
+
+  private OAuthToken await(CompletableFuture<OAuthToken> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * <p>[概要] サイトのアクセストークンをキャッシュから破棄するメソッド。</p>
+   * <p>[詳細] サイトの認証情報を更新した場合に呼び出します。</p>
+   *
+   * @param siteId AppSiteInfoのID
+   * @since 1.0
+   */
+  public void evict(Long siteId) {
+    if (siteId == null) {
+      return;
+    }
+    refreshes.keySet().removeIf(key -> siteId.equals(key.siteId()));
+    lastUsed.keySet().removeIf(key -> siteId.equals(key.siteId()));
+    if (tokens.keySet().removeIf(key -> siteId.equals(key.siteId()))) {
+      log.debug("Evicted access token cache for site {}", siteId);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.GoogleTokenKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>[概要] Googleのアクセストークンを有効期限の前に再取得するクラス。</p>
+ * <p>[詳細] google.oauth.token-refresher.active-window-seconds 以内に使用されたサイトのトークンを
+ * {@link GoogleTokenCache} のキャッシュが無効になる前に再取得し、トークンの期限切れ直後のWebhookが再取得を待たないようにします。</p>
+ * <p>[備考] 再取得の開始時刻はトークンの取得時にジッターを加えて決定するため、同時期に取得したサイトのトークンでも
+ * 再取得のリクエストは分散されます。再取得の成否と、再取得時点での有効期限までの残り時間をメトリクスとして記録します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "google.oauth.token-refresher.enabled", havingValue = "true",
+    matchIfMissing = true)
+@Slf4j
+public class GoogleTokenRefresher {
+  private final GoogleTokenCache googleTokenCache;
+  private final Counter successCounter;
+  private final Counter failureCounter;
+  private final DistributionSummary leadSummary;
+
+  @Value("${google.oauth.token-refresher.active-window-seconds:3600}")
+  private long activeWindowSeconds;
+
+  /**
+   * <p>[概要] GoogleTokenRefresherのコンストラクタ。</p>
+   *
+   * @param googleTokenCache Googleのアクセストークンのキャッシュ
+   * @param meterRegistry    メトリクスレジストリ
+   * @since 1.0
+   */
+  public GoogleTokenRefresher(GoogleTokenCache googleTokenCache, MeterRegistry meterRegistry) {
+    this.googleTokenCache = googleTokenCache;
+    this.successCounter = meterRegistry.counter("google.token.refresh.proactive", "result",
+        "success");
+    this.failureCounter = meterRegistry.counter("google.token.refresh.proactive", "result",
+        "failure");
+    this.leadSummary = DistributionSummary.builder("google.token.refresh.lead")
+        .description("Seconds remaining before expiry when a token was refreshed proactively")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] 再取得の開始時刻を過ぎたトークンを再取得するメソッド。</p>
+   * <p>[詳細] 定期的に実行され、最近使用されたサイトのトークンのうち再取得が必要なものを順に再取得します。</p>
+   * <p>[備考] 再取得に失敗した場合もキャッシュしているトークンは有効期限まで使用されます。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.oauth.token-refresher.interval-ms:30000}")
+  public void refreshExpiring() {
+    long activeSince = System.currentTimeMillis() - activeWindowSeconds * 1000;
+    for (GoogleTokenKey key : googleTokenCache.dueForRefresh(activeSince)) {
+      try {
+        long remainingMs = googleTokenCache.refreshAhead(key);
+        if (remainingMs >= 0) {
+          successCounter.increment();
+          leadSummary.record(remainingMs / 1000.0);
+          log.debug("Refreshed access token for site {} {}s before expiry", key.siteId(),
+              remainingMs / 1000);
+        }
+      } catch (RuntimeException e) {
+        failureCounter.increment();
+        log.warn("Proactive token refresh failed for site {}: {}", key.siteId(), e.getMessage());
+      }
+    }
+  }
+}
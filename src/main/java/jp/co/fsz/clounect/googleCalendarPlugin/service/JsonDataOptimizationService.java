@@ -1,6 +1,5 @@
 package jp.co.fsz.clounect.googleCalendarPlugin.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.DateTime;
@@ -63,12 +62,8 @@ public class JsonDataOptimizationService {
     Integer recordId = null;
 
       try {
-        String bodyJson = objectMapper.writeValueAsString(jsonData);
-        Map<String, Object> body = objectMapper.readValue(bodyJson,
-            new TypeReference<>() {
-            });
+        Map<String, Object> body = jsonData;
 
-        
         type = (String) body.get("type");
         recordId =  (Integer) body.get("recordId");
         Map<String, Object> record = castMap(body.get(recordData));
@@ -0,0 +1,377 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.TrustManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>[概要] HTTP/2 に対応した接続プールを持つ Google API 用の HTTP トランスポート。</p>
+ * <p>[詳細] JDK の {@link HttpClient} を使用し、ALPN で HTTP/2 をネゴシエートして1本の接続で複数のリクエストを多重化します。
+ * HTTP/2 に対応しない宛先には HTTP/1.1 の keep-alive 接続プールで送信します。</p>
+ * <p>[備考] 宛先（ホストとポート）ごとの同時リクエスト数を maxPerRoute に制限し、空きがない場合は総所要時間の上限まで待機します。
+ * 接続タイムアウト、リクエストごとの読み取りタイムアウト（レスポンスヘッダーまで）、およびボディの受信完了までの総所要時間の上限を設定できます。
+ * 宛先ごとの実行中と待機中のリクエスト数、使用率を google.http.pool.* として、
+ * 新しく確立した接続数を google.http.connections.created、リクエスト数を HTTP バージョンごとに google.http.requests として記録し、
+ * 接続の再利用率はリクエスト数と接続数の比から確認できます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+public class PooledHttp2Transport extends HttpTransport {
+  private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    RESTRICTED_HEADERS.addAll(List.of("connection", "content-length", "expect", "host",
+        "upgrade"));
+  }
+
+  private final HttpClient client;
+  private final int maxPerRoute;
+  private final Duration readTimeout;
+  private final long totalTimeoutMs;
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+
+  /**
+   * 宛先ごとの同時リクエスト数の制限。
+   */
+  private static final class Route {
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private Route(int maxPerRoute) {
+      this.permits = new Semaphore(maxPerRoute, true);
+    }
+  }
+
+  /**
+   * <p>[概要] PooledHttp2Transportのコンストラクタ。</p>
+   * <p>[詳細] 接続ごとに呼び出される SSLEngine の生成を数えるため、SSLContext をラップして HttpClient を生成します。</p>
+   *
+   * @param sslContext       Google API の証明書を信頼する SSLContext
+   * @param maxPerRoute      宛先ごとの同時リクエスト数の上限
+   * @param connectTimeoutMs 接続タイムアウト（ミリ秒）
+   * @param readTimeoutMs    リクエストごとの読み取りタイムアウトの既定値（ミリ秒）
+   * @param totalTimeoutMs   ボディの受信完了までの総所要時間の上限（ミリ秒）
+   * @param meterRegistry    メトリクスレジストリ
+   * @since 1.0
+   */
+  public PooledHttp2Transport(SSLContext sslContext, int maxPerRoute, int connectTimeoutMs,
+      int readTimeoutMs, long totalTimeoutMs, MeterRegistry meterRegistry) {
+    this.maxPerRoute = Math.max(1, maxPerRoute);
+    this.readTimeout = Duration.ofMillis(readTimeoutMs);
+    this.totalTimeoutMs = totalTimeoutMs;
+    this.meterRegistry = meterRegistry;
+    Counter created = meterRegistry.counter("google.http.connections.created");
+    this.client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+        .sslContext(new CountingSslContext(sslContext, created))
+        .build();
+  }
+
+  @Override
+  public boolean supportsMethod(String method) {
+    return true;
+  }
+
+  @Override
+  protected LowLevelHttpRequest buildRequest(String method, String url) {
+    return new Request(method, URI.create(url));
+  }
+
+  private Route route(URI uri) {
+    String key = uri.getHost() + ":" + (uri.getPort() > 0 ? uri.getPort()
+        : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80);
+    return routes.computeIfAbsent(key, id -> {
+      Route route = new Route(maxPerRoute);
+      Gauge.builder("google.http.pool.inflight", route.inFlight, AtomicInteger::get)
+          .tag("route", id).register(meterRegistry);
+      Gauge.builder("google.http.pool.pending", route.pending, AtomicInteger::get)
+          .tag("route", id).register(meterRegistry);
+      Gauge.builder("google.http.pool.saturation", route.inFlight,
+              inFlight -> (double) inFlight.get() / maxPerRoute)
+          .tag("route", id).register(meterRegistry);
+      return route;
+    });
+  }
+
+  /**
+   * <p>[概要] JDK の HttpClient で送信するリクエスト。</p>
+   */
+  private final class Request extends LowLevelHttpRequest {
+    private final String method;
+    private final URI uri;
+    private final List<String[]> headers = new ArrayList<>();
+    private Duration timeout = readTimeout;
+
+    private Request(String method, URI uri) {
+      this.method = method;
+      this.uri = uri;
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      if (!RESTRICTED_HEADERS.contains(name)) {
+        headers.add(new String[] {name, value});
+      }
+    }
+
+    @Override
+    public void setTimeout(int connectTimeout, int readTimeout) {
+      if (readTimeout > 0) {
+        this.timeout = Duration.ofMillis(readTimeout);
+      }
+    }
+
+    @Override
+    public LowLevelHttpResponse execute() throws IOException {
+      HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout);
+      headers.forEach(header -> builder.header(header[0], header[1]));
+      if (getContentType() != null) {
+        builder.setHeader("Content-Type", getContentType());
+      }
+      if (getContentEncoding() != null) {
+        builder.setHeader("Content-Encoding", getContentEncoding());
+      }
+      HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+      if (getStreamingContent() != null) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        getStreamingContent().writeTo(out);
+        body = HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+      }
+      builder.method(method, body);
+
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(totalTimeoutMs);
+      Route route = route(uri);
+      route.pending.incrementAndGet();
+      try {
+        if (!route.permits.tryAcquire(totalTimeoutMs, TimeUnit.MILLISECONDS)) {
+          meterRegistry.counter("google.http.pool.exhausted", "route", uri.getHost())
+              .increment();
+          throw new ConnectException("Connection pool exhausted for " + uri.getHost());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a connection");
+      } finally {
+        route.pending.decrementAndGet();
+      }
+
+      route.inFlight.incrementAndGet();
+      CompletableFuture<HttpResponse<byte[]>> future = client.sendAsync(builder.build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      try {
+        HttpResponse<byte[]> response = future.get(
+            Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        meterRegistry.counter("google.http.requests", "version", response.version().name())
+            .increment();
+        return new Response(response);
+      } catch (TimeoutException e) {
+        future.cancel(true);
+        throw new SocketTimeoutException("Total deadline of " + totalTimeoutMs
+            + " ms exceeded for " + uri.getHost());
+      } catch (InterruptedException e) {
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for " + uri.getHost());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof HttpConnectTimeoutException) {
+          throw new SocketTimeoutException("Connect timed out: " + uri.getHost());
+        }
+        if (cause instanceof HttpTimeoutException) {
+          throw new SocketTimeoutException("Read timed out: " + uri.getHost());
+        }
+        if (cause instanceof IOException io) {
+          throw io;
+        }
+        throw new IOException(cause);
+      } finally {
+        route.inFlight.decrementAndGet();
+        route.permits.release();
+      }
+    }
+  }
+
+  /**
+   * <p>[概要] JDK の HttpClient で受信したレスポンス。</p>
+   */
+  private static final class Response extends LowLevelHttpResponse {
+    private final HttpResponse<byte[]> response;
+    private final List<String[]> headers = new ArrayList<>();
+
+    private Response(HttpResponse<byte[]> response) {
+      this.response = response;
+      for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+        if (entry.getKey().startsWith(":")) {
+          continue;
+        }
+        entry.getValue().forEach(value -> headers.add(new String[] {entry.getKey(), value}));
+      }
+    }
+
+    @Override
+    public InputStream getContent() {
+      byte[] body = response.body();
+      return new ByteArrayInputStream(body != null ? body : new byte[0]);
+    }
+
+    @Override
+    public String getContentEncoding() {
+      return response.headers().firstValue("Content-Encoding").orElse(null);
+    }
+
+    @Override
+    public long getContentLength() {
+      return response.body() != null ? response.body().length : 0;
+    }
+
+    @Override
+    public String getContentType() {
+      return response.headers().firstValue("Content-Type").orElse(null);
+    }
+
+    @Override
+    public String getStatusLine() {
+      return (response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1") + " "
+          + response.statusCode();
+    }
+
+    @Override
+    public int getStatusCode() {
+      return response.statusCode();
+    }
+
+    @Override
+    public String getReasonPhrase() {
+      return null;
+    }
+
+    @Override
+    public int getHeaderCount() {
+      return headers.size();
+    }
+
+    @Override
+    public String getHeaderName(int index) {
+      return headers.get(index)[0];
+    }
+
+    @Override
+    public String getHeaderValue(int index) {
+      return headers.get(index)[1];
+    }
+  }
+
+  /**
+   * <p>[概要] SSLEngine の生成を数える SSLContext。</p>
+   * <p>[詳細] HttpClient は新しい TLS 接続ごとに SSLEngine を生成するため、その回数を確立した接続数として記録します。</p>
+   */
+  private static final class CountingSslContext extends SSLContext {
+    private CountingSslContext(SSLContext delegate, Counter created) {
+      super(new CountingSpi(delegate, created), delegate.getProvider(), delegate.getProtocol());
+    }
+  }
+
+  private static final class CountingSpi extends SSLContextSpi {
+    private final SSLContext delegate;
+    private final Counter created;
+
+    private CountingSpi(SSLContext delegate, Counter created) {
+      this.delegate = delegate;
+      this.created = created;
+    }
+
+    @Override
+    protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+      throw new UnsupportedOperationException("SSLContext is already initialized");
+    }
+
+    @Override
+    protected SSLSocketFactory engineGetSocketFactory() {
+      return delegate.getSocketFactory();
+    }
+
+    @Override
+    protected SSLServerSocketFactory engineGetServerSocketFactory() {
+      return delegate.getServerSocketFactory();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine() {
+      created.increment();
+      return delegate.createSSLEngine();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine(String host, int port) {
+      created.increment();
+      return delegate.createSSLEngine(host, port);
+    }
+
+    @Override
+    protected SSLSessionContext engineGetServerSessionContext() {
+      return delegate.getServerSessionContext();
+    }
+
+    @Override
+    protected SSLSessionContext engineGetClientSessionContext() {
+      return delegate.getClientSessionContext();
+    }
+
+    @Override
+    protected SSLParameters engineGetDefaultSSLParameters() {
+      return delegate.getDefaultSSLParameters();
+    }
+
+    @Override
+    protected SSLParameters engineGetSupportedSSLParameters() {
+      return delegate.getSupportedSSLParameters();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.WebhookQueueStatus;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>[概要] テナント単位の受付制御クラス。</p>
+ * <p>[詳細] サイトごとに受付キューの未処理件数と同時処理数を制限し、
+ * 1つのテナントからの大量のWebhookが他のテナントの処理を妨げないようにします。</p>
+ * <p>[備考] 未処理件数は受付キューテーブルから数えるため、複数インスタンスで共有されます。
+ * 同時処理数はインスタンスごとに数えます。上限は google.webhook.tenant.max-queued および
+ * google.webhook.tenant.max-concurrency で設定します。
+ * 状態とメトリクスは解決済みのサイトに対してのみ作成し、サイトIDをタグとします。
+ * 処理中のWebhookがなく google.webhook.tenant.idle-seconds の間使用されなかったサイトの状態は破棄します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class TenantAdmissionControl {
+  private static final List<WebhookQueueStatus> OUTSTANDING =
+      List.of(WebhookQueueStatus.PENDING, WebhookQueueStatus.PROCESSING);
+
+  private final AppWebhookQueueRepository appWebhookQueueRepository;
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentHashMap<Long, TenantState> tenants = new ConcurrentHashMap<>();
+
+  @Value("${google.webhook.tenant.max-queued:1000}")
+  private long maxQueued;
+
+  @Value("${google.webhook.tenant.max-concurrency:16}")
+  private int maxConcurrency;
+
+  @Value("${google.webhook.tenant.max-retry-after-seconds:300}")
+  private long maxRetryAfterSeconds;
+
+  @Value("${google.webhook.tenant.idle-seconds:600}")
+  private long idleSeconds;
+
+  private static final class TenantState {
+    private final String webhookUrl;
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong avgProcessingMs = new AtomicLong(1000);
+    private final AtomicLong lastUsed = new AtomicLong(System.currentTimeMillis());
+    private Counter rejectedCounter;
+    private List<Meter> meters;
+
+    private TenantState(String webhookUrl) {
+      this.webhookUrl = webhookUrl;
+    }
+  }
+
+  /**
+   * <p>[概要] TenantAdmissionControlのコンストラクタ。</p>
+   *
+   * @param appWebhookQueueRepository 受付キューのリポジトリ
+   * @param meterRegistry             メトリクスレジストリ
+   * @since 1.0
+   */
+  public TenantAdmissionControl(AppWebhookQueueRepository appWebhookQueueRepository,
+      MeterRegistry meterRegistry) {
+    this.appWebhookQueueRepository = appWebhookQueueRepository;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * <p>[概要] Webhookの受付可否を判定するメソッド。</p>
+   * <p>[詳細] テナントの未処理件数に受け付ける件数を加えた値が上限を超える場合は受付を拒否します。</p>
+   *
+   * @param route Webhookの送信元サイトのルーティング情報
+   * @param count 受け付ける件数
+   * @throws TenantThrottledException テナントの未処理件数が上限に達している場合
+   * @since 1.0
+   */
+  public void admit(SiteRoute route, int count) {
+    TenantState state = touch(route);
+    long depth = appWebhookQueueRepository.countByWebhookUrlAndStatusIn(route.webhookUrl(),
+        OUTSTANDING);
+    state.queueDepth.set(depth);
+    if (depth + count > maxQueued) {
+      state.rejectedCounter.increment();
+      long retryAfter = retryAfterSeconds(state, depth + count - maxQueued);
+      log.warn("Webhook rejected for site {}: {} outstanding, retry after {}s", route.siteId(),
+          depth, retryAfter);
+      throw new TenantThrottledException(
+          "Too many outstanding webhooks for site " + route.siteId(), retryAfter);
+    }
+  }
+
+  /**
+   * <p>[概要] テナントの同時処理枠を取得するメソッド。</p>
+   * <p>[詳細] 取得と破棄の判定はサイトごとに排他的に行うため、処理中のサイトの状態が破棄されることはありません。</p>
+   *
+   * @param route Webhookの送信元サイトのルーティング情報
+   * @return 取得できた場合は true、上限に達している場合は false
+   * @since 1.0
+   */
+  public boolean tryAcquire(SiteRoute route) {
+    boolean[] acquired = new boolean[1];
+    tenants.compute(route.siteId(), (siteId, state) -> {
+      TenantState current = state != null ? state : create(route);
+      current.lastUsed.set(System.currentTimeMillis());
+      if (current.inFlight.get() < maxConcurrency) {
+        current.inFlight.incrementAndGet();
+        acquired[0] = true;
+      }
+      return current;
+    });
+    return acquired[0];
+  }
+
+  /**
+   * <p>[概要] テナントの同時処理枠を待機して取得するメソッド。</p>
+   * <p>[詳細] 同時処理数が上限に達している場合は、枠が空くか待機時間の上限に達するまで短い間隔で取得を繰り返します。</p>
+   *
+   * @param route     Webhookの送信元サイトのルーティング情報
+   * @param timeoutMs 待機時間の上限（ミリ秒）
+   * @return 取得できた場合は true、待機時間内に取得できなかった場合は false
+   * @throws InterruptedException 待機中に割り込まれた場合
+   * @since 1.0
+   */
+  public boolean acquire(SiteRoute route, long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!tryAcquire(route)) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      Thread.sleep(Math.min(50, remaining));
+    }
+    return true;
+  }
+
+  /**
+   * <p>[概要] テナントの同時処理枠を解放するメソッド。</p>
+   * <p>[詳細] 処理時間を記録し、Retry-After の算出に使用する平均処理時間を更新します。</p>
+   *
+   * @param route        Webhookの送信元サイトのルーティング情報
+   * @param processingMs 処理時間（ミリ秒）、処理しなかった場合は負の値
+   * @since 1.0
+   */
+  public void release(SiteRoute route, long processingMs) {
+    tenants.computeIfPresent(route.siteId(), (siteId, state) -> {
+      state.inFlight.decrementAndGet();
+      state.lastUsed.set(System.currentTimeMillis());
+      if (processingMs >= 0) {
+        state.avgProcessingMs.accumulateAndGet(processingMs,
+            (avg, sample) -> (avg * 7 + sample) / 8);
+      }
+      return state;
+    });
+  }
+
+  /**
+   * <p>[概要] 同時処理数が上限に達しているテナントを返すメソッド。</p>
+   * <p>[詳細] 受付キューからの取り出し時に除外するため、上限に達しているサイトのWebhookのUUIDを返します。</p>
+   *
+   * @return 同時処理数が上限に達しているサイトのWebhookのUUID
+   * @since 1.0
+   */
+  public Set<String> saturatedWebhookUrls() {
+    return tenants.values().stream()
+        .filter(state -> state.inFlight.get() >= maxConcurrency)
+        .map(state -> state.webhookUrl)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * <p>[概要] 使用されていないテナントの状態を破棄するメソッド。</p>
+   * <p>[詳細] 処理中のWebhookがなく、一定時間使用されなかったサイトの状態とメトリクスを削除します。</p>
+   * <p>[備考] 実行間隔は google.webhook.tenant.cleanup-interval-ms で設定します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.webhook.tenant.cleanup-interval-ms:60000}")
+  public void evictIdle() {
+    long idleBefore = System.currentTimeMillis() - idleSeconds * 1000;
+    for (Long siteId : tenants.keySet()) {
+      tenants.computeIfPresent(siteId, (key, state) -> {
+        if (state.inFlight.get() > 0 || state.lastUsed.get() > idleBefore) {
+          return state;
+        }
+        state.meters.forEach(meterRegistry::remove);
+        return null;
+      });
+    }
+  }
+
+  private long retryAfterSeconds(TenantState state, long excess) {
+    long drainMs = excess * state.avgProcessingMs.get() / Math.max(1, maxConcurrency);
+    return Math.max(1, Math.min(maxRetryAfterSeconds, (drainMs + 999) / 1000));
+  }
+
+  private TenantState touch(SiteRoute route) {
+    return tenants.compute(route.siteId(), (siteId, state) -> {
+      TenantState current = state != null ? state : create(route);
+      current.lastUsed.set(System.currentTimeMillis());
+      return current;
+    });
+  }
+
+  private TenantState create(SiteRoute route) {
+    String site = String.valueOf(route.siteId());
+    TenantState state = new TenantState(route.webhookUrl());
+    state.rejectedCounter = meterRegistry.counter("webhook.tenant.rejected", "site", site);
+    state.meters = List.of(state.rejectedCounter,
+        Gauge.builder("webhook.tenant.queue.depth", state.queueDepth, AtomicLong::get)
+            .tag("site", site)
+            .register(meterRegistry),
+        Gauge.builder("webhook.tenant.inflight", state.inFlight, AtomicInteger::get)
+            .tag("site", site)
+            .register(meterRegistry));
+    return state;
+  }
+}
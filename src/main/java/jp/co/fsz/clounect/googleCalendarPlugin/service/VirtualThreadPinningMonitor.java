@@ -0,0 +1,93 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * <p>[概要] 仮想スレッドのピン留めを検出するクラス。</p>
+ * <p>[詳細] JFRの jdk.VirtualThreadPinned イベントを購読し、仮想スレッドがキャリアスレッドに固定された回数を
+ * webhook.virtual.pinned カウンターとして公開します。</p>
+ * <p>[備考] Google HTTPクライアント内の synchronized ブロックなどで発生するピン留めの調査に使用します。
+ * 仮想スレッドモードが有効な場合のみ起動し、しきい値は google.webhook.virtual-threads.pinned-threshold-ms で設定します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "google.webhook.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  private final Counter pinnedCounter;
+  private final long thresholdMs;
+  private RecordingStream recordingStream;
+
+  /**
+   * <p>[概要] VirtualThreadPinningMonitorのコンストラクタ。</p>
+   *
+   * @param meterRegistry メトリクスレジストリ
+   * @param thresholdMs   ピン留めとして記録する最小の時間（ミリ秒）
+   * @since 1.0
+   */
+  public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+      @Value("${google.webhook.virtual-threads.pinned-threshold-ms:20}") long thresholdMs) {
+    this.pinnedCounter = meterRegistry.counter("webhook.virtual.pinned");
+    this.thresholdMs = thresholdMs;
+  }
+
+  /**
+   * <p>[概要] JFRイベントの購読を開始するメソッド。</p>
+   * <p>[備考] JDK21 未満の実行環境ではイベントが存在しないため起動しません。</p>
+   *
+   * @since 1.0
+   */
+  @PostConstruct
+  public void start() {
+    if (Runtime.version().feature() < 21) {
+      return;
+    }
+    recordingStream = new RecordingStream();
+    recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs))
+        .withStackTrace();
+    recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+    recordingStream.startAsync();
+    log.info("Virtual thread pinning monitor started (threshold {} ms)", thresholdMs);
+  }
+
+  /**
+   * <p>[概要] JFRイベントの購読を終了するメソッド。</p>
+   *
+   * @since 1.0
+   */
+  @PreDestroy
+  public void stop() {
+    if (recordingStream != null) {
+      recordingStream.close();
+    }
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinnedCounter.increment();
+    if (log.isDebugEnabled() && event.getStackTrace() != null) {
+      List<RecordedFrame> frames = event.getStackTrace().getFrames();
+      log.debug("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(),
+          frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getType().getName() + "."
+              + frames.get(0).getMethod().getName());
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookBatchResult;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookDedupKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.BatchTooLargeException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>[概要] バッチWebhook処理サービスクラス。</p>
+ * <p>[詳細] 1回のリクエストで受信した複数のSFAレコードを処理し、レコードごとの結果を返します。
+ * サイト情報の検索とアクセストークンの取得はバッチ全体で1回のみ行います。</p>
+ * <p>[備考] レコードは (appSiteId, recordId) ごとに {@link WebhookPartitionedExecutor} で処理されるため、
+ * 同じレコードのイベントはリクエスト内の順序で反映されます。同時実行数は google.webhook.batch.parallelism で制限します。
+ * 受付時はテナントの未処理件数にレコード数を加えた値が上限を超えないことを確認しますが、件数の予約は行いません。
+ * 処理量は各レコードの処理中に使用するテナントの同時処理枠で制限します。
+ * google.webhook.batch.slot-wait-ms の間に同時処理枠を取得できなかったレコードは THROTTLED とします。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class WebhookBatchService {
+  private final SiteRoutingService siteRoutingService;
+  private final CheckTypeService checkTypeService;
+  private final WebhookPartitionedExecutor partitionedExecutor;
+  private final WebhookDedupStore webhookDedupStore;
+  private final TenantAdmissionControl tenantAdmissionControl;
+  private final ObjectMapper objectMapper;
+  private final Counter recordCounter;
+
+  @Value("${google.webhook.batch.parallelism:4}")
+  private int parallelism;
+
+  @Value("${google.webhook.batch.max-records:500}")
+  private int maxRecords;
+
+  @Value("${google.webhook.batch.slot-wait-ms:30000}")
+  private long slotWaitMs;
+
+  /**
+   * <p>[概要] WebhookBatchServiceのコンストラクタ。</p>
+   *
+   * @param siteRoutingService    Webhookのルーティング情報のキャッシュ
+   * @param checkTypeService      Webhookの処理パイプライン
+   * @param partitionedExecutor   レコード単位で順序を保証する実行クラス
+   * @param webhookDedupStore     Webhookの重複排除ストア
+   * @param tenantAdmissionControl テナント単位の受付制御クラス
+   * @param objectMapper          JSON変換に使用するObjectMapper
+   * @param meterRegistry         メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookBatchService(SiteRoutingService siteRoutingService,
+      CheckTypeService checkTypeService, WebhookPartitionedExecutor partitionedExecutor,
+      WebhookDedupStore webhookDedupStore, TenantAdmissionControl tenantAdmissionControl,
+      ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    this.siteRoutingService = siteRoutingService;
+    this.checkTypeService = checkTypeService;
+    this.partitionedExecutor = partitionedExecutor;
+    this.webhookDedupStore = webhookDedupStore;
+    this.tenantAdmissionControl = tenantAdmissionControl;
+    this.objectMapper = objectMapper;
+    this.recordCounter = meterRegistry.counter("webhook.batch.records");
+  }
+
+  /**
+   * <p>[概要] 複数のSFAレコードをまとめて処理するメソッド。</p>
+   * <p>[詳細] サイト情報とアクセストークンを1回だけ取得し、各レコードを並列に処理してリクエスト内の順序で結果を返します。
+   * リクエストボディは1回だけ解析し、各レコードのJSON文字列を received_payload に保存します。</p>
+   * <p>[備考] 有効期間内に受信済みのレコードは処理せずに DUPLICATE として最初のトランザクションIDを返します。
+   * テナントの同時処理枠を待機時間内に取得できなかったレコードは処理せずに THROTTLED とします。</p>
+   *
+   * @param uuid WebhookのUUID
+   * @param body 受信したリクエストボディ（JSON配列）
+   * @return レコードごとの処理結果
+   * @throws IllegalArgumentException       リクエストボディがJSON配列でない場合
+   * @throws NotFoundException              WebhookのUUIDに対応するサイトが存在しない場合
+   * @throws BatchTooLargeException        レコード数が上限を超える場合
+   * @throws TenantThrottledException       テナントの未処理件数が上限に達している場合
+   * @since 1.0
+   */
+  public List<WebhookBatchResult> process(String uuid, byte[] body) {
+    List<WebhookPayload> payLoads = parse(body);
+    if (payLoads.size() > maxRecords) {
+      throw new BatchTooLargeException(
+          "Batch contains " + payLoads.size() + " records, limit is " + maxRecords);
+    }
+    SiteRoute route = siteRoutingService.findByWebhookUrl(uuid)
+        .orElseThrow(() -> new NotFoundException("AppSiteInfo not found in Optional"));
+    tenantAdmissionControl.admit(route, payLoads.size());
+    String accessToken = checkTypeService.getAccessToken(route);
+    AppSiteInfo site = route.toReference();
+
+    Semaphore permits = new Semaphore(parallelism);
+    List<CompletableFuture<WebhookBatchResult>> futures = new ArrayList<>();
+    for (int i = 0; i < payLoads.size(); i++) {
+      futures.add(submit(i, route, site, accessToken, payLoads.get(i), permits));
+    }
+    recordCounter.increment(payLoads.size());
+    return futures.stream().map(CompletableFuture::join).toList();
+  }
+
+  private List<WebhookPayload> parse(byte[] body) {
+    JsonNode root;
+    try {
+      root = objectMapper.readTree(body);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Webhook batch body is not valid JSON", e);
+    }
+    if (root == null || !root.isArray()) {
+      throw new IllegalArgumentException("Webhook batch body must be a JSON array");
+    }
+    List<WebhookPayload> payLoads = new ArrayList<>(root.size());
+    for (JsonNode element : root) {
+      if (!element.isObject()) {
+        throw new IllegalArgumentException("Webhook batch elements must be JSON objects");
+      }
+      payLoads.add(new WebhookPayload(element.toString(),
+          objectMapper.convertValue(element, new TypeReference<Map<String, Object>>() {
+          })));
+    }
+    return payLoads;
+  }
+
+  private CompletableFuture<WebhookBatchResult> submit(int index, SiteRoute route,
+      AppSiteInfo site, String accessToken, WebhookPayload payLoad, Semaphore permits) {
+    String recordId = payLoad.recordId();
+    String type = payLoad.type();
+    UUID transactionId = UUID.randomUUID();
+
+    WebhookDedupKey dedupKey = webhookDedupStore.keyOf(route.webhookUrl(), payLoad);
+    Optional<UUID> original = webhookDedupStore.findOrRegister(dedupKey, transactionId);
+    if (original.isPresent()) {
+      return CompletableFuture.completedFuture(
+          new WebhookBatchResult(index, recordId, type, "DUPLICATE", original.get(), null));
+    }
+
+    permits.acquireUninterruptibly();
+    boolean acquired;
+    try {
+      acquired = tenantAdmissionControl.acquire(route, slotWaitMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    }
+    if (!acquired) {
+      permits.release();
+      webhookDedupStore.forget(transactionId);
+      return CompletableFuture.completedFuture(
+          new WebhookBatchResult(index, recordId, type, "THROTTLED", transactionId,
+              "Tenant concurrency limit reached"));
+    }
+    long started = System.currentTimeMillis();
+    CompletableFuture<WebhookBatchResult> result = new CompletableFuture<>();
+    partitionedExecutor.submit(WebhookPartitionKey.of(site.getId(), payLoad.body()), () -> {
+      try {
+        checkTypeService.getPlayLoad(payLoad, site, accessToken, transactionId);
+        result.complete(
+            new WebhookBatchResult(index, recordId, type, "SUCCESS", transactionId, null));
+      } catch (Exception e) {
+        log.error("Batch webhook record {} failed", recordId, e);
+        webhookDedupStore.forget(transactionId);
+        result.complete(
+            new WebhookBatchResult(index, recordId, type, "FAILED", transactionId,
+                e.getMessage()));
+      }
+    }).whenComplete((ignored, e) -> {
+      tenantAdmissionControl.release(route, System.currentTimeMillis() - started);
+      permits.release();
+      if (e != null && result.complete(
+          new WebhookBatchResult(index, recordId, type, "FAILED", transactionId,
+              e.getMessage()))) {
+        webhookDedupStore.forget(transactionId);
+      }
+    });
+    return result;
+  }
+}
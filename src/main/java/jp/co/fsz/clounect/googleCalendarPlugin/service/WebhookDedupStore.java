@@ -0,0 +1,230 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.model.AppWebhookDedup;
+import jp.co.fsz.clounect.core.repository.AppWebhookDedupRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookDedupKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <p>[概要] Webhookの重複排除ストアクラス。</p>
+ * <p>[詳細] JustSFAがタイムアウト時に再送したWebhookを検出し、最初に発行したトランザクションIDを返します。
+ * 件数上限付きのメモリ上のLRUキャッシュと、一意制約を持つ "app_webhook_dedup" テーブルの2段構成です。</p>
+ * <p>[備考] メモリ上のキャッシュはインスタンスごとに保持されるため、複数インスタンス間の重複はテーブルの一意制約で検出します。
+ * キーの有効期間は google.webhook.dedup.ttl-seconds で設定します。
+ * ペイロードに配信ID（google.webhook.dedup.delivery-id-field）が含まれる場合は配信IDごとに、含まれない場合はレコードごとに
+ * 最後に受け付けたペイロードのみを記録するため、A→B→A のように内容が戻る更新も重複とは判定しません。
+ * 受け付けた行が最終的に FAILED となった場合はキーを取り消し、再送されたWebhookを受け付けます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class WebhookDedupStore {
+  private final AppWebhookDedupRepository appWebhookDedupRepository;
+  private final Map<String, CachedEntry> cache;
+  private final long ttlSeconds;
+  private final String deliveryIdField;
+  private final Counter memoryHitCounter;
+  private final Counter databaseHitCounter;
+  private final Counter missCounter;
+
+  private record CachedEntry(UUID transactionId, String payloadHash, LocalDateTime expiresAt) {
+  }
+
+  /**
+   * <p>[概要] WebhookDedupStoreのコンストラクタ。</p>
+   * <p>[詳細] リポジトリおよびキャッシュの設定を受け取ります。</p>
+   *
+   * @param appWebhookDedupRepository 重複排除キーのリポジトリ
+   * @param ttlSeconds                キーの有効期間（秒）
+   * @param maxEntries                メモリ上に保持するキーの最大件数
+   * @param deliveryIdField           ペイロード中の配信IDの項目名
+   * @param meterRegistry             メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookDedupStore(AppWebhookDedupRepository appWebhookDedupRepository,
+      @Value("${google.webhook.dedup.ttl-seconds:600}") long ttlSeconds,
+      @Value("${google.webhook.dedup.max-entries:10000}") int maxEntries,
+      @Value("${google.webhook.dedup.delivery-id-field:deliveryId}") String deliveryIdField,
+      MeterRegistry meterRegistry) {
+    this.appWebhookDedupRepository = appWebhookDedupRepository;
+    this.ttlSeconds = ttlSeconds;
+    this.deliveryIdField = deliveryIdField;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.memoryHitCounter = meterRegistry.counter("webhook.dedup.hits", "tier", "memory");
+    this.databaseHitCounter = meterRegistry.counter("webhook.dedup.hits", "tier", "database");
+    this.missCounter = meterRegistry.counter("webhook.dedup.misses");
+  }
+
+  /**
+   * <p>[概要] Webhookの重複排除キーを生成するメソッド。</p>
+   * <p>[詳細] 受信したJSON文字列のSHA-256ハッシュ値を算出し、キーの記録先を決定します。
+   * 配信IDがある場合は UUID、レコードID、イベント種別、配信IDから、ない場合は UUID とレコードIDから記録先を決定します。</p>
+   * <p>[備考] ペイロードを再シリアライズせずに受信時のバイト列をそのままハッシュします。</p>
+   *
+   * @param uuid    WebhookのUUID
+   * @param payLoad 受信したペイロード
+   * @return 重複排除キー
+   * @since 1.0
+   */
+  public WebhookDedupKey keyOf(String uuid, WebhookPayload payLoad) {
+    String recordId = payLoad.recordId();
+    String type = payLoad.type();
+    String payloadHash = sha256(payLoad.raw().getBytes(StandardCharsets.UTF_8));
+    Object deliveryId = payLoad.body().get(deliveryIdField);
+    String scope = deliveryId != null
+        ? String.join("\n", uuid, recordId, type, "delivery", String.valueOf(deliveryId))
+        : String.join("\n", uuid, recordId);
+    String value = sha256(scope.getBytes(StandardCharsets.UTF_8));
+    return new WebhookDedupKey(uuid, recordId, type, payloadHash, value);
+  }
+
+  /**
+   * <p>[概要] 重複を確認し、初回であればキーを登録するメソッド。</p>
+   * <p>[詳細] メモリ上のキャッシュ、テーブルの順に記録先を検索し、有効期限内かつペイロードのハッシュ値が一致する場合は
+   * 最初に発行されたトランザクションIDを返します。一致しない場合は記録先を新しいペイロードと指定されたトランザクションIDで上書きします。</p>
+   * <p>[備考] 同時に登録された場合は一意制約違反となるため、先に登録された行と比較します。</p>
+   *
+   * @param key           重複排除キー
+   * @param transactionId 新たに発行するトランザクションID
+   * @return 重複の場合は最初に発行されたトランザクションID、初回の場合は空
+   * @since 1.0
+   */
+  public Optional<UUID> findOrRegister(WebhookDedupKey key, UUID transactionId) {
+    LocalDateTime now = LocalDateTime.now();
+    synchronized (cache) {
+      CachedEntry cached = cache.get(key.value());
+      if (cached != null && cached.expiresAt().isAfter(now)
+          && cached.payloadHash().equals(key.payloadHash())) {
+        memoryHitCounter.increment();
+        return Optional.of(cached.transactionId());
+      }
+    }
+
+    LocalDateTime expiresAt = now.plusSeconds(ttlSeconds);
+    Optional<AppWebhookDedup> stored = appWebhookDedupRepository.findByDedupKey(key.value());
+    if (stored.isPresent()) {
+      Optional<UUID> original = replaceUnlessDuplicate(stored.get(), key, transactionId, now,
+          expiresAt);
+      if (original.isPresent()) {
+        return original;
+      }
+    } else {
+      try {
+        appWebhookDedupRepository.save(AppWebhookDedup.builder()
+            .dedupKey(key.value())
+            .webhookUrl(key.webhookUrl())
+            .recordId(key.recordId())
+            .type(key.type())
+            .payloadHash(key.payloadHash())
+            .transactionId(transactionId)
+            .expiresAt(expiresAt)
+            .build());
+      } catch (DataIntegrityViolationException e) {
+        AppWebhookDedup existing = appWebhookDedupRepository.findByDedupKey(key.value())
+            .orElseThrow(() -> e);
+        Optional<UUID> original = replaceUnlessDuplicate(existing, key, transactionId, now,
+            expiresAt);
+        if (original.isPresent()) {
+          return original;
+        }
+      }
+    }
+    remember(key, transactionId, expiresAt);
+    missCounter.increment();
+    return Optional.empty();
+  }
+
+  /**
+   * <p>[概要] 登録したキーを取り消すメソッド。</p>
+   * <p>[詳細] Webhookの受付に失敗した場合や、受け付けた行が FAILED となった場合に呼び出し、
+   * 再送されたWebhookが重複と判定されないようにします。</p>
+   * <p>[備考] 同じ記録先が後続のWebhookで上書きされている場合は、その記録を残します。</p>
+   *
+   * @param transactionId 登録時に発行したトランザクションID
+   * @since 1.0
+   */
+  @Transactional
+  public void forget(UUID transactionId) {
+    synchronized (cache) {
+      cache.values().removeIf(entry -> entry.transactionId().equals(transactionId));
+    }
+    appWebhookDedupRepository.deleteByTransactionId(transactionId);
+  }
+
+  /**
+   * <p>[概要] 有効期限切れのキーを削除するメソッド。</p>
+   * <p>[詳細] メモリ上のキャッシュとテーブルから有効期限を過ぎたキーを削除します。</p>
+   * <p>[備考] 実行間隔は google.webhook.dedup.purge-interval-ms で設定します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.webhook.dedup.purge-interval-ms:600000}")
+  @Transactional
+  public void purgeExpired() {
+    LocalDateTime now = LocalDateTime.now();
+    synchronized (cache) {
+      cache.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+    }
+    int purged = appWebhookDedupRepository.deleteExpired(now);
+    if (purged > 0) {
+      log.info("Purged {} expired webhook dedup keys", purged);
+    }
+  }
+
+  private Optional<UUID> replaceUnlessDuplicate(AppWebhookDedup existing, WebhookDedupKey key,
+      UUID transactionId, LocalDateTime now, LocalDateTime expiresAt) {
+    if (existing.getExpiresAt().isAfter(now)
+        && key.payloadHash().equals(existing.getPayloadHash())) {
+      remember(key, existing.getTransactionId(), existing.getExpiresAt());
+      databaseHitCounter.increment();
+      return Optional.of(existing.getTransactionId());
+    }
+    existing.setType(key.type());
+    existing.setPayloadHash(key.payloadHash());
+    existing.setTransactionId(transactionId);
+    existing.setExpiresAt(expiresAt);
+    appWebhookDedupRepository.save(existing);
+    return Optional.empty();
+  }
+
+  private void remember(WebhookDedupKey key, UUID transactionId, LocalDateTime expiresAt) {
+    synchronized (cache) {
+      cache.put(key.value(), new CachedEntry(transactionId, key.payloadHash(), expiresAt));
+    }
+  }
+
+  private static String sha256(byte[] data) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * <p>[概要] Webhook受付キューの処理に使用するスレッドプールの構成クラス。</p>
+ * <p>[詳細] キューから取り出したWebhookを処理するワーカー用のスレッドプールを提供し、
+ * キューのポーリングに必要なスケジューリングを有効にします。</p>
+ * <p>[備考] ワーカー数とプールの待ち行列サイズは application.properties で変更できます。
+ * ワーカー数を指定しない場合は利用可能なCPUコア数となります。
+ * google.webhook.virtual-threads.enabled を true にすると、Webhook処理とその中で行うGoogle APIおよび
+ * データベースへの呼び出しを仮想スレッド上で実行します。仮想スレッドの利用には JDK21 以降の実行環境が必要です。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Configuration
+@EnableScheduling
+@Slf4j
+public class WebhookExecutorConfig {
+
+  @Value("${google.webhook.queue.workers:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+  private int workers;
+
+  @Value("${google.webhook.queue.capacity:200}")
+  private int capacity;
+
+  @Value("${google.webhook.virtual-threads.enabled:false}")
+  private boolean virtualThreads;
+
+  @Value("${google.webhook.virtual-threads.max-concurrency:1000}")
+  private int virtualThreadConcurrency;
+
+  @Value("${google.replay.max-jobs:1}")
+  private int replayJobs;
+
+  /**
+   * <p>[概要] Webhook処理用スレッドプールの Bean 定義メソッド。</p>
+   * <p>[詳細] 固定数のワーカースレッドと上限付きの待ち行列を持つスレッドプールを生成します。
+   * 仮想スレッドモードが有効な場合は、タスクごとに仮想スレッドを生成し同時実行数のみを制限する実行クラスを生成します。</p>
+   * <p>[備考] シャットダウン時は実行中のタスクの完了を待機します。</p>
+   *
+   * @return Webhook処理用の実行クラス
+   * @since 1.0
+   */
+  @Bean(name = "webhookQueueExecutor")
+  public TaskExecutor webhookQueueExecutor() {
+    if (virtualThreads) {
+      if (Runtime.version().feature() >= 21) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("webhook-vt-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualThreadConcurrency);
+        executor.setTaskTerminationTimeout(30000);
+        log.info("Webhook processing runs on virtual threads (max concurrency {})",
+            virtualThreadConcurrency);
+        return executor;
+      }
+      log.warn("Virtual threads requested but runtime is JDK {}; using platform threads",
+          Runtime.version().feature());
+    }
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(capacity);
+    executor.setThreadNamePrefix("webhook-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * <p>[概要] app_data 再送ジョブ用スレッドプールの Bean 定義メソッド。</p>
+   * <p>[詳細] 同時に実行する再送ジョブ数を google.replay.max-jobs に制限し、超過したジョブは待ち行列で待機します。</p>
+   * <p>[備考] 各ジョブのレコード処理は Webhook処理用の実行クラスで行われ、このプールはページの読み込みと投入のみを行います。</p>
+   *
+   * @return 再送ジョブ用の実行クラス
+   * @since 1.0
+   */
+  @Bean(name = "replayJobExecutor")
+  public TaskExecutor replayJobExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(replayJobs);
+    executor.setMaxPoolSize(replayJobs);
+    executor.setThreadNamePrefix("replay-");
+    return executor;
+  }
+}
@@ -0,0 +1,143 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.core.model.WebhookQueueStatus;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookDedupKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <p>[概要] Webhook受付サービスクラス。</p>
+ * <p>[詳細] JustSFAから受信したWebhookを受付キューテーブルに保存し、トランザクションIDを発行します。</p>
+ * <p>[備考] Google Calendarへの反映は {@link WebhookQueueWorker} が非同期に行うため、
+ * 呼び出し元はキューへの保存完了後すぐに応答できます。
+ * WebhookのUUIDに対応するサイトが存在しない場合は、重複排除や受付制御の状態を作らずに拒否します。
+ * JustSFAから再送された同一のWebhookは {@link WebhookDedupStore} で検出し、キューに保存せずに最初のトランザクションIDを返します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class WebhookIntakeService {
+  private final AppWebhookQueueRepository appWebhookQueueRepository;
+  private final SiteRoutingService siteRoutingService;
+  private final ObjectMapper objectMapper;
+  private final WebhookDedupStore webhookDedupStore;
+  private final TenantAdmissionControl tenantAdmissionControl;
+  private final Counter enqueuedCounter;
+  private final Counter duplicateCounter;
+
+  /**
+   * <p>[概要] WebhookIntakeServiceのコンストラクタ。</p>
+   * <p>[詳細] 受付キューのリポジトリ、ルーティング情報のキャッシュ、JSON変換に使用するObjectMapper、重複排除ストア、
+   * およびメトリクスレジストリを受け取ります。</p>
+   *
+   * @param appWebhookQueueRepository 受付キューのリポジトリ
+   * @param siteRoutingService        Webhookのルーティング情報のキャッシュ
+   * @param objectMapper              JSON変換に使用するObjectMapper
+   * @param webhookDedupStore         Webhookの重複排除ストア
+   * @param tenantAdmissionControl    テナント単位の受付制御クラス
+   * @param meterRegistry             メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookIntakeService(AppWebhookQueueRepository appWebhookQueueRepository,
+      SiteRoutingService siteRoutingService, ObjectMapper objectMapper, WebhookDedupStore webhookDedupStore,
+      TenantAdmissionControl tenantAdmissionControl, MeterRegistry meterRegistry) {
+    this.appWebhookQueueRepository = appWebhookQueueRepository;
+    this.siteRoutingService = siteRoutingService;
+    this.objectMapper = objectMapper;
+    this.webhookDedupStore = webhookDedupStore;
+    this.tenantAdmissionControl = tenantAdmissionControl;
+    this.enqueuedCounter = meterRegistry.counter("webhook.queue.enqueued");
+    this.duplicateCounter = meterRegistry.counter("webhook.queue.duplicates");
+  }
+
+  /**
+   * <p>[概要] Webhookを受付キューに保存するメソッド。</p>
+   * <p>[詳細] リクエストボディを1回だけ解析し、受信したJSON文字列をそのまま保存して処理状態を PENDING として登録します。</p>
+   * <p>[備考] 返却されるトランザクションIDは後続の処理ログにも引き継がれます。
+   * 有効期間内に同じWebhookを受信済みの場合は、キューに保存せずに最初のトランザクションIDを返します。</p>
+   *
+   * @param uuid    WebhookのUUID
+   * @param body    受信したリクエストボディ
+   * @return 発行されたトランザクションID
+   * @throws IllegalArgumentException       リクエストボディがJSONオブジェクトでない場合
+   * @throws NotFoundException              WebhookのUUIDに対応するサイトが存在しない場合
+   * @throws TenantThrottledException       テナントの未処理件数が上限に達している場合
+   * @since 1.0
+   */
+  public UUID enqueue(String uuid, byte[] body) {
+    WebhookPayload payLoad = parse(body);
+    SiteRoute route = siteRoutingService.findByWebhookUrl(uuid)
+        .orElseThrow(() -> new NotFoundException("AppSiteInfo not found in Optional"));
+    UUID transactionId = UUID.randomUUID();
+    WebhookDedupKey dedupKey = webhookDedupStore.keyOf(uuid, payLoad);
+    Optional<UUID> original = webhookDedupStore.findOrRegister(dedupKey, transactionId);
+    if (original.isPresent()) {
+      duplicateCounter.increment();
+      log.info("Duplicate webhook suppressed: uuid={}, transactionId={}", uuid, original.get());
+      return original.get();
+    }
+    try {
+      tenantAdmissionControl.admit(route, 1);
+      AppWebhookQueue entry = AppWebhookQueue.builder()
+          .transactionId(transactionId)
+          .webhookUrl(uuid)
+          .recordId(payLoad.recordId())
+          .payload(payLoad.raw())
+          .status(WebhookQueueStatus.PENDING)
+          .attempts(0)
+          .nextAttemptAt(LocalDateTime.now())
+          .build();
+      appWebhookQueueRepository.save(entry);
+    } catch (RuntimeException e) {
+      webhookDedupStore.forget(transactionId);
+      throw e;
+    }
+    enqueuedCounter.increment();
+    log.info("Webhook queued: uuid={}, transactionId={}", uuid, transactionId);
+    return transactionId;
+  }
+
+  /**
+   * <p>[概要] リクエストボディを解析するメソッド。</p>
+   * <p>[詳細] 受信したバイト列をJSONオブジェクトとして1回だけ解析し、元の文字列とともに返します。</p>
+   *
+   * @param body 受信したリクエストボディ
+   * @return 受信したペイロード
+   * @throws IllegalArgumentException リクエストボディがJSONオブジェクトでない場合
+   * @since 1.0
+   */
+  public WebhookPayload parse(byte[] body) {
+    try {
+      Map<String, Object> parsed = objectMapper.readValue(body, new TypeReference<>() {
+      });
+      if (parsed == null) {
+        throw new IllegalArgumentException("Webhook body is empty");
+      }
+      return new WebhookPayload(new String(body, StandardCharsets.UTF_8), parsed);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Webhook body is not a JSON object", e);
+    }
+  }
+}
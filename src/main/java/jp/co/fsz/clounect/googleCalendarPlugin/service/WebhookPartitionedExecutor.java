@@ -0,0 +1,99 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>[概要] パーティション単位で順序を保証するWebhook実行クラス。</p>
+ * <p>[詳細] 同じ {@link WebhookPartitionKey} のタスクは投入順に1件ずつ実行し、
+ * 異なるキーのタスクは共有スレッドプール上で並列に実行します。</p>
+ * <p>[備考] キーごとに最後に投入されたタスクのFutureを保持し、次のタスクをその完了後に連結します。
+ * 先行タスクが失敗しても後続タスクは実行されます。チェーンが空になったキーは破棄されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class WebhookPartitionedExecutor {
+  private final Executor executor;
+  private final ConcurrentHashMap<WebhookPartitionKey, CompletableFuture<Void>> tails =
+      new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final int capacity;
+
+  /**
+   * <p>[概要] WebhookPartitionedExecutorのコンストラクタ。</p>
+   * <p>[詳細] タスクを実行する共有スレッドプールと同時に保持できるタスク数の上限を受け取ります。</p>
+   *
+   * @param webhookQueueExecutor Webhook処理用の実行クラス
+   * @param capacity             同時に保持できるタスク数の上限
+   * @param meterRegistry        メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookPartitionedExecutor(
+      @Qualifier("webhookQueueExecutor") TaskExecutor webhookQueueExecutor,
+      @Value("${google.webhook.queue.capacity:200}") int capacity,
+      MeterRegistry meterRegistry) {
+    this.executor = webhookQueueExecutor;
+    this.capacity = capacity;
+
+    Gauge.builder("webhook.partition.active", tails, ConcurrentHashMap::size)
+        .description("Number of partitions with queued or running webhooks")
+        .register(meterRegistry);
+    Gauge.builder("webhook.partition.inflight", inFlight, AtomicInteger::get)
+        .description("Number of webhooks queued or running in the partitioned executor")
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] タスクをパーティションに投入するメソッド。</p>
+   * <p>[詳細] 同じキーの先行タスクが完了した後にタスクを実行するようスケジュールします。</p>
+   *
+   * @param key  パーティションキー
+   * @param task 実行するタスク
+   * @return タスクの完了を表すFuture
+   * @since 1.0
+   */
+  public CompletableFuture<Void> submit(WebhookPartitionKey key, Runnable task) {
+    inFlight.incrementAndGet();
+    CompletableFuture<Void> next = tails.compute(key, (k, tail) -> {
+      CompletableFuture<Void> previous = tail == null
+          ? CompletableFuture.completedFuture(null)
+          : tail.exceptionally(e -> null);
+      return previous.thenRunAsync(task, executor);
+    });
+    next.whenComplete((result, e) -> {
+      inFlight.decrementAndGet();
+      tails.remove(key, next);
+      if (e != null) {
+        log.error("Webhook task for {} failed", key, e);
+      }
+    });
+    return next;
+  }
+
+  /**
+   * <p>[概要] 追加で受け付け可能なタスク数を返すメソッド。</p>
+   * <p>[詳細] 上限から現在保持しているタスク数を引いた値を返します。</p>
+   *
+   * @return 追加で受け付け可能なタスク数
+   * @since 1.0
+   */
+  public int remainingCapacity() {
+    return Math.max(0, capacity - inFlight.get());
+  }
+}
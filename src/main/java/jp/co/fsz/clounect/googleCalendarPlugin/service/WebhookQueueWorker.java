@@ -0,0 +1,373 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.core.model.WebhookQueueStatus;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>[概要] Webhook受付キューのワーカークラス。</p>
+ * <p>[詳細] 受付キューテーブルを定期的にポーリングし、処理可能な行を取り出して
+ * {@link CheckTypeService} の処理パイプラインに渡します。</p>
+ * <p>[備考] 行は (appSiteId, recordId) ごとに {@link WebhookPartitionedExecutor} に投入されるため、
+ * 同じレコードのイベントは受信順に直列で処理され、異なるレコードのイベントは並列に処理されます。
+ * 失敗した行は指数的に間隔を空けて再試行し、上限回数に達した場合は FAILED とします。
+ * FAILED とした行の重複排除キーは取り消し、JustSFAからの再送を受け付けます。
+ * 同じレコードのより前の行が再試行待ちの間は、後の行を取り出さず、取り出し済みの場合も処理せずに PENDING に戻します。
+ * キューの滞留件数と処理遅延はメトリクスとして公開されます。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Service
+@Slf4j
+public class WebhookQueueWorker {
+  private final AppWebhookQueueRepository appWebhookQueueRepository;
+  private final SiteRoutingService siteRoutingService;
+  private final CheckTypeService checkTypeService;
+  private final ObjectMapper objectMapper;
+  private final TransactionTemplate transactionTemplate;
+  private final WebhookPartitionedExecutor partitionedExecutor;
+  private final WebhookUpdateCoalescer updateCoalescer;
+  private final TenantAdmissionControl tenantAdmissionControl;
+  private final WebhookDedupStore webhookDedupStore;
+
+  private final Set<Long> inMemory = ConcurrentHashMap.newKeySet();
+  private final AtomicLong queueDepth = new AtomicLong();
+  private final AtomicLong oldestPendingSeconds = new AtomicLong();
+  private final Timer lagTimer;
+  private final Counter processedCounter;
+  private final Counter retriedCounter;
+  private final Counter failedCounter;
+  private final Counter heldBackCounter;
+
+  @Value("${google.webhook.queue.batch-size:50}")
+  private int batchSize;
+
+  @Value("${google.webhook.queue.max-attempts:5}")
+  private int maxAttempts;
+
+  @Value("${google.webhook.queue.retry-delay-ms:5000}")
+  private long retryDelayMs;
+
+  @Value("${google.webhook.queue.lease-timeout-ms:300000}")
+  private long leaseTimeoutMs;
+
+  @Value("${google.webhook.tenant.max-concurrency:16}")
+  private int perTenantLimit;
+
+  @Value("${google.webhook.tenant.defer-ms:1000}")
+  private long deferMs;
+
+  /**
+   * <p>[概要] WebhookQueueWorkerのコンストラクタ。</p>
+   * <p>[詳細] キューのリポジトリ、処理パイプライン、スレッドプール、およびメトリクスを初期化します。</p>
+   *
+   * @param appWebhookQueueRepository 受付キューのリポジトリ
+   * @param siteRoutingService        Webhookのルーティング情報のキャッシュ
+   * @param checkTypeService          Webhookの処理パイプライン
+   * @param objectMapper              JSON変換に使用するObjectMapper
+   * @param transactionTemplate       行の取り出しに使用するトランザクションテンプレート
+   * @param partitionedExecutor       レコード単位で順序を保証する実行クラス
+   * @param updateCoalescer           UPDATE_RECORD をまとめるクラス
+   * @param tenantAdmissionControl    テナント単位の受付制御クラス
+   * @param webhookDedupStore         Webhookの重複排除ストア
+   * @param meterRegistry             メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookQueueWorker(AppWebhookQueueRepository appWebhookQueueRepository,
+      SiteRoutingService siteRoutingService, CheckTypeService checkTypeService,
+      ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+      WebhookPartitionedExecutor partitionedExecutor, WebhookUpdateCoalescer updateCoalescer,
+      TenantAdmissionControl tenantAdmissionControl, WebhookDedupStore webhookDedupStore,
+      MeterRegistry meterRegistry) {
+    this.appWebhookQueueRepository = appWebhookQueueRepository;
+    this.siteRoutingService = siteRoutingService;
+    this.checkTypeService = checkTypeService;
+    this.objectMapper = objectMapper;
+    this.transactionTemplate = transactionTemplate;
+    this.partitionedExecutor = partitionedExecutor;
+    this.updateCoalescer = updateCoalescer;
+    this.tenantAdmissionControl = tenantAdmissionControl;
+    this.webhookDedupStore = webhookDedupStore;
+
+    Gauge.builder("webhook.queue.depth", queueDepth, AtomicLong::get)
+        .description("Number of pending webhooks in the intake queue")
+        .register(meterRegistry);
+    Gauge.builder("webhook.queue.oldest.pending.seconds", oldestPendingSeconds, AtomicLong::get)
+        .description("Age of the oldest pending webhook")
+        .register(meterRegistry);
+    this.lagTimer = Timer.builder("webhook.queue.lag")
+        .description("Time between intake and start of processing")
+        .register(meterRegistry);
+    this.processedCounter = meterRegistry.counter("webhook.queue.processed", "outcome", "success");
+    this.retriedCounter = meterRegistry.counter("webhook.queue.processed", "outcome", "retry");
+    this.failedCounter = meterRegistry.counter("webhook.queue.processed", "outcome", "failed");
+    this.heldBackCounter = meterRegistry.counter("webhook.queue.held.back");
+  }
+
+  /**
+   * <p>[概要] 受付キューをポーリングするメソッド。</p>
+   * <p>[詳細] 実行クラスの空き容量の範囲で処理可能な行を取り出し、レコードごとのパーティションに割り当てます。</p>
+   * <p>[備考] 行はID順に取り出して投入するため、同じパーティション内では受信順が保たれます。
+   * 同時処理数が上限に達しているテナントの行は取り出さず、1回に取り出す行もテナントごとに同時処理数の上限までとします。
+   * 取り出した後に上限に達した場合、そのテナントの残りの行は google.webhook.tenant.defer-ms の間保留します。
+   * ポーリング間隔は google.webhook.queue.poll-interval-ms で設定します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.webhook.queue.poll-interval-ms:500}")
+  public void poll() {
+    refreshQueueMetrics();
+
+    int limit = Math.min(batchSize,
+        partitionedExecutor.remainingCapacity() - updateCoalescer.pendingCount());
+    if (limit <= 0) {
+      return;
+    }
+    Set<String> deferredTenants = new HashSet<>();
+    for (AppWebhookQueue entry : claim(limit)) {
+      Optional<SiteRoute> site = siteRoutingService.findByWebhookUrl(entry.getWebhookUrl());
+      if (site.isEmpty()) {
+        NotFoundException e = new NotFoundException("AppSiteInfo not found in Optional");
+        log.error("Webhook {} could not be routed: {}", entry.getTransactionId(), e.getMessage());
+        fail(entry, e, true);
+        continue;
+      }
+      if (deferredTenants.contains(entry.getWebhookUrl())
+          || !tenantAdmissionControl.tryAcquire(site.get())) {
+        deferredTenants.add(entry.getWebhookUrl());
+        defer(entry);
+        continue;
+      }
+      dispatch(entry, site.get());
+    }
+  }
+
+  /**
+   * <p>[概要] 処理中のまま放置された行を解放するメソッド。</p>
+   * <p>[詳細] ロックの有効期限を過ぎた PROCESSING 行を PENDING に戻し、再処理の対象にします。</p>
+   * <p>[備考] このインスタンスのパーティションの待ち行列や UPDATE_RECORD の保留中にある行は、先にロック時刻を更新するため解放されません。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.webhook.queue.lease-check-interval-ms:60000}")
+  public void releaseStaleLocks() {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime before = now.minus(Duration.ofMillis(leaseTimeoutMs));
+    List<Long> held = List.copyOf(inMemory);
+    Integer released = transactionTemplate.execute(status -> {
+      if (!held.isEmpty()) {
+        appWebhookQueueRepository.refreshLocks(held, now, WebhookQueueStatus.PROCESSING);
+      }
+      return appWebhookQueueRepository.releaseStaleLocks(before, WebhookQueueStatus.PENDING,
+          WebhookQueueStatus.PROCESSING);
+    });
+    if (released != null && released > 0) {
+      log.warn("Released {} stale webhook queue entries", released);
+    }
+  }
+
+  /**
+   * <p>[概要] 処理可能な行を取り出して PROCESSING に更新するメソッド。</p>
+   * <p>[詳細] 同時処理数が上限に達しているテナントの行は取り出しません。</p>
+   *
+   * @param limit 取り出す最大件数
+   * @return 取り出した行のリスト
+   * @since 1.0
+   */
+  private List<AppWebhookQueue> claim(int limit) {
+    Set<String> saturated = tenantAdmissionControl.saturatedWebhookUrls();
+    Collection<String> excluded = saturated.isEmpty() ? List.of("") : saturated;
+    List<AppWebhookQueue> claimed = transactionTemplate.execute(status -> {
+      LocalDateTime now = LocalDateTime.now();
+      List<AppWebhookQueue> rows = appWebhookQueueRepository.findClaimable(now, limit,
+          perTenantLimit, excluded);
+      for (AppWebhookQueue row : rows) {
+        row.setStatus(WebhookQueueStatus.PROCESSING);
+        row.setLockedAt(now);
+      }
+      return appWebhookQueueRepository.saveAll(rows);
+    });
+    return claimed != null ? claimed : Collections.emptyList();
+  }
+
+  /**
+   * <p>[概要] 取り出した行をパーティションに投入するメソッド。</p>
+   * <p>[詳細] ペイロードを復元し、(appSiteId, recordId) をキーとして
+   * {@link WebhookPartitionedExecutor} に処理を投入します。
+   * UPDATE_RECORD は {@link WebhookUpdateCoalescer} で保留し、同じレコードの最新のイベントのみを反映します。</p>
+   * <p>[備考] ペイロードが復元できない場合は、再試行しても成功しないため即座に FAILED とします。
+   * WebhookのUUIDに対応するサイトが存在しない行は、呼び出し元で FAILED としています。</p>
+   *
+   * @param entry 処理対象の行
+   * @param site  Webhookの送信元サイトのルーティング情報
+   * @since 1.0
+   */
+  void dispatch(AppWebhookQueue entry, SiteRoute site) {
+    inMemory.add(entry.getId());
+    WebhookPayload payLoad;
+    try {
+      Map<String, Object> body = objectMapper.readValue(entry.getPayload(),
+          new TypeReference<>() {
+          });
+      payLoad = new WebhookPayload(entry.getPayload(), body);
+    } catch (Exception e) {
+      log.error("Webhook {} has an unreadable payload", entry.getTransactionId(), e);
+      inMemory.remove(entry.getId());
+      tenantAdmissionControl.release(site, -1);
+      fail(entry, e, true);
+      return;
+    }
+    WebhookPartitionKey key = WebhookPartitionKey.of(site.siteId(), payLoad.body());
+    Runnable task = () -> process(entry, site, payLoad);
+    if (Objects.equals(payLoad.type(), "UPDATE_RECORD")) {
+      updateCoalescer.offer(key, entry, task, superseded -> supersede(superseded, site));
+    } else {
+      updateCoalescer.flush(key);
+      partitionedExecutor.submit(key, task);
+    }
+  }
+
+  /**
+   * <p>[概要] 取り出した行を処理パイプラインに渡すメソッド。</p>
+   * <p>[詳細] 復元済みのペイロードとサイト情報で {@link CheckTypeService#getPlayLoad} を呼び出し、
+   * 結果に応じて行の状態を更新します。</p>
+   * <p>[備考] 処理の終了時にテナントの同時処理枠を解放します。
+   * 同じレコードのより前の行が再試行待ちまたは処理中の場合は、古い内容で上書きしないよう処理せずに PENDING に戻します。
+   * 戻した行はより前の行が処理されるまで取り出されません。</p>
+   *
+   * @param entry   処理対象の行
+   * @param site    Webhookの送信元サイトのルーティング情報
+   * @param payLoad 復元済みのペイロード
+   * @since 1.0
+   */
+  void process(AppWebhookQueue entry, SiteRoute site, WebhookPayload payLoad) {
+    long started = System.currentTimeMillis();
+    boolean processed = false;
+    try {
+      if (isBehindPendingRow(entry)) {
+        log.info("Webhook {} held back behind an earlier pending row for record {}",
+            entry.getTransactionId(), entry.getRecordId());
+        holdBack(entry);
+        return;
+      }
+      lagTimer.record(Duration.between(entry.getCreatedAt(), LocalDateTime.now()));
+      processed = true;
+      checkTypeService.getPlayLoad(payLoad, site, entry.getTransactionId());
+      complete(entry);
+    } catch (NotFoundException e) {
+      log.error("Webhook {} could not be processed: {}", entry.getTransactionId(), e.getMessage());
+      fail(entry, e, true);
+    } catch (Exception e) {
+      log.error("Webhook {} failed", entry.getTransactionId(), e);
+      fail(entry, e, false);
+    } finally {
+      inMemory.remove(entry.getId());
+      tenantAdmissionControl.release(site,
+          processed ? System.currentTimeMillis() - started : -1);
+    }
+  }
+
+  private boolean isBehindPendingRow(AppWebhookQueue entry) {
+    return entry.getRecordId() != null
+        && appWebhookQueueRepository.existsByWebhookUrlAndRecordIdAndIdLessThanAndStatusIn(
+        entry.getWebhookUrl(), entry.getRecordId(), entry.getId(),
+        EnumSet.of(WebhookQueueStatus.PENDING, WebhookQueueStatus.PROCESSING));
+  }
+
+  private void complete(AppWebhookQueue entry) {
+    entry.setStatus(WebhookQueueStatus.DONE);
+    entry.setProcessedAt(LocalDateTime.now());
+    entry.setLockedAt(null);
+    appWebhookQueueRepository.save(entry);
+    processedCounter.increment();
+  }
+
+  private void supersede(AppWebhookQueue entry, SiteRoute site) {
+    entry.setStatus(WebhookQueueStatus.DONE);
+    entry.setProcessedAt(LocalDateTime.now());
+    entry.setLockedAt(null);
+    entry.setErrorLog("Coalesced into a later UPDATE_RECORD");
+    inMemory.remove(entry.getId());
+    appWebhookQueueRepository.save(entry);
+    tenantAdmissionControl.release(site, -1);
+  }
+
+  private void holdBack(AppWebhookQueue entry) {
+    entry.setStatus(WebhookQueueStatus.PENDING);
+    entry.setLockedAt(null);
+    entry.setNextAttemptAt(LocalDateTime.now());
+    appWebhookQueueRepository.save(entry);
+    heldBackCounter.increment();
+  }
+
+  private void defer(AppWebhookQueue entry) {
+    entry.setStatus(WebhookQueueStatus.PENDING);
+    entry.setLockedAt(null);
+    entry.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(deferMs)));
+    appWebhookQueueRepository.save(entry);
+  }
+
+  private void fail(AppWebhookQueue entry, Exception e, boolean permanent) {
+    int attempts = entry.getAttempts() == null ? 1 : entry.getAttempts() + 1;
+    entry.setAttempts(attempts);
+    entry.setErrorLog(e.getMessage());
+    entry.setLockedAt(null);
+    if (permanent || attempts >= maxAttempts) {
+      entry.setStatus(WebhookQueueStatus.FAILED);
+      entry.setProcessedAt(LocalDateTime.now());
+      failedCounter.increment();
+      try {
+        webhookDedupStore.forget(entry.getTransactionId());
+      } catch (RuntimeException ex) {
+        log.warn("Could not release dedup key of webhook {}", entry.getTransactionId(), ex);
+      }
+    } else {
+      long delay = retryDelayMs * (1L << Math.min(attempts - 1, 10));
+      entry.setStatus(WebhookQueueStatus.PENDING);
+      entry.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(delay)));
+      retriedCounter.increment();
+    }
+    appWebhookQueueRepository.save(entry);
+  }
+
+  private void refreshQueueMetrics() {
+    queueDepth.set(appWebhookQueueRepository.countByStatus(WebhookQueueStatus.PENDING));
+    LocalDateTime oldest = appWebhookQueueRepository.findOldestCreatedAt(
+        WebhookQueueStatus.PENDING);
+    oldestPendingSeconds.set(
+        oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).getSeconds());
+  }
+}
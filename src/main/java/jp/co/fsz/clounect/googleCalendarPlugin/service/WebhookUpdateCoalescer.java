@@ -0,0 +1,144 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * <p>[概要] UPDATE_RECORD イベントをレコード単位でまとめるクラス。</p>
+ * <p>[詳細] 同じ (appSiteId, recordId) の UPDATE_RECORD を一定時間保留し、その間に届いた
+ * 新しいイベントで置き換えます。保留期間が終わると最新のイベントのみを {@link WebhookPartitionedExecutor} に投入します。</p>
+ * <p>[備考] 保留期間は最初のイベントの受け取りから数えるため、更新が続いても反映が無制限に遅れることはありません。
+ * 同じキーに UPDATE_RECORD 以外のイベントが届いた場合は、保留中の更新を先に投入して順序を保ちます。
+ * 保留期間は google.webhook.coalesce.window-ms で設定し、0 の場合はまとめずに即座に投入します。</p>
+ * <p>[環境] JDK17.0</p>
+ * <p>著作権 FSZ 2024</p>
+ *
+ * @author 著者FSZ
+ * @since 1.0
+ */
+@Component
+@Slf4j
+public class WebhookUpdateCoalescer {
+  private final WebhookPartitionedExecutor partitionedExecutor;
+  private final ConcurrentHashMap<WebhookPartitionKey, Pending> pending =
+      new ConcurrentHashMap<>();
+  private final long windowMs;
+  private final Counter mergedCounter;
+  private final Counter flushedCounter;
+
+  private record Pending(AppWebhookQueue entry, Runnable task, long deadline) {
+  }
+
+  /**
+   * <p>[概要] WebhookUpdateCoalescerのコンストラクタ。</p>
+   *
+   * @param partitionedExecutor レコード単位で順序を保証する実行クラス
+   * @param windowMs            保留期間（ミリ秒）
+   * @param meterRegistry       メトリクスレジストリ
+   * @since 1.0
+   */
+  public WebhookUpdateCoalescer(WebhookPartitionedExecutor partitionedExecutor,
+      @Value("${google.webhook.coalesce.window-ms:2000}") long windowMs,
+      MeterRegistry meterRegistry) {
+    this.partitionedExecutor = partitionedExecutor;
+    this.windowMs = windowMs;
+    this.mergedCounter = meterRegistry.counter("webhook.coalesce.merged");
+    this.flushedCounter = meterRegistry.counter("webhook.coalesce.flushed");
+    Gauge.builder("webhook.coalesce.pending", pending, ConcurrentHashMap::size)
+        .description("Number of records with a held UPDATE_RECORD")
+        .register(meterRegistry);
+  }
+
+  /**
+   * <p>[概要] UPDATE_RECORD イベントを保留するメソッド。</p>
+   * <p>[詳細] 同じキーに保留中のイベントがある場合は新しいイベントで置き換え、置き換えられた行を
+   * {@code onSuperseded} に渡します。</p>
+   *
+   * @param key          パーティションキー
+   * @param entry        受付キューの行
+   * @param task         Google Calendarへ反映するタスク
+   * @param onSuperseded 置き換えられた行を受け取る処理
+   * @since 1.0
+   */
+  public void offer(WebhookPartitionKey key, AppWebhookQueue entry, Runnable task,
+      Consumer<AppWebhookQueue> onSuperseded) {
+    if (windowMs <= 0) {
+      partitionedExecutor.submit(key, task);
+      return;
+    }
+    AppWebhookQueue[] superseded = new AppWebhookQueue[1];
+    pending.compute(key, (k, current) -> {
+      long deadline = System.currentTimeMillis() + windowMs;
+      if (current != null) {
+        superseded[0] = current.entry();
+        deadline = current.deadline();
+      }
+      return new Pending(entry, task, deadline);
+    });
+    if (superseded[0] != null) {
+      mergedCounter.increment();
+      log.debug("UPDATE_RECORD {} superseded by {}", superseded[0].getTransactionId(),
+          entry.getTransactionId());
+      onSuperseded.accept(superseded[0]);
+    }
+  }
+
+  /**
+   * <p>[概要] 保留中のイベントを即座に投入するメソッド。</p>
+   * <p>[詳細] 同じキーに UPDATE_RECORD 以外のイベントを投入する前に呼び出し、保留中の更新が後から実行されないようにします。</p>
+   *
+   * @param key パーティションキー
+   * @since 1.0
+   */
+  public void flush(WebhookPartitionKey key) {
+    pending.computeIfPresent(key, (k, current) -> {
+      submit(k, current);
+      return null;
+    });
+  }
+
+  /**
+   * <p>[概要] 保留期間の終わったイベントを投入するメソッド。</p>
+   * <p>[備考] 実行間隔は google.webhook.coalesce.flush-interval-ms で設定します。</p>
+   *
+   * @since 1.0
+   */
+  @Scheduled(fixedDelayString = "${google.webhook.coalesce.flush-interval-ms:200}")
+  public void flushExpired() {
+    long now = System.currentTimeMillis();
+    for (WebhookPartitionKey key : pending.keySet()) {
+      pending.computeIfPresent(key, (k, current) -> {
+        if (current.deadline() > now) {
+          return current;
+        }
+        submit(k, current);
+        return null;
+      });
+    }
+  }
+
+  /**
+   * <p>[概要] 保留中のイベント数を返すメソッド。</p>
+   *
+   * @return 保留中のイベント数
+   * @since 1.0
+   */
+  public int pendingCount() {
+    return pending.size();
+  }
+
+  private void submit(WebhookPartitionKey key, Pending current) {
+    flushedCounter.increment();
+    partitionedExecutor.submit(key, current.task());
+  }
+}
@@ -8,7 +8,7 @@ import jp.co.fsz.clounect.core.user.dto.UserDto;
 import jp.co.fsz.clounect.core.user.service.UserService;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
 import jp.co.fsz.clounect.googleCalendarPlugin.dto.UserDetails;
-import jp.co.fsz.clounect.googleCalendarPlugin.service.GoogleOAuthService;
+import jp.co.fsz.clounect.googleCalendarPlugin.service.GoogleTokenCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -36,7 +36,7 @@ public class SecurityUtil {
   private final UserService userService;
   private final AppSiteInfoRepository appSiteInfoRepository;
   private final CredentialsMapper credentialsMapper;
-  private final GoogleOAuthService googleOAuthService;
+  private final GoogleTokenCache googleTokenCache;
 
   /**
    * <p>[概要] {@link SecurityUtil} クラスのコンストラクタ。</p>
@@ -49,16 +49,16 @@ public class SecurityUtil {
    * @param userService             ユーザーサービスへの依存性
    * @param appSiteInfoRepository   アプリケーションサイト情報リポジトリへの依存性
    * @param credentialsMapper       認証情報マッパーへの依存性
-   * @param googleOAuthService      Google OAuthサービスへの依存性
+   * @param googleTokenCache        Googleのアクセストークンのキャッシュへの依存性
    * @since 1.0
    */
   public SecurityUtil(UserService userService,
       AppSiteInfoRepository appSiteInfoRepository, CredentialsMapper credentialsMapper,
-      GoogleOAuthService googleOAuthService) {
+      GoogleTokenCache googleTokenCache) {
     this.userService = userService;
     this.appSiteInfoRepository = appSiteInfoRepository;
     this.credentialsMapper = credentialsMapper;
-    this.googleOAuthService = googleOAuthService;
+    this.googleTokenCache = googleTokenCache;
   }
 
   /**
@@ -78,7 +78,8 @@ public class SecurityUtil {
     String clientId = googleCredentialsDto.getClientId();
     String clientSecret = googleCredentialsDto.getClientSecret();
     String refreshToken = googleCredentialsDto.getRefreshToken();
-    return googleOAuthService.getRefreshAccessToken(clientId, clientSecret, refreshToken);
+    return googleTokenCache.getAccessToken(existingRecord.map(AppSiteInfo::getId).orElse(null),
+        clientId, clientSecret, refreshToken);
   }
 
   /**
@@ -0,0 +1,40 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.controller;
+
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import jp.co.fsz.clounect.googleCalendarPlugin.service.CalendarWatchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CalendarWatchControllerTest {
+  private CalendarWatchService calendarWatchService;
+  private CalendarWatchController calendarWatchController;
+
+  @BeforeEach
+  void setUp() {
+    calendarWatchService = mock(CalendarWatchService.class);
+    calendarWatchController = new CalendarWatchController(calendarWatchService);
+  }
+
+  @Test
+  void acceptsAValidNotification() {
+    assertThat(calendarWatchController.notification("channel-1", "secret-token", "exists", 6L)
+        .getStatusCode()).isEqualTo(HttpStatus.OK);
+
+    verify(calendarWatchService).onNotification("channel-1", "secret-token", "exists", 6L);
+  }
+
+  @Test
+  void returnsNotFoundForATokenMismatch() {
+    doThrow(new NotFoundException("Unknown watch channel channel-1")).when(calendarWatchService)
+        .onNotification("channel-1", "other-token", "exists", 6L);
+
+    assertThat(calendarWatchController.notification("channel-1", "other-token", "exists", 6L)
+        .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+  }
+}
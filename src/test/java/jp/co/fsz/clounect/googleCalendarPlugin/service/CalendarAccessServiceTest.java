@@ -0,0 +1,60 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CalendarAccessServiceTest {
+  private GoogleCalendarService googleCalendarService;
+  private SimpleMeterRegistry meterRegistry;
+  private CalendarAccessService calendarAccessService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    googleCalendarService = mock(GoogleCalendarService.class);
+    when(googleCalendarService.checkCalendarAccess(anyString(), anyList())).thenAnswer(
+        inv -> inv.<List<String>>getArgument(1).stream()
+            .map(email -> new CalendarAccess(email, true, null))
+            .toList());
+    meterRegistry = new SimpleMeterRegistry();
+    calendarAccessService = new CalendarAccessService(googleCalendarService, 2, meterRegistry);
+    ReflectionTestUtils.setField(calendarAccessService, "ttlSeconds", 600L);
+    ReflectionTestUtils.setField(calendarAccessService, "negativeTtlSeconds", 60L);
+  }
+
+  @Test
+  void keepsAtMostMaxEntries() throws IOException {
+    calendarAccessService.validate(1L, () -> "token",
+        List.of("a@example.com", "b@example.com", "c@example.com"));
+
+    assertThat(meterRegistry.get("google.calendar.access.cache.size").gauge().value())
+        .isEqualTo(2.0);
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedEntry() throws IOException {
+    calendarAccessService.validate(1L, () -> "token", List.of("a@example.com"));
+    calendarAccessService.validate(1L, () -> "token", List.of("b@example.com"));
+    calendarAccessService.validate(1L, () -> "token", List.of("a@example.com"));
+    calendarAccessService.validate(1L, () -> "token", List.of("c@example.com"));
+
+    calendarAccessService.validate(1L, () -> "token", List.of("a@example.com"));
+    calendarAccessService.validate(1L, () -> "token", List.of("b@example.com"));
+
+    assertThat(meterRegistry.get("google.calendar.access.cache").tag("result", "hit").counter()
+        .count()).isEqualTo(2.0);
+    assertThat(meterRegistry.get("google.calendar.access.cache").tag("result", "miss").counter()
+        .count()).isEqualTo(4.0);
+  }
+}
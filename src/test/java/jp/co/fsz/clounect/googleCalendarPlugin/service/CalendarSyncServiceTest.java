@@ -0,0 +1,74 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.services.calendar.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.model.AppCalendarSyncState;
+import jp.co.fsz.clounect.core.repository.AppCalendarSyncStateRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarChanges;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarSyncServiceTest {
+  private AppCalendarSyncStateRepository appCalendarSyncStateRepository;
+  private GoogleCalendarService googleCalendarService;
+  private CalendarSyncService calendarSyncService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    appCalendarSyncStateRepository = mock(AppCalendarSyncStateRepository.class);
+    googleCalendarService = mock(GoogleCalendarService.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    doAnswer(inv -> {
+      inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+    calendarSyncService = new CalendarSyncService(appCalendarSyncStateRepository,
+        googleCalendarService, transactionTemplate, new SimpleMeterRegistry());
+
+    when(appCalendarSyncStateRepository.findByAppSiteIdAndCalendarId(1L, "primary"))
+        .thenReturn(Optional.of(AppCalendarSyncState.builder()
+            .appSiteId(1L)
+            .calendarId("primary")
+            .syncToken("token-1")
+            .build()));
+    when(googleCalendarService.listCalendarEventChanges("access", "primary", "token-1"))
+        .thenReturn(new CalendarChanges(List.of(new Event().setId("e1")), "token-2", false));
+  }
+
+  @Test
+  void savesTheNextTokenAfterRecordingChanges() throws IOException {
+    calendarSyncService.sync(1L, "access", "primary", changes -> {
+    });
+
+    ArgumentCaptor<AppCalendarSyncState> saved = ArgumentCaptor.forClass(
+        AppCalendarSyncState.class);
+    verify(appCalendarSyncStateRepository).save(saved.capture());
+    assertThat(saved.getValue().getSyncToken()).isEqualTo("token-2");
+  }
+
+  @Test
+  void keepsTheTokenWhenRecordingFails() {
+    assertThatThrownBy(() -> calendarSyncService.sync(1L, "access", "primary", changes -> {
+      throw new IllegalStateException("app_data insert failed");
+    })).isInstanceOf(IllegalStateException.class);
+
+    verify(appCalendarSyncStateRepository, never()).save(any());
+  }
+}
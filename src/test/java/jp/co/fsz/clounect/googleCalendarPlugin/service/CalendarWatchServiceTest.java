@@ -0,0 +1,194 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.services.calendar.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.dto.AppDataDto;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppCalendarChannel;
+import jp.co.fsz.clounect.core.model.AppCalendarSyncState;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.core.repository.AppCalendarChannelRepository;
+import jp.co.fsz.clounect.core.repository.AppCalendarSyncStateRepository;
+import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.core.service.AppDataService;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarChanges;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarWatchServiceTest {
+  private static final SiteRoute SITE = new SiteRoute(1L, 1L, true, "uuid-1", "id", "secret",
+      "refresh", EventSyncMode.PER_ATTENDEE, SendUpdatesPolicy.NONE);
+
+  private AppCalendarChannelRepository appCalendarChannelRepository;
+  private AppCalendarSyncStateRepository appCalendarSyncStateRepository;
+  private GoogleCalendarService googleCalendarService;
+  private AppDataService appDataService;
+  private SimpleMeterRegistry meterRegistry;
+  private CalendarWatchService calendarWatchService;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    appCalendarChannelRepository = mock(AppCalendarChannelRepository.class);
+    when(appCalendarChannelRepository.findByChannelId("channel-1")).thenReturn(Optional.of(
+        AppCalendarChannel.builder()
+            .id(10L)
+            .appSiteId(1L)
+            .calendarId("primary")
+            .channelId("channel-1")
+            .channelToken("secret-token")
+            .lastMessageNumber(5L)
+            .build()));
+    AppSiteInfoRepository appSiteInfoRepository = mock(AppSiteInfoRepository.class);
+    when(appSiteInfoRepository.findById(1L)).thenReturn(Optional.of(
+        AppSiteInfo.builder().id(1L).webhookUrl("uuid-1").build()));
+    SiteRoutingService siteRoutingService = mock(SiteRoutingService.class);
+    when(siteRoutingService.findByWebhookUrl("uuid-1")).thenReturn(Optional.of(SITE));
+    CheckTypeService checkTypeService = mock(CheckTypeService.class);
+    when(checkTypeService.getAccessToken(SITE)).thenReturn("access");
+
+    appCalendarSyncStateRepository = mock(AppCalendarSyncStateRepository.class);
+    when(appCalendarSyncStateRepository.findByAppSiteIdAndCalendarId(1L, "primary"))
+        .thenReturn(Optional.of(AppCalendarSyncState.builder()
+            .appSiteId(1L)
+            .calendarId("primary")
+            .syncToken("token-1")
+            .build()));
+    googleCalendarService = mock(GoogleCalendarService.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    doAnswer(inv -> {
+      inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+    CalendarSyncService calendarSyncService = new CalendarSyncService(
+        appCalendarSyncStateRepository, googleCalendarService, transactionTemplate,
+        meterRegistry);
+
+    appDataService = mock(AppDataService.class);
+    when(appDataService.getSentEventEtags(eq(1L), anyCollection())).thenReturn(Map.of());
+    calendarWatchService = new CalendarWatchService(appCalendarChannelRepository,
+        appSiteInfoRepository, siteRoutingService, checkTypeService, googleCalendarService,
+        calendarSyncService, appDataService,
+        new WebhookPartitionedExecutor(Runnable::run, 100, meterRegistry), meterRegistry);
+  }
+
+  @Test
+  void rejectsATokenMismatch() throws IOException {
+    assertThatThrownBy(() -> calendarWatchService.onNotification("channel-1", "other-token",
+        "exists", 6L)).isInstanceOf(NotFoundException.class);
+
+    verify(googleCalendarService, never()).listCalendarEventChanges(anyString(), anyString(),
+        any());
+  }
+
+  @Test
+  void ignoresTheSyncNotification() throws IOException {
+    calendarWatchService.onNotification("channel-1", "secret-token", "sync", 1L);
+
+    verify(googleCalendarService, never()).listCalendarEventChanges(anyString(), anyString(),
+        any());
+  }
+
+  @Test
+  void ignoresAnAlreadyProcessedMessageNumber() throws IOException {
+    calendarWatchService.onNotification("channel-1", "secret-token", "exists", 5L);
+
+    verify(googleCalendarService, never()).listCalendarEventChanges(anyString(), anyString(),
+        any());
+  }
+
+  @Test
+  void recordsTheDeltaWithTheTokenAndMessageNumber() throws IOException {
+    when(googleCalendarService.listCalendarEventChanges("access", "primary", "token-1"))
+        .thenReturn(new CalendarChanges(List.of(
+            new Event().setId("e1").setEtag("\"1\"").setStatus("confirmed"),
+            new Event().setId("e2").setStatus("cancelled")), "token-2", false));
+
+    calendarWatchService.onNotification("channel-1", "secret-token", "exists", 6L);
+
+    ArgumentCaptor<AppDataDto> recorded = ArgumentCaptor.forClass(AppDataDto.class);
+    verify(appDataService).saveAppData(recorded.capture());
+    assertThat(recorded.getValue().getCycle()).isEqualTo(CalendarWatchService.CYCLE);
+    assertThat(recorded.getValue().getReceivedPayload())
+        .contains("GOOGLE_EVENT_CHANGED", "GOOGLE_EVENT_DELETED");
+    verify(appCalendarChannelRepository).advanceMessageNumber(10L, 6L);
+    ArgumentCaptor<AppCalendarSyncState> saved = ArgumentCaptor.forClass(
+        AppCalendarSyncState.class);
+    verify(appCalendarSyncStateRepository).save(saved.capture());
+    assertThat(saved.getValue().getSyncToken()).isEqualTo("token-2");
+  }
+
+  @Test
+  void skipsChangesMadeByOurOwnWrites() throws IOException {
+    String updated = GoogleCalendarService.eventId(42L, "a@example.com");
+    String deleted = GoogleCalendarService.eventId(43L, "a@example.com");
+    when(appDataService.getSentEventEtags(eq(1L), anyCollection()))
+        .thenReturn(Map.of(updated, "\"7\""));
+    when(googleCalendarService.listCalendarEventChanges("access", "primary", "token-1"))
+        .thenReturn(new CalendarChanges(List.of(
+            new Event().setId(updated).setEtag("\"7\"").setStatus("confirmed"),
+            new Event().setId(deleted).setStatus("cancelled")), "token-2", false));
+
+    calendarWatchService.onNotification("channel-1", "secret-token", "exists", 6L);
+
+    verify(appDataService, never()).saveAppData(any());
+    verify(appCalendarChannelRepository).advanceMessageNumber(10L, 6L);
+    verify(appCalendarSyncStateRepository).save(any());
+    assertThat(meterRegistry.get("google.calendar.watch.own-writes").counter().count())
+        .isEqualTo(2.0);
+  }
+
+  @Test
+  void recordsAnEditMadeInGoogleToOurEvent() throws IOException {
+    String id = GoogleCalendarService.eventId(42L, "a@example.com");
+    when(appDataService.getSentEventEtags(eq(1L), anyCollection()))
+        .thenReturn(Map.of(id, "\"7\""));
+    when(googleCalendarService.listCalendarEventChanges("access", "primary", "token-1"))
+        .thenReturn(new CalendarChanges(List.of(
+            new Event().setId(id).setEtag("\"8\"").setStatus("confirmed")), "token-2", false));
+
+    calendarWatchService.onNotification("channel-1", "secret-token", "exists", 6L);
+
+    verify(appDataService).saveAppData(any());
+  }
+
+  @Test
+  void failedPullAdvancesNeitherTheTokenNorTheMessageNumber() throws IOException {
+    when(googleCalendarService.listCalendarEventChanges("access", "primary", "token-1"))
+        .thenThrow(new IOException("connection reset"));
+
+    calendarWatchService.onNotification("channel-1", "secret-token", "exists", 6L);
+
+    verify(appCalendarChannelRepository, never()).advanceMessageNumber(anyLong(), anyLong());
+    verify(appCalendarSyncStateRepository, never()).save(any());
+    verify(appDataService, never()).saveAppData(any());
+    assertThat(meterRegistry.get("google.calendar.watch.pull.failed").counter().count())
+        .isEqualTo(1.0);
+  }
+}
@@ -0,0 +1,163 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.CalendarBatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GoogleCalendarServiceTest {
+  private GoogleCalendarClientFactory calendarClientFactory;
+  private GoogleCalendarService googleCalendarService;
+
+  @BeforeEach
+  void setUp() {
+    calendarClientFactory = mock(GoogleCalendarClientFactory.class);
+    when(calendarClientFactory.calendar()).thenReturn(new Calendar.Builder(
+        new MockHttpTransport(), GsonFactory.getDefaultInstance(), null)
+        .setApplicationName("test").build());
+    googleCalendarService = new GoogleCalendarService(calendarClientFactory,
+        mock(GoogleRecordService.class));
+  }
+
+  @Test
+  void derivesTheSameEventIdForRetries() {
+    assertThat(GoogleCalendarService.eventId(42L, "a@example.com"))
+        .isEqualTo(GoogleCalendarService.eventId(42L, "a@example.com"));
+  }
+
+  @Test
+  void derivesDistinctEventIdsPerRowAndAttendee() {
+    String id = GoogleCalendarService.eventId(42L, "a@example.com");
+
+    assertThat(GoogleCalendarService.eventId(42L, "b@example.com")).isNotEqualTo(id);
+    assertThat(GoogleCalendarService.eventId(43L, "a@example.com")).isNotEqualTo(id);
+    assertThat(GoogleCalendarService.eventId(42L, "shared")).isNotEqualTo(id);
+  }
+
+  @Test
+  void derivesEventIdsGoogleAccepts() {
+    assertThat(GoogleCalendarService.eventId(42L, "a@example.com")).matches("[0-9a-v]{5,1024}");
+  }
+
+  @Test
+  void returnsTheExistingEventWhenTheInsertConflicts() throws IOException {
+    String id = GoogleCalendarService.eventId(42L, "a@example.com");
+    Event existing = new Event().setId(id).setStatus("confirmed").setEtag("\"1\"");
+    when(calendarClientFactory.<Event>executeBatch(eq("insert"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.failure(error(409))));
+    when(calendarClientFactory.<Event>executeBatch(eq("get"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.success(existing)));
+
+    List<CalendarBatchResult<Event>> results = googleCalendarService.createCalendarEvents(
+        "token", 42L, new Event().setSummary("meeting"), List.of(attendee("a@example.com")),
+        SendUpdatesPolicy.ALL);
+
+    assertThat(results).extracting(CalendarBatchResult::value).containsExactly(existing);
+    verify(calendarClientFactory, never()).executeBatch(eq("restore"), eq("token"), anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void restoresACancelledEventWhenTheRowIsReused() throws IOException {
+    String id = GoogleCalendarService.eventId(42L, "a@example.com");
+    Event restored = new Event().setId(id).setStatus("confirmed").setEtag("\"3\"");
+    when(calendarClientFactory.<Event>executeBatch(eq("insert"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.failure(error(409))));
+    when(calendarClientFactory.<Event>executeBatch(eq("get"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.success(
+            new Event().setId(id).setStatus("cancelled").setEtag("\"2\""))));
+    when(calendarClientFactory.<Event>executeBatch(eq("restore"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.success(restored)));
+
+    List<CalendarBatchResult<Event>> results = googleCalendarService.createCalendarEvents(
+        "token", 42L, new Event().setSummary("meeting"), List.of(attendee("a@example.com")),
+        SendUpdatesPolicy.ALL);
+
+    assertThat(results).extracting(CalendarBatchResult::value).containsExactly(restored);
+    ArgumentCaptor<List<Calendar.Events.Patch>> restores = ArgumentCaptor.forClass(List.class);
+    verify(calendarClientFactory).executeBatch(eq("restore"), eq("token"), restores.capture());
+    Calendar.Events.Patch restore = restores.getValue().get(0);
+    Event body = (Event) restore.getJsonContent();
+    assertThat(restore.getEventId()).isEqualTo(id);
+    assertThat(body.getStatus()).isEqualTo("confirmed");
+    assertThat(body.getSummary()).isEqualTo("meeting");
+    assertThat(restore.getRequestHeaders().getIfMatch()).isEqualTo("\"2\"");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void repatchesWithTheCurrentEtagAfterAPreconditionFailure() throws IOException {
+    Event updated = new Event().setId("e2").setEtag("\"4\"");
+    when(calendarClientFactory.<Event>executeBatch(eq("patch"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.success(new Event().setId("e1")),
+            CalendarBatchResult.failure(error(412))))
+        .thenReturn(List.of(CalendarBatchResult.success(updated)));
+    when(calendarClientFactory.<Event>executeBatch(eq("get"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.success(
+            new Event().setId("e2").setEtag("\"3\""))));
+
+    List<CalendarBatchResult<Event>> results = googleCalendarService.updateCalendarEvents(
+        "token", "primary", List.of("e1", "e2"), Map.of("e1", "\"1\"", "e2", "\"2\""),
+        new Event().setSummary("moved"), SendUpdatesPolicy.NONE);
+
+    assertThat(results.get(1).value()).isSameAs(updated);
+    ArgumentCaptor<List<Calendar.Events.Patch>> patches = ArgumentCaptor.forClass(List.class);
+    verify(calendarClientFactory, times(2)).executeBatch(eq("patch"), eq("token"),
+        patches.capture());
+    assertThat(patches.getAllValues().get(0)).extracting(
+        patch -> patch.getRequestHeaders().getIfMatch()).containsExactly("\"1\"", "\"2\"");
+    Calendar.Events.Patch retry = patches.getAllValues().get(1).get(0);
+    assertThat(patches.getAllValues().get(1)).hasSize(1);
+    assertThat(retry.getEventId()).isEqualTo("e2");
+    assertThat(retry.getRequestHeaders().getIfMatch()).isEqualTo("\"3\"");
+    assertThat(((Event) retry.getJsonContent()).getSummary()).isEqualTo("moved");
+  }
+
+  @Test
+  void returnsTheGetErrorWhenTheRefetchFails() throws IOException {
+    when(calendarClientFactory.<Event>executeBatch(eq("patch"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.failure(error(412))));
+    when(calendarClientFactory.<Event>executeBatch(eq("get"), eq("token"), anyList()))
+        .thenReturn(List.of(CalendarBatchResult.failure(error(404))));
+
+    List<CalendarBatchResult<Event>> results = googleCalendarService.updateCalendarEvents(
+        "token", "primary", List.of("e1"), Map.of("e1", "\"1\""),
+        new Event().setSummary("moved"), SendUpdatesPolicy.NONE);
+
+    assertThat(results).hasSize(1);
+    assertThat(results.get(0).succeeded()).isFalse();
+    assertThat(results.get(0).statusCode()).isEqualTo(404);
+    verify(calendarClientFactory).executeBatch(eq("patch"), eq("token"), anyList());
+  }
+
+  private static EventAttendee attendee(String email) {
+    return new EventAttendee().setEmail(email);
+  }
+
+  private static GoogleJsonError error(int code) {
+    GoogleJsonError error = new GoogleJsonError();
+    error.setCode(code);
+    error.setMessage("error " + code);
+    return error;
+  }
+}
@@ -0,0 +1,92 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.dto.GoogleQuota;
+import jp.co.fsz.clounect.core.mapper.CredentialsMapper;
+import jp.co.fsz.clounect.core.repository.AppSiteInfoRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.GoogleTokenKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.RateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GoogleRateLimiterTest {
+  private AppSiteInfoRepository appSiteInfoRepository;
+  private CredentialsMapper credentialsMapper;
+  private SimpleMeterRegistry meterRegistry;
+  private GoogleRateLimiter rateLimiter;
+
+  @BeforeEach
+  void setUp() {
+    appSiteInfoRepository = mock(AppSiteInfoRepository.class);
+    credentialsMapper = mock(CredentialsMapper.class);
+    when(appSiteInfoRepository.findById(1L)).thenReturn(Optional.empty());
+    when(credentialsMapper.mapToGoogleQuota(any())).thenReturn(GoogleQuota.UNSPECIFIED);
+    meterRegistry = new SimpleMeterRegistry();
+    rateLimiter = new GoogleRateLimiter(appSiteInfoRepository, credentialsMapper, meterRegistry);
+    ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+    ReflectionTestUtils.setField(rateLimiter, "projectPerSecond", 10.0);
+    ReflectionTestUtils.setField(rateLimiter, "projectBurst", 1.0);
+    ReflectionTestUtils.setField(rateLimiter, "calendarPerSecond", 100.0);
+    ReflectionTestUtils.setField(rateLimiter, "calendarBurst", 100.0);
+    ReflectionTestUtils.setField(rateLimiter, "maxWaitMs", 1000L);
+    ReflectionTestUtils.setField(rateLimiter, "configTtlSeconds", 300L);
+    rateLimiter.bind("token", new GoogleTokenKey(1L, "client"), Long.MAX_VALUE);
+  }
+
+  @Test
+  void waitsUntilTheBucketRefills() {
+    rateLimiter.acquire("token", Map.of("primary", 1));
+
+    long started = System.nanoTime();
+    rateLimiter.acquire("token", Map.of("primary", 1));
+    long waitedMs = (System.nanoTime() - started) / 1_000_000;
+
+    assertThat(waitedMs).isGreaterThanOrEqualTo(80);
+  }
+
+  @Test
+  void rejectsWhenTheWaitExceedsTheLimit() {
+    ReflectionTestUtils.setField(rateLimiter, "maxWaitMs", 10L);
+    rateLimiter.acquire("token", Map.of("primary", 1));
+
+    assertThatThrownBy(() -> rateLimiter.acquire("token", Map.of("primary", 1)))
+        .isInstanceOf(RateLimitExceededException.class);
+    assertThat(meterRegistry.get("google.calendar.rate-limit.rejected").tag("scope", "project")
+        .counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  void rejectsPerCalendarAndRefundsTheProjectBucket() {
+    ReflectionTestUtils.setField(rateLimiter, "projectBurst", 10.0);
+    ReflectionTestUtils.setField(rateLimiter, "calendarPerSecond", 1.0);
+    ReflectionTestUtils.setField(rateLimiter, "calendarBurst", 1.0);
+    ReflectionTestUtils.setField(rateLimiter, "maxWaitMs", 10L);
+    rateLimiter.acquire("token", Map.of("a@example.com", 1));
+
+    assertThatThrownBy(() -> rateLimiter.acquire("token", Map.of("a@example.com", 1)))
+        .isInstanceOf(RateLimitExceededException.class);
+    rateLimiter.acquire("token", Map.of("b@example.com", 1));
+  }
+
+  @Test
+  void loadsTheSiteQuotaOncePerTtl() {
+    ReflectionTestUtils.setField(rateLimiter, "projectBurst", 10.0);
+
+    rateLimiter.acquire("token", Map.of("primary", 1));
+    rateLimiter.acquire("token", Map.of("primary", 1));
+
+    verify(appSiteInfoRepository, times(1)).findById(1L);
+  }
+}
@@ -0,0 +1,121 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GoogleRetryPolicyTest {
+  private SimpleMeterRegistry meterRegistry;
+  private GoogleRetryPolicy retryPolicy;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    retryPolicy = new GoogleRetryPolicy(meterRegistry);
+    ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 3);
+    ReflectionTestUtils.setField(retryPolicy, "baseDelayMs", 1L);
+    ReflectionTestUtils.setField(retryPolicy, "maxDelayMs", 2L);
+    ReflectionTestUtils.setField(retryPolicy, "deadlineMs", 10_000L);
+  }
+
+  @Test
+  void classifiesRateLimitsAsRetryable() {
+    assertThat(retryPolicy.classify(error(429, null))).isEqualTo("rate_limit");
+    assertThat(retryPolicy.classify(error(403, "rateLimitExceeded"))).isEqualTo("rate_limit");
+    assertThat(retryPolicy.classify(error(403, "userRateLimitExceeded"))).isEqualTo("rate_limit");
+  }
+
+  @Test
+  void classifiesServerErrorsAndTimeoutsAsRetryable() {
+    assertThat(retryPolicy.classify(error(503, null))).isEqualTo("server");
+    assertThat(retryPolicy.classify(error(408, null))).isEqualTo("timeout");
+    assertThat(retryPolicy.classify(new SocketTimeoutException("read timed out")))
+        .isEqualTo("timeout");
+    assertThat(retryPolicy.classify(new IOException("connection reset"))).isEqualTo("network");
+  }
+
+  @Test
+  void doesNotRetryClientErrors() {
+    assertThat(retryPolicy.classify(error(403, "forbidden"))).isNull();
+    assertThat(retryPolicy.classify(error(404, null))).isNull();
+    assertThat(retryPolicy.classify(error(409, "duplicate"))).isNull();
+    assertThat(retryPolicy.classify(error(412, null))).isNull();
+    assertThat(retryPolicy.classify(new InterruptedIOException())).isNull();
+  }
+
+  @Test
+  void parsesRetryAfterSeconds() {
+    assertThat(retryPolicy.retryAfterMillis("3")).isEqualTo(3000);
+    assertThat(retryPolicy.retryAfterMillis((String) null)).isEqualTo(-1);
+    assertThat(retryPolicy.retryAfterMillis("soon")).isEqualTo(-1);
+  }
+
+  @Test
+  void retriesTransientErrorsUntilSuccess() throws IOException {
+    AtomicInteger calls = new AtomicInteger();
+
+    String result = retryPolicy.execute("insert", () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw httpError(503);
+      }
+      return "ok";
+    });
+
+    assertThat(result).isEqualTo("ok");
+    assertThat(calls).hasValue(2);
+    assertThat(meterRegistry.get("google.api.retries").tag("class", "server").counter().count())
+        .isEqualTo(1.0);
+  }
+
+  @Test
+  void doesNotRetryPermanentErrors() {
+    AtomicInteger calls = new AtomicInteger();
+
+    assertThatThrownBy(() -> retryPolicy.execute("insert", () -> {
+      calls.incrementAndGet();
+      throw httpError(400);
+    })).isInstanceOf(HttpResponseException.class);
+    assertThat(calls).hasValue(1);
+  }
+
+  @Test
+  void givesUpAfterMaxAttempts() {
+    AtomicInteger calls = new AtomicInteger();
+
+    assertThatThrownBy(() -> retryPolicy.execute("insert", () -> {
+      calls.incrementAndGet();
+      throw httpError(429);
+    })).isInstanceOf(HttpResponseException.class);
+    assertThat(calls).hasValue(3);
+    assertThat(meterRegistry.get("google.api.retry.exhausted").tag("class", "rate_limit")
+        .counter().count()).isEqualTo(1.0);
+  }
+
+  private static GoogleJsonError error(int code, String reason) {
+    GoogleJsonError error = new GoogleJsonError();
+    error.setCode(code);
+    if (reason != null) {
+      GoogleJsonError.ErrorInfo info = new GoogleJsonError.ErrorInfo();
+      info.setReason(reason);
+      error.setErrors(List.of(info));
+    }
+    return error;
+  }
+
+  private static HttpResponseException httpError(int statusCode) {
+    return new HttpResponseException.Builder(statusCode, null, new HttpHeaders()).build();
+  }
+}
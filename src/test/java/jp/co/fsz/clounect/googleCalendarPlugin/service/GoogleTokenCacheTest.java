@@ -0,0 +1,127 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.OAuthToken;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TokenGenerationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GoogleTokenCacheTest {
+  private GoogleOAuthService googleOAuthService;
+  private GoogleRateLimiter googleRateLimiter;
+  private GoogleTokenCache tokenCache;
+
+  @BeforeEach
+  void setUp() {
+    googleOAuthService = mock(GoogleOAuthService.class);
+    googleRateLimiter = mock(GoogleRateLimiter.class);
+    tokenCache = new GoogleTokenCache(googleOAuthService, googleRateLimiter,
+        new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(tokenCache, "expiryMarginSeconds", 300L);
+    ReflectionTestUtils.setField(tokenCache, "failureBackoffMs", 60_000L);
+    ReflectionTestUtils.setField(tokenCache, "refreshAheadSeconds", 600L);
+    ReflectionTestUtils.setField(tokenCache, "jitterSeconds", 0L);
+  }
+
+  @Test
+  void refreshesOnceForConcurrentCallers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh"))
+        .thenAnswer(inv -> {
+          release.await(5, TimeUnit.SECONDS);
+          return token("access-1");
+        });
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      List<CompletableFuture<OAuthToken>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(CompletableFuture.supplyAsync(
+            () -> tokenCache.getAccessToken(1L, "client", "secret", "refresh"), callers));
+      }
+      Thread.sleep(100);
+      release.countDown();
+
+      for (CompletableFuture<OAuthToken> result : results) {
+        assertThat(result.get(5, TimeUnit.SECONDS).getAccessToken()).isEqualTo("access-1");
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    verify(googleOAuthService, times(1)).getRefreshAccessToken("client", "secret", "refresh");
+    verify(googleRateLimiter).bind(eq("access-1"), any(), anyLong());
+  }
+
+  @Test
+  void reusesTheCachedTokenUntilItNearsExpiry() {
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh"))
+        .thenReturn(token("access-1"));
+
+    tokenCache.getAccessToken(1L, "client", "secret", "refresh");
+    tokenCache.getAccessToken(1L, "client", "secret", "refresh");
+
+    verify(googleOAuthService, times(1)).getRefreshAccessToken("client", "secret", "refresh");
+  }
+
+  @Test
+  void refetchesWhenTheRefreshTokenChanges() {
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh"))
+        .thenReturn(token("access-1"));
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh-2"))
+        .thenReturn(token("access-2"));
+
+    tokenCache.getAccessToken(1L, "client", "secret", "refresh");
+
+    assertThat(tokenCache.getAccessToken(1L, "client", "secret", "refresh-2").getAccessToken())
+        .isEqualTo("access-2");
+  }
+
+  @Test
+  void sharesAFailureDuringTheBackoff() {
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh"))
+        .thenThrow(new TokenGenerationException("invalid_grant"));
+
+    assertThatThrownBy(() -> tokenCache.getAccessToken(1L, "client", "secret", "refresh"))
+        .isInstanceOf(TokenGenerationException.class);
+    assertThatThrownBy(() -> tokenCache.getAccessToken(1L, "client", "secret", "refresh"))
+        .isInstanceOf(TokenGenerationException.class);
+
+    verify(googleOAuthService, times(1)).getRefreshAccessToken("client", "secret", "refresh");
+  }
+
+  @Test
+  void retriesAfterTheBackoff() {
+    ReflectionTestUtils.setField(tokenCache, "failureBackoffMs", 0L);
+    when(googleOAuthService.getRefreshAccessToken("client", "secret", "refresh"))
+        .thenThrow(new TokenGenerationException("temporarily_unavailable"))
+        .thenReturn(token("access-1"));
+
+    assertThatThrownBy(() -> tokenCache.getAccessToken(1L, "client", "secret", "refresh"))
+        .isInstanceOf(TokenGenerationException.class);
+
+    assertThat(tokenCache.getAccessToken(1L, "client", "secret", "refresh").getAccessToken())
+        .isEqualTo("access-1");
+  }
+
+  private static OAuthToken token(String accessToken) {
+    return new OAuthToken(accessToken, null, "Bearer", 3600);
+  }
+}
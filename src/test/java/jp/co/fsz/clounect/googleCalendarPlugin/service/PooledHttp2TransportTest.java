@@ -0,0 +1,129 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PooledHttp2TransportTest {
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private SimpleMeterRegistry meterRegistry;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    meterRegistry = new SimpleMeterRegistry();
+    serverExecutor = Executors.newFixedThreadPool(4);
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(serverExecutor);
+    server.createContext("/echo", exchange -> {
+      byte[] body = exchange.getRequestBody().readAllBytes();
+      exchange.getResponseHeaders().add("X-Echo", "yes");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    });
+    server.createContext("/slow", exchange -> {
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(300);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      active.decrementAndGet();
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    });
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Test
+  void sendsTheBodyAndReadsTheResponse() throws Exception {
+    PooledHttp2Transport transport = transport(4, 5000);
+
+    HttpResponse response = transport.createRequestFactory()
+        .buildPostRequest(url("/echo"), ByteArrayContent.fromString("text/plain", "ping"))
+        .execute();
+
+    assertThat(response.getStatusCode()).isEqualTo(200);
+    assertThat(response.getHeaders().getFirstHeaderStringValue("X-Echo")).isEqualTo("yes");
+    assertThat(new String(response.getContent().readAllBytes(), StandardCharsets.UTF_8))
+        .isEqualTo("ping");
+    assertThat(meterRegistry.get("google.http.requests").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  void mapsTheReadTimeoutToSocketTimeout() throws Exception {
+    PooledHttp2Transport transport = transport(4, 5000);
+    HttpRequest request = transport.createRequestFactory().buildGetRequest(url("/slow"))
+        .setReadTimeout(50);
+
+    assertThatThrownBy(request::execute).isInstanceOf(SocketTimeoutException.class);
+  }
+
+  @Test
+  void enforcesTheTotalDeadline() throws Exception {
+    PooledHttp2Transport transport = transport(4, 100);
+    HttpRequest request = transport.createRequestFactory().buildGetRequest(url("/slow"))
+        .setReadTimeout(5000);
+
+    assertThatThrownBy(request::execute).isInstanceOf(SocketTimeoutException.class)
+        .hasMessageContaining("Total deadline");
+  }
+
+  @Test
+  void limitsConcurrentRequestsPerRoute() throws Exception {
+    PooledHttp2Transport transport = transport(1, 5000);
+
+    CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> get(transport));
+    CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> get(transport));
+
+    assertThat(first.get()).isEqualTo(204);
+    assertThat(second.get()).isEqualTo(204);
+    assertThat(maxActive).hasValue(1);
+  }
+
+  private PooledHttp2Transport transport(int maxPerRoute, long totalTimeoutMs) throws Exception {
+    return new PooledHttp2Transport(SSLContext.getDefault(), maxPerRoute, 1000, 5000,
+        totalTimeoutMs, meterRegistry);
+  }
+
+  private GenericUrl url(String path) {
+    return new GenericUrl("http://127.0.0.1:" + server.getAddress().getPort() + path);
+  }
+
+  private int get(PooledHttp2Transport transport) {
+    try {
+      return transport.createRequestFactory().buildGetRequest(url("/slow")).execute()
+          .getStatusCode();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
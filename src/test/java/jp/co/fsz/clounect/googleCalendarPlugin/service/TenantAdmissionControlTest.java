@@ -0,0 +1,72 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TenantAdmissionControlTest {
+  private static final SiteRoute SITE = new SiteRoute(1L, 1L, true, "uuid-1", null, null, null,
+      EventSyncMode.PER_ATTENDEE, SendUpdatesPolicy.NONE);
+
+  private AppWebhookQueueRepository appWebhookQueueRepository;
+  private SimpleMeterRegistry meterRegistry;
+  private TenantAdmissionControl admissionControl;
+
+  @BeforeEach
+  void setUp() {
+    appWebhookQueueRepository = mock(AppWebhookQueueRepository.class);
+    meterRegistry = new SimpleMeterRegistry();
+    admissionControl = new TenantAdmissionControl(appWebhookQueueRepository, meterRegistry);
+    ReflectionTestUtils.setField(admissionControl, "maxQueued", 10L);
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrency", 2);
+    ReflectionTestUtils.setField(admissionControl, "maxRetryAfterSeconds", 300L);
+    ReflectionTestUtils.setField(admissionControl, "idleSeconds", 0L);
+  }
+
+  @Test
+  void rejectsWhenQueueIsFull() {
+    when(appWebhookQueueRepository.countByWebhookUrlAndStatusIn(eq("uuid-1"), anyCollection()))
+        .thenReturn(10L);
+
+    assertThatThrownBy(() -> admissionControl.admit(SITE, 1))
+        .isInstanceOf(TenantThrottledException.class);
+    assertThat(meterRegistry.get("webhook.tenant.rejected").tag("site", "1").counter().count())
+        .isEqualTo(1.0);
+  }
+
+  @Test
+  void limitsConcurrencyPerSite() {
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+    assertThat(admissionControl.tryAcquire(SITE)).isFalse();
+
+    admissionControl.release(SITE, 10);
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+  }
+
+  @Test
+  void evictsIdleSitesButKeepsBusyOnes() {
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+    admissionControl.evictIdle();
+    assertThat(meterRegistry.find("webhook.tenant.inflight").tag("site", "1").gauge())
+        .isNotNull();
+
+    admissionControl.release(SITE, 10);
+    admissionControl.evictIdle();
+    assertThat(meterRegistry.find("webhook.tenant.inflight").tag("site", "1").gauge()).isNull();
+    assertThat(meterRegistry.find("webhook.tenant.rejected").tag("site", "1").counter()).isNull();
+  }
+}
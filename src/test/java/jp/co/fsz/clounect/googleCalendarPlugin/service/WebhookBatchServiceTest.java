@@ -0,0 +1,99 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppSiteInfo;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookBatchResult;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.TenantThrottledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookBatchServiceTest {
+  private static final SiteRoute SITE = new SiteRoute(1L, 1L, true, "uuid-1", "id", "secret",
+      "refresh", EventSyncMode.PER_ATTENDEE, SendUpdatesPolicy.NONE);
+  private static final byte[] BODY = ("[{\"recordId\":1,\"type\":\"ADD_RECORD\"},"
+      + "{\"recordId\":2,\"type\":\"ADD_RECORD\"}]").getBytes(StandardCharsets.UTF_8);
+
+  private AppWebhookQueueRepository appWebhookQueueRepository;
+  private CheckTypeService checkTypeService;
+  private TenantAdmissionControl admissionControl;
+  private WebhookBatchService service;
+
+  @BeforeEach
+  void setUp() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    appWebhookQueueRepository = mock(AppWebhookQueueRepository.class);
+    SiteRoutingService siteRoutingService = mock(SiteRoutingService.class);
+    when(siteRoutingService.findByWebhookUrl("uuid-1")).thenReturn(Optional.of(SITE));
+    checkTypeService = mock(CheckTypeService.class);
+    when(checkTypeService.getAccessToken(SITE)).thenReturn("token");
+    WebhookDedupStore webhookDedupStore = mock(WebhookDedupStore.class);
+    when(webhookDedupStore.findOrRegister(any(), any())).thenReturn(Optional.empty());
+
+    admissionControl = new TenantAdmissionControl(appWebhookQueueRepository, meterRegistry);
+    ReflectionTestUtils.setField(admissionControl, "maxQueued", 10L);
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrency", 1);
+    ReflectionTestUtils.setField(admissionControl, "maxRetryAfterSeconds", 300L);
+
+    WebhookPartitionedExecutor partitionedExecutor =
+        new WebhookPartitionedExecutor(Runnable::run, 100, meterRegistry);
+    service = new WebhookBatchService(siteRoutingService, checkTypeService, partitionedExecutor,
+        webhookDedupStore, admissionControl, new ObjectMapper(), meterRegistry);
+    ReflectionTestUtils.setField(service, "parallelism", 4);
+    ReflectionTestUtils.setField(service, "maxRecords", 500);
+    ReflectionTestUtils.setField(service, "slotWaitMs", 0L);
+  }
+
+  @Test
+  void batchSizeCountsTowardsTheQueueLimit() {
+    when(appWebhookQueueRepository.countByWebhookUrlAndStatusIn(eq("uuid-1"), anyCollection()))
+        .thenReturn(9L);
+
+    assertThatThrownBy(() -> service.process("uuid-1", BODY))
+        .isInstanceOf(TenantThrottledException.class);
+  }
+
+  @Test
+  void recordsWaitForTheTenantConcurrencyCap() {
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+
+    List<WebhookBatchResult> results = service.process("uuid-1", BODY);
+
+    assertThat(results).extracting(WebhookBatchResult::status)
+        .containsExactly("THROTTLED", "THROTTLED");
+    verify(checkTypeService, never()).getPlayLoad(any(WebhookPayload.class),
+        any(AppSiteInfo.class), anyString(), any(UUID.class));
+  }
+
+  @Test
+  void recordsReleaseTheirSlotWhenDone() {
+    List<WebhookBatchResult> results = service.process("uuid-1", BODY);
+
+    assertThat(results).extracting(WebhookBatchResult::status)
+        .containsExactly("SUCCESS", "SUCCESS");
+    assertThat(admissionControl.tryAcquire(SITE)).isTrue();
+  }
+}
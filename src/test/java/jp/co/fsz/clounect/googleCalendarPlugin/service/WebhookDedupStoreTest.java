@@ -0,0 +1,127 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.model.AppWebhookDedup;
+import jp.co.fsz.clounect.core.repository.AppWebhookDedupRepository;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookDedupKey;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WebhookDedupStoreTest {
+  private final Map<String, AppWebhookDedup> rows = new HashMap<>();
+  private AppWebhookDedupRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    repository = mock(AppWebhookDedupRepository.class);
+    when(repository.findByDedupKey(anyString()))
+        .thenAnswer(inv -> Optional.ofNullable(rows.get(inv.<String>getArgument(0))));
+    when(repository.save(any(AppWebhookDedup.class))).thenAnswer(inv -> {
+      AppWebhookDedup row = inv.getArgument(0);
+      rows.put(row.getDedupKey(), row);
+      return row;
+    });
+    when(repository.deleteByTransactionId(any(UUID.class))).thenAnswer(inv -> {
+      UUID transactionId = inv.getArgument(0);
+      return rows.values().removeIf(row -> row.getTransactionId().equals(transactionId)) ? 1 : 0;
+    });
+  }
+
+  private WebhookDedupStore store(long ttlSeconds) {
+    return new WebhookDedupStore(repository, ttlSeconds, 100, "deliveryId",
+        new SimpleMeterRegistry());
+  }
+
+  @Test
+  void redeliveryOfTheSamePayloadIsADuplicate() {
+    WebhookDedupStore store = store(600);
+    UUID first = UUID.randomUUID();
+
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), first)).isEmpty();
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .contains(first);
+  }
+
+  @Test
+  void duplicateIsFoundInTheDatabaseWhenTheMemoryCacheIsCold() {
+    UUID first = UUID.randomUUID();
+    assertThat(store(600).findOrRegister(store(600).keyOf("uuid", update("A")), first)).isEmpty();
+
+    WebhookDedupStore otherInstance = store(600);
+    assertThat(otherInstance.findOrRegister(otherInstance.keyOf("uuid", update("A")),
+        UUID.randomUUID())).contains(first);
+  }
+
+  @Test
+  void editThatReturnsToAnEarlierValueIsNotADuplicate() {
+    WebhookDedupStore store = store(600);
+
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .isEmpty();
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("B")), UUID.randomUUID()))
+        .isEmpty();
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .isEmpty();
+  }
+
+  @Test
+  void expiredKeysAreNotDuplicates() {
+    WebhookDedupStore store = store(0);
+
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .isEmpty();
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .isEmpty();
+  }
+
+  @Test
+  void forgottenKeysAcceptTheRedelivery() {
+    WebhookDedupStore store = store(600);
+    UUID first = UUID.randomUUID();
+    store.findOrRegister(store.keyOf("uuid", update("A")), first);
+
+    store.forget(first);
+
+    assertThat(store.findOrRegister(store.keyOf("uuid", update("A")), UUID.randomUUID()))
+        .isEmpty();
+  }
+
+  @Test
+  void deliveryIdScopesTheKeyToOneDelivery() {
+    WebhookDedupStore store = store(600);
+    WebhookDedupKey first = store.keyOf("uuid", delivery("A", "d-1"));
+    WebhookDedupKey second = store.keyOf("uuid", delivery("A", "d-2"));
+
+    assertThat(first.value()).isNotEqualTo(second.value());
+    UUID transactionId = UUID.randomUUID();
+    assertThat(store.findOrRegister(first, transactionId)).isEmpty();
+    assertThat(store.findOrRegister(second, UUID.randomUUID())).isEmpty();
+    assertThat(store.findOrRegister(store.keyOf("uuid", delivery("A", "d-1")),
+        UUID.randomUUID())).contains(transactionId);
+  }
+
+  private static WebhookPayload update(String subject) {
+    String raw = "{\"recordId\":1,\"type\":\"UPDATE_RECORD\",\"subject\":\"" + subject + "\"}";
+    return new WebhookPayload(raw,
+        Map.of("recordId", 1, "type", "UPDATE_RECORD", "subject", subject));
+  }
+
+  private static WebhookPayload delivery(String subject, String deliveryId) {
+    String raw = "{\"recordId\":1,\"type\":\"UPDATE_RECORD\",\"subject\":\"" + subject
+        + "\",\"deliveryId\":\"" + deliveryId + "\"}";
+    return new WebhookPayload(raw, Map.of("recordId", 1, "type", "UPDATE_RECORD",
+        "subject", subject, "deliveryId", deliveryId));
+  }
+}
@@ -0,0 +1,45 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.exception.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class WebhookIntakeServiceTest {
+  private AppWebhookQueueRepository appWebhookQueueRepository;
+  private SiteRoutingService siteRoutingService;
+  private WebhookDedupStore webhookDedupStore;
+  private TenantAdmissionControl tenantAdmissionControl;
+  private WebhookIntakeService service;
+
+  @BeforeEach
+  void setUp() {
+    appWebhookQueueRepository = mock(AppWebhookQueueRepository.class);
+    siteRoutingService = mock(SiteRoutingService.class);
+    webhookDedupStore = mock(WebhookDedupStore.class);
+    tenantAdmissionControl = mock(TenantAdmissionControl.class);
+    service = new WebhookIntakeService(appWebhookQueueRepository, siteRoutingService,
+        new ObjectMapper(), webhookDedupStore, tenantAdmissionControl, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void unknownUuidIsRejectedWithoutCreatingState() {
+    when(siteRoutingService.findByWebhookUrl("unknown")).thenReturn(Optional.empty());
+    byte[] body = "{\"recordId\":\"1\",\"type\":\"ADD_RECORD\"}".getBytes(StandardCharsets.UTF_8);
+
+    assertThatThrownBy(() -> service.enqueue("unknown", body))
+        .isInstanceOf(NotFoundException.class);
+    verifyNoInteractions(webhookDedupStore, tenantAdmissionControl, appWebhookQueueRepository);
+  }
+}
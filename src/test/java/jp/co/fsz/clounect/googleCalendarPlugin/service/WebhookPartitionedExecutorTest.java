@@ -0,0 +1,96 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookPartitionedExecutorTest {
+  private ExecutorService pool;
+  private WebhookPartitionedExecutor executor;
+
+  @BeforeEach
+  void setUp() {
+    pool = Executors.newFixedThreadPool(8);
+    executor = new WebhookPartitionedExecutor(pool::execute, 1000, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void runsTasksForTheSameKeyInSubmissionOrder() throws Exception {
+    WebhookPartitionKey key = new WebhookPartitionKey(1L, "100");
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> last = null;
+    for (int i = 0; i < 200; i++) {
+      int value = i;
+      last = executor.submit(key, () -> {
+        sleepBriefly();
+        order.add(value);
+      });
+    }
+    last.get(10, TimeUnit.SECONDS);
+
+    assertThat(order).containsExactlyElementsOf(IntStream.range(0, 200).boxed().toList());
+    assertThat(executor.remainingCapacity()).isEqualTo(1000);
+  }
+
+  @Test
+  void continuesTheChainAfterAFailedTask() throws Exception {
+    WebhookPartitionKey key = new WebhookPartitionKey(1L, "100");
+    AtomicBoolean ran = new AtomicBoolean();
+    executor.submit(key, () -> {
+      throw new IllegalStateException("boom");
+    });
+    executor.submit(key, () -> ran.set(true)).get(5, TimeUnit.SECONDS);
+
+    assertThat(ran).isTrue();
+  }
+
+  @Test
+  void runsDifferentKeysInParallel() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean overlapped = new AtomicBoolean();
+    CompletableFuture<Void> first = executor.submit(new WebhookPartitionKey(1L, "1"), () -> {
+      started.countDown();
+      try {
+        overlapped.set(release.await(5, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    executor.submit(new WebhookPartitionKey(1L, "2"), release::countDown)
+        .get(5, TimeUnit.SECONDS);
+    first.get(5, TimeUnit.SECONDS);
+
+    assertThat(overlapped).isTrue();
+  }
+
+  private static void sleepBriefly() {
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.dto.SiteRoute;
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.core.model.EventSyncMode;
+import jp.co.fsz.clounect.core.model.SendUpdatesPolicy;
+import jp.co.fsz.clounect.core.model.WebhookQueueStatus;
+import jp.co.fsz.clounect.core.repository.AppWebhookQueueRepository;
+import jp.co.fsz.clounect.core.service.SiteRoutingService;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookQueueWorkerTest {
+  private static final SiteRoute SITE_A = new SiteRoute(1L, 1L, true, "uuid-a", "id", "secret",
+      "refresh", EventSyncMode.PER_ATTENDEE, SendUpdatesPolicy.NONE);
+  private static final SiteRoute SITE_B = new SiteRoute(2L, 1L, true, "uuid-b", "id", "secret",
+      "refresh", EventSyncMode.PER_ATTENDEE, SendUpdatesPolicy.NONE);
+
+  private AppWebhookQueueRepository appWebhookQueueRepository;
+  private CheckTypeService checkTypeService;
+  private TenantAdmissionControl admissionControl;
+  private WebhookDedupStore webhookDedupStore;
+  private List<Runnable> queuedTasks;
+  private WebhookQueueWorker worker;
+  private long nextId;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    appWebhookQueueRepository = mock(AppWebhookQueueRepository.class);
+    when(appWebhookQueueRepository.saveAll(any())).thenAnswer(inv -> inv.getArgument(0));
+    SiteRoutingService siteRoutingService = mock(SiteRoutingService.class);
+    when(siteRoutingService.findByWebhookUrl("uuid-a")).thenReturn(Optional.of(SITE_A));
+    when(siteRoutingService.findByWebhookUrl("uuid-b")).thenReturn(Optional.of(SITE_B));
+    checkTypeService = mock(CheckTypeService.class);
+    webhookDedupStore = mock(WebhookDedupStore.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    when(transactionTemplate.execute(any())).thenAnswer(
+        inv -> inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+    admissionControl = new TenantAdmissionControl(appWebhookQueueRepository, meterRegistry);
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrency", 1);
+
+    queuedTasks = new ArrayList<>();
+    WebhookPartitionedExecutor partitionedExecutor =
+        new WebhookPartitionedExecutor(queuedTasks::add, 100, meterRegistry);
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 0,
+        meterRegistry);
+
+    worker = new WebhookQueueWorker(appWebhookQueueRepository, siteRoutingService,
+        checkTypeService, new ObjectMapper(), transactionTemplate, partitionedExecutor, coalescer,
+        admissionControl, webhookDedupStore, meterRegistry);
+    ReflectionTestUtils.setField(worker, "batchSize", 50);
+    ReflectionTestUtils.setField(worker, "maxAttempts", 5);
+    ReflectionTestUtils.setField(worker, "retryDelayMs", 1000L);
+    ReflectionTestUtils.setField(worker, "perTenantLimit", 1);
+    ReflectionTestUtils.setField(worker, "deferMs", 1000L);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void saturatedTenantIsExcludedAndOtherTenantStillRuns() {
+    assertThat(admissionControl.tryAcquire(SITE_A)).isTrue();
+    AppWebhookQueue b1 = row("uuid-b", 10);
+    when(appWebhookQueueRepository.findClaimable(any(), anyInt(), anyInt(), any()))
+        .thenReturn(List.of(b1));
+
+    worker.poll();
+    runQueuedTasks();
+
+    ArgumentCaptor<Collection<String>> excluded = ArgumentCaptor.forClass(Collection.class);
+    verify(appWebhookQueueRepository).findClaimable(any(), anyInt(), eq(1), excluded.capture());
+    assertThat(excluded.getValue()).containsExactly("uuid-a");
+    verify(checkTypeService).getPlayLoad(any(WebhookPayload.class), eq(SITE_B),
+        eq(b1.getTransactionId()));
+    assertThat(b1.getStatus()).isEqualTo(WebhookQueueStatus.DONE);
+  }
+
+  @Test
+  void rowsOverTheCapAreDeferredWhileOtherTenantsRun() {
+    AppWebhookQueue a1 = row("uuid-a", 1);
+    AppWebhookQueue a2 = row("uuid-a", 2);
+    AppWebhookQueue b1 = row("uuid-b", 3);
+    when(appWebhookQueueRepository.findClaimable(any(), anyInt(), anyInt(), any()))
+        .thenReturn(List.of(a1, a2, b1));
+    LocalDateTime before = LocalDateTime.now();
+
+    worker.poll();
+
+    assertThat(a2.getStatus()).isEqualTo(WebhookQueueStatus.PENDING);
+    assertThat(a2.getNextAttemptAt()).isAfter(before);
+    runQueuedTasks();
+    verify(checkTypeService).getPlayLoad(any(WebhookPayload.class), eq(SITE_A),
+        eq(a1.getTransactionId()));
+    verify(checkTypeService).getPlayLoad(any(WebhookPayload.class), eq(SITE_B),
+        eq(b1.getTransactionId()));
+    verify(checkTypeService, never()).getPlayLoad(any(WebhookPayload.class), any(SiteRoute.class),
+        eq(a2.getTransactionId()));
+  }
+
+  @Test
+  void laterRowForARecordWaitsWhileAnEarlierRowIsRetrying() {
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrency", 10);
+    AppWebhookQueue first = row("uuid-a", 7);
+    AppWebhookQueue second = row("uuid-a", 7);
+    when(appWebhookQueueRepository.findClaimable(any(), anyInt(), anyInt(), any()))
+        .thenReturn(List.of(first, second));
+    doThrow(new IllegalStateException("503")).when(checkTypeService)
+        .getPlayLoad(any(WebhookPayload.class), any(SiteRoute.class),
+            eq(first.getTransactionId()));
+    when(appWebhookQueueRepository.existsByWebhookUrlAndRecordIdAndIdLessThanAndStatusIn(
+        "uuid-a", "7", second.getId(),
+        EnumSet.of(WebhookQueueStatus.PENDING, WebhookQueueStatus.PROCESSING))).thenReturn(true);
+
+    worker.poll();
+    runQueuedTasks();
+
+    assertThat(first.getStatus()).isEqualTo(WebhookQueueStatus.PENDING);
+    assertThat(first.getAttempts()).isEqualTo(1);
+    assertThat(second.getStatus()).isEqualTo(WebhookQueueStatus.PENDING);
+    assertThat(second.getAttempts()).isZero();
+    verify(checkTypeService, never()).getPlayLoad(any(WebhookPayload.class),
+        any(SiteRoute.class), eq(second.getTransactionId()));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void refreshesLocksOfRowsStillWaitingInMemory() {
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrency", 10);
+    AppWebhookQueue waiting = row("uuid-a", 8);
+    when(appWebhookQueueRepository.findClaimable(any(), anyInt(), anyInt(), any()))
+        .thenReturn(List.of(waiting));
+
+    worker.poll();
+    worker.releaseStaleLocks();
+
+    ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+    verify(appWebhookQueueRepository).refreshLocks(ids.capture(), any(),
+        eq(WebhookQueueStatus.PROCESSING));
+    assertThat(ids.getValue()).containsExactly(waiting.getId());
+
+    runQueuedTasks();
+    worker.releaseStaleLocks();
+    verify(appWebhookQueueRepository, times(1)).refreshLocks(any(), any(), any());
+  }
+
+  @Test
+  void releasesTheDedupKeyWhenARowFails() {
+    ReflectionTestUtils.setField(worker, "maxAttempts", 1);
+    AppWebhookQueue failing = row("uuid-b", 9);
+    when(appWebhookQueueRepository.findClaimable(any(), anyInt(), anyInt(), any()))
+        .thenReturn(List.of(failing));
+    doThrow(new IllegalStateException("503")).when(checkTypeService)
+        .getPlayLoad(any(WebhookPayload.class), any(SiteRoute.class),
+            eq(failing.getTransactionId()));
+
+    worker.poll();
+    runQueuedTasks();
+
+    assertThat(failing.getStatus()).isEqualTo(WebhookQueueStatus.FAILED);
+    verify(webhookDedupStore).forget(failing.getTransactionId());
+  }
+
+  private void runQueuedTasks() {
+    while (!queuedTasks.isEmpty()) {
+      queuedTasks.remove(0).run();
+    }
+  }
+
+  private AppWebhookQueue row(String webhookUrl, int recordId) {
+    return AppWebhookQueue.builder()
+        .id(++nextId)
+        .transactionId(UUID.randomUUID())
+        .webhookUrl(webhookUrl)
+        .recordId(String.valueOf(recordId))
+        .payload("{\"recordId\":" + recordId + ",\"type\":\"ADD_RECORD\"}")
+        .status(WebhookQueueStatus.PENDING)
+        .attempts(0)
+        .nextAttemptAt(LocalDateTime.now())
+        .createdAt(LocalDateTime.now())
+        .build();
+  }
+}
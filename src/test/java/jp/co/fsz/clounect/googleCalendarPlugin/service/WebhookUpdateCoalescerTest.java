@@ -0,0 +1,108 @@
+package jp.co.fsz.clounect.googleCalendarPlugin.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jp.co.fsz.clounect.core.model.AppWebhookQueue;
+import jp.co.fsz.clounect.googleCalendarPlugin.dto.WebhookPartitionKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class WebhookUpdateCoalescerTest {
+  private static final WebhookPartitionKey KEY = new WebhookPartitionKey(1L, "7");
+
+  private WebhookPartitionedExecutor partitionedExecutor;
+  private SimpleMeterRegistry meterRegistry;
+  private final List<AppWebhookQueue> superseded = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    partitionedExecutor = mock(WebhookPartitionedExecutor.class);
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void keepsOnlyTheLatestUpdateForARecord() throws InterruptedException {
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 20,
+        meterRegistry);
+    AppWebhookQueue first = row();
+    AppWebhookQueue second = row();
+    Runnable firstTask = mock(Runnable.class);
+    Runnable secondTask = mock(Runnable.class);
+
+    coalescer.offer(KEY, first, firstTask, superseded::add);
+    coalescer.offer(KEY, second, secondTask, superseded::add);
+    Thread.sleep(40);
+    coalescer.flushExpired();
+
+    assertThat(superseded).containsExactly(first);
+    verify(partitionedExecutor).submit(KEY, secondTask);
+    verify(partitionedExecutor, never()).submit(KEY, firstTask);
+    assertThat(coalescer.pendingCount()).isZero();
+    assertThat(meterRegistry.get("webhook.coalesce.merged").counter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  void holdsUpdatesUntilTheWindowEnds() {
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 60_000,
+        meterRegistry);
+
+    coalescer.offer(KEY, row(), mock(Runnable.class), superseded::add);
+    coalescer.flushExpired();
+
+    verify(partitionedExecutor, never()).submit(any(), any());
+    assertThat(coalescer.pendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  void flushSubmitsAHeldUpdateBeforeOtherEvents() {
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 60_000,
+        meterRegistry);
+    Runnable task = mock(Runnable.class);
+
+    coalescer.offer(KEY, row(), task, superseded::add);
+    coalescer.flush(KEY);
+
+    verify(partitionedExecutor).submit(KEY, task);
+    assertThat(coalescer.pendingCount()).isZero();
+  }
+
+  @Test
+  void submitsImmediatelyWhenTheWindowIsZero() {
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 0,
+        meterRegistry);
+    Runnable task = mock(Runnable.class);
+
+    coalescer.offer(KEY, row(), task, superseded::add);
+
+    verify(partitionedExecutor).submit(KEY, task);
+    assertThat(coalescer.pendingCount()).isZero();
+  }
+
+  @Test
+  void doesNotMergeDifferentRecords() {
+    WebhookUpdateCoalescer coalescer = new WebhookUpdateCoalescer(partitionedExecutor, 60_000,
+        meterRegistry);
+
+    coalescer.offer(KEY, row(), mock(Runnable.class), superseded::add);
+    coalescer.offer(new WebhookPartitionKey(1L, "8"), row(), mock(Runnable.class),
+        superseded::add);
+
+    assertThat(superseded).isEmpty();
+    assertThat(coalescer.pendingCount()).isEqualTo(2);
+  }
+
+  private static AppWebhookQueue row() {
+    return AppWebhookQueue.builder()
+        .transactionId(UUID.randomUUID())
+        .build();
+  }
+}